@@ -1,6 +1,7 @@
 package fr.alanguenegou.prd.prdapp;
 
 import fr.alanguenegou.prd.prdapp.controller.ProblemSolver;
+import fr.alanguenegou.prd.prdapp.controller.ShardCoordinator;
 import fr.alanguenegou.prd.prdapp.dbaccess.GraphDataAccess;
 import fr.alanguenegou.prd.prdapp.dbaccess.UserDataDataAccess;
 import fr.alanguenegou.prd.prdapp.graph.Graph;
@@ -9,8 +10,12 @@ import fr.alanguenegou.prd.prdapp.view.Visualization;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
 
 /**
  * The launcher of this application
@@ -68,8 +73,14 @@ public class PrdappApplication {
     }
 
     /**
-     * The classic main method launching the app
-     * @param args null
+     * The classic main method launching the app. The trip analyses are shared between worker processes when the system
+     * property "prdapp.shards" gives their number (see {@link ShardCoordinator}), the shared directory being given by
+     * "prdapp.shardDirectory" and the hosts of the workers by "prdapp.shardHosts" (comma-separated, this machine if absent).
+     * The labels are searched with {@link Graph#HEAP_SEARCH} unless the system property "prdapp.cch" is true, the customizable
+     * contraction hierarchy of {@link Graph#CCH_SEARCH} being then built at startup. The hub labels of the extreme linear
+     * combinations are only loaded or computed when the system property "prdapp.hubLabels" is true, and the searches of
+     * the trip comparisons are limited by the trips when "prdapp.tripDetourRatio" gives the size of their corridor
+     * @param args null, or the worker option followed by the shared directory and the shard index for a worker process
      */
     public static void main(String[] args) {
         SpringApplicationBuilder builder = new SpringApplicationBuilder(PrdappApplication.class);
@@ -83,11 +94,76 @@ public class PrdappApplication {
         UserDataDataAccess userDataDataAccess = new UserDataDataAccess();
         UserData userData = userDataDataAccess.populateUserData(graph);
 
+        // a worker process analyses its shard of the trips, with its own store of labels (filled with the labels already
+        // computed by the coordinator), and stops: its searches are too few to be worth the preprocessing of the search modes
+        if (args.length == 3 && ShardCoordinator.WORKER_OPTION.equals(args[0])) {
+            File directory = new File(args[1]);
+            int shard = Integer.parseInt(args[2]);
+            prepareGraph(graph, ShardCoordinator.getLabelStoreFile(directory, shard), false);
+            ProblemSolver problemSolver = new ProblemSolver(graph, userData, graphDataAccess, null);
+            setAnalysisOptions(problemSolver);
+            try {
+                ShardCoordinator.runWorker(problemSolver, directory, shard);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+
+        prepareGraph(graph, new File("tours_etiquettes_initiales.bin"), true);
+
         // create a visualization instance to display the graph
         Visualization visualization = new Visualization();
 
         // creates a problem solver instance that controls the app dialog
         ProblemSolver problemSolver = new ProblemSolver(graph, userData, graphDataAccess, visualization);
+        setAnalysisOptions(problemSolver);
+        int shardCount = Integer.getInteger("prdapp.shards", 0);
+        if (shardCount > 0) {
+            String hosts = System.getProperty("prdapp.shardHosts", "");
+            problemSolver.setShardCoordinator(new ShardCoordinator(new File(System.getProperty("prdapp.shardDirectory", "partitions")),
+                    shardCount, hosts.isEmpty() ? Collections.emptyList() : Arrays.asList(hosts.split(","))));
+        }
         problemSolver.launchProblemSolving();
     }
+
+    /**
+     * Sets the analysis options of a problem solver from the system properties, which are the same in the worker processes
+     * @param problemSolver The problem solver
+     */
+    private static void setAnalysisOptions(ProblemSolver problemSolver) {
+        String tripDetourRatio = System.getProperty("prdapp.tripDetourRatio");
+        if (tripDetourRatio != null) {
+            problemSolver.setTripDetourRatio(Double.valueOf(tripDetourRatio));
+        }
+    }
+
+    /**
+     * Prepares the graph for the shortest-path searches, once its topology won't change anymore
+     * @param graph The graph
+     * @param labelStoreFile The file the labels computed with the initial danger values are stored in between runs
+     * @param withPreprocessing True if the preprocessing of the search modes chosen by the system properties is done,
+     *                          false to search with {@link Graph#HEAP_SEARCH}
+     */
+    private static void prepareGraph(Graph graph, File labelStoreFile, boolean withPreprocessing) {
+        // the topology won't change anymore, so the graph can be turned into its compact form for shortest-path searches
+        graph.freeze();
+        // the landmarks of the ALT search mode are kept between runs, as long as the graph doesn't change
+        graph.getSearchEngine().setLandmarkFile(new File("tours_landmarks.bin"));
+        // the labels of the trips with the initial danger values are kept between runs too, only the new trips being then computed
+        graph.getLabelCalculator().setLabelStoreFile(labelStoreFile);
+
+        // on demand, the labels are computed in the customizable contraction hierarchy, whose contraction order only depends on
+        // the topology: the linear combinations are then applied by quick customizations, redone when modifyGraph changes the danger values
+        if (withPreprocessing && Boolean.getBoolean("prdapp.cch")) {
+            graph.getSearchEngine().setSearchMode(Graph.CCH_SEARCH);
+            graph.getSearchEngine().getCustomizableContractionHierarchy();
+        }
+        // on demand, the extreme linear combinations of the initial danger values are answered by hub labels, shared with other runs
+        // through their files
+        if (withPreprocessing && Boolean.getBoolean("prdapp.hubLabels")) {
+            graph.getSearchEngine().prepareHubLabels();
+        }
+    }
 }
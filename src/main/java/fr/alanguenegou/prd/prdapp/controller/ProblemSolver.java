@@ -2,6 +2,7 @@ package fr.alanguenegou.prd.prdapp.controller;
 
 import fr.alanguenegou.prd.prdapp.dbaccess.GraphDataAccess;
 import fr.alanguenegou.prd.prdapp.graph.Graph;
+import fr.alanguenegou.prd.prdapp.graph.LabelMatrix;
 import fr.alanguenegou.prd.prdapp.graph.Node;
 import fr.alanguenegou.prd.prdapp.userdata.Trip;
 import fr.alanguenegou.prd.prdapp.userdata.UserData;
@@ -13,6 +14,8 @@ import org.javatuples.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
 
@@ -27,6 +30,12 @@ public class ProblemSolver {
      */
     private final static Logger log = LoggerFactory.getLogger(ProblemSolver.class);
 
+    /**
+     * The relative tolerance between the costs of two labels of the same linear combination for them to be equal, the labels
+     * with the initial danger values and the alternative ones being possibly summed in different orders (by hub labels or by a search)
+     */
+    private static final double LABEL_COST_TOLERANCE = 1e-9;
+
     /**
      * An instance of the Graph class
      */
@@ -57,6 +66,26 @@ public class ProblemSolver {
     @Getter @Setter
     private Dialog dialog = new Dialog();
 
+    /**
+     * The engine processing the trips in parallel, with one worker per processor
+     */
+    @Getter @Setter
+    private TripAnalysisEngine tripAnalysisEngine = new TripAnalysisEngine(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The coordinator sharing the trip analyses between several processes (null to analyse the trips in this process only)
+     */
+    @Getter @Setter
+    private ShardCoordinator shardCoordinator;
+
+    /**
+     * The size of the corridor the searches of a trip are limited to when the trips are compared with their computed
+     * versions with {@link Graph#HEAP_SEARCH}, the trip cost capping them too
+     * (see {@link Trip#calculateLabelsWithinLimits(Graph, double)}), or null to search the whole graph
+     */
+    @Getter @Setter
+    private Double tripDetourRatio;
+
     /**
      * Shortest distance to check if a section is close to another one
      * Distance set to the average length of all the sections
@@ -87,82 +116,24 @@ public class ProblemSolver {
      */
     private void solveFirstProblem() {
         Collection<Trip> trips = userData.getTrips().values();
-        double globalDifference = 0.0;
-        int[] distribution = new int[11];
-        int profileIterator = 0;
-
-        // for each trip in the user data, we compute the difference between the real trip path
-        // and its computed version calculated by the shortest-path algorithm
-        for (Trip trip : trips) {
-            double difference = trip.compareTripWithCalculatedVersion(graph);
-            globalDifference += difference;
-            profileIterator++;
-            if (Math.floorMod(profileIterator, 50) == 0)   {
-                log.info("{}% -> {} trajets ont été traités jusqu'à présent sur un total de {}",
-                        Math.round(((double)profileIterator)/userData.getTrips().size()*100), profileIterator, userData.getTrips().size());
-            }
-
-            // analyse de la distribution entre 0 et 100% d'écart
-            /*
-            // fill distribution array
-            if (difference >= 0.0 && difference < 10.0)
-                distribution[0]++;
-            else if (difference >= 10.0 && difference < 20.0)
-                distribution[1]++;
-            else if (difference >= 20.0 && difference < 30.0)
-                distribution[2]++;
-            else if (difference >= 30.0 && difference < 40.0)
-                distribution[3]++;
-            else if (difference >= 40.0 && difference < 50.0)
-                distribution[4]++;
-            else if (difference >= 50.0 && difference < 60.0)
-                distribution[5]++;
-            else if (difference >= 60.0 && difference < 70.0)
-                distribution[6]++;
-            else if (difference >= 70.0 && difference < 80.0)
-                distribution[7]++;
-            else if (difference >= 80.0 && difference < 90.0)
-                distribution[8]++;
-            else if (difference >= 90.0 && difference <= 100.0)
-                distribution[9]++;
-            else
-                distribution[10]++;
-             */
-
-            // fill distribution array
-            if (difference >= 0.0 && difference < 1.0)
-                distribution[0]++;
-            else if (difference >= 1.0 && difference < 2.0)
-                distribution[1]++;
-            else if (difference >= 2.0 && difference < 3.0)
-                distribution[2]++;
-            else if (difference >= 3.0 && difference < 4.0)
-                distribution[3]++;
-            else if (difference >= 4.0 && difference < 5.0)
-                distribution[4]++;
-            else if (difference >= 5.0 && difference < 6.0)
-                distribution[5]++;
-            else if (difference >= 6.0 && difference < 7.0)
-                distribution[6]++;
-            else if (difference >= 7.0 && difference < 8.0)
-                distribution[7]++;
-            else if (difference >= 8.0 && difference < 9.0)
-                distribution[8]++;
-            else if (difference >= 9.0 && difference <= 10.0)
-                distribution[9]++;
-            else
-                distribution[10]++;
-
+        TripAnalysisResult result;
+        try {
+            result = shardCoordinator == null ? analyseTrips(trips)
+                    : shardCoordinator.analyse(graph, ShardCoordinator.FIRST_PROBLEM, trips);
+        } catch (IOException e) {
+            log.error("Analyse répartie des trajets impossible, les partitions terminées seront reprises au prochain lancement", e);
+            return;
         }
+        double globalDifference = result.getDifferenceSum()/result.getTripCount();
+        int[] distribution = result.getDistribution();
 
-        globalDifference = globalDifference/trips.size();
         System.out.println(globalDifference);
-        System.out.println(trips.size());
+        System.out.println(result.getTripCount());
 
         System.out.println("-----------------------------------------------------------------");
         System.out.println();
         System.out.format("De façon brute, les chemins calculés sont en moyenne %.2f%% différents du trajet réellement emprunté par l'utilisateur%n", globalDifference);
-        System.out.format("Cette analyse est faite sur une base de %d trajets utilisateur%n", trips.size());
+        System.out.format("Cette analyse est faite sur une base de %d trajets utilisateur%n", result.getTripCount());
 
 
         System.out.println("\nDétails de la distribution des écarts (bornes en pourcentage) :");
@@ -197,7 +168,44 @@ public class ProblemSolver {
     }
 
     /**
-     * Modify a section in the graph and compute results for close users trips
+     * Computes the differences between some real trips and their computed versions
+     * @param tripsToAnalyse The trips
+     * @return The partial sums of the differences and their distribution
+     */
+    public TripAnalysisResult analyseTrips(Collection<Trip> tripsToAnalyse) {
+        List<Trip> trips = getTripsInIdOrder(tripsToAnalyse);
+        graph.getSearchEngine().getSearchStatistics().reset();
+
+        // for each trip, we compute the difference between the real trip path and its computed version calculated
+        // by the shortest-path algorithm (in parallel, the differences being then summed in the order of the trips
+        // so that the result doesn't depend on the number of workers)
+        List<Double> differences;
+        Double detourRatio = tripDetourRatio;
+        if (detourRatio != null && graph.getSearchEngine().getSearchMode() == Graph.HEAP_SEARCH) {
+            // the searches of each trip are capped by its cost and kept in a corridor around its ends, a search being
+            // done again on the whole graph when its path can't be proven a shortest one
+            differences = tripAnalysisEngine.analyse(trips,
+                    trip -> trip.compareTripWithCalculatedVersion(graph, detourRatio), "trajets comparés");
+        }
+        else {
+            // the labels of every trip are computed at once, trips starting from the same node sharing their searches
+            HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> labelsByPath =
+                    calculateTripLabels(trips, Graph.WITH_INITIAL_DANGER_VALUE);
+            differences = tripAnalysisEngine.analyse(trips,
+                    trip -> trip.compareTripWithCalculatedVersion(labelsByPath.get(trip.getEndpoints())), "trajets comparés");
+        }
+        TripAnalysisResult result = new TripAnalysisResult();
+        for (double difference : differences) {
+            result.addDifference(difference);
+        }
+
+        log.info("Statistiques des recherches : {}", graph.getSearchEngine().getSearchStatistics());
+        log.info("Statistiques du cache d'étiquettes : {}", graph.getLabelCalculator().getLabelCache().getStatistics());
+        return result;
+    }
+
+    /**
+     * Modify a section in the graph and compute results for the users trips it can improve
      */
     private void solveSecondProblem() {
 
@@ -208,59 +216,22 @@ public class ProblemSolver {
         //sectionsToModify.put(sectionToModify[0], 5);
         graph.modifyGraph(sectionsToModify);
 
-        // Opti calculs
-        // get nodes from section to modify
-
-        // Get coordinates from start and end node of the modified section
-        Node start = graph.getNodeStartBySection(Pair.with(sectionIdToModify,true));
-        Node end = graph.getNodeEndBySection(Pair.with(sectionIdToModify,true));
-        double x1 = start.getCoordX();
-        double y1 = start.getCoordY();
-        double x2 = end.getCoordX();
-        double y2 = end.getCoordY();
-
-        ArrayList<Node> nodesCloseToSection = new ArrayList<>();
-        nodesCloseToSection.add(start);
-        nodesCloseToSection.add(end);
-
-        // Get distance based on the section length
-        graph.getSections().get(Pair.with(sectionIdToModify,true));
-        double distanceZoneOpti = Math.max(thresholdDistance,Math.abs(Math.sqrt(Math.pow((x2 - x1),2) + Math.pow((y2 - y1), 2))));
-        System.out.println("Distance zone : " + distanceZoneOpti);
-
-        // for every node in the graph, we look for the ones close to either one of the nodes
-        for(Node node : graph.getNodes().values()){
-            if (Math.abs(Math.sqrt(Math.pow((x2 - node.getCoordX()),2) + Math.pow((y2 - node.getCoordY()), 2))) < distanceZoneOpti){
-                nodesCloseToSection.add(node);
-                continue;
-            }
-
-            if (Math.abs(Math.sqrt(Math.pow((x1 - node.getCoordX()),2) + Math.pow((y1 - node.getCoordY()), 2))) < distanceZoneOpti){
-                nodesCloseToSection.add(node);
-            }
-        }
-
-        System.out.println("Nombre de noeuds près de la section à modifier : " + nodesCloseToSection.size());
-
-        ArrayList<Trip> tripsToModify = new ArrayList<>();
-
-        // for every Trip
-        for (Trip trip : userData.getTrips().values()){
-            // For every node in the trip
-            for (Node node : trip.getTrip()){
-                // If the node is in the list of nodesCloseToSection
-                if (nodesCloseToSection.contains(node)){
-                    // We add it to the list and go on to the next trip
-                    tripsToModify.add(trip);
-                    break;
-                }
+        // only the trips for which a path through the modified section could cost less than their initial shortest-path
+        // for some linear combination can get a new pareto front (the initial labels are cached or stored by the first problem)
+        Collection<Trip> trips = userData.getTrips().values();
+        HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath =
+                calculateTripLabels(trips, Graph.WITH_INITIAL_DANGER_VALUE);
+        Set<Pair<Node, Node>> affectedEndpoints = graph.findPathsAffectedByModifications(initialLabelsByPath);
+        HashSet<Trip> involvedTrips = new HashSet<>();
+        for (Trip trip : trips) {
+            if (affectedEndpoints.contains(trip.getEndpoints())) {
+                involvedTrips.add(trip);
             }
         }
+        log.info("{} trajets sur {} peuvent être améliorés par la modification : {}% des calculs évités",
+                involvedTrips.size(), trips.size(), trips.isEmpty() ? 0 : Math.round(100.0 * (trips.size() - involvedTrips.size()) / trips.size()));
 
-        HashSet<Trip> involvedTrips = new HashSet<>(tripsToModify);
-        System.out.println("Nombre de trip à modifier : " + involvedTrips.size());
-
-        computeImprovements(involvedTrips);
+        computeImprovements(involvedTrips, initialLabelsByPath);
 
 
     }
@@ -343,9 +314,9 @@ public class ProblemSolver {
     }
 
     /**
-     * Launches the resolution of the problem that user chose to solve
+     * Removes the non valid user trips and those that are too short to be analysed
      */
-    public void launchProblemSolving() {
+    public void filterUserData() {
         System.out.println("------------------------- FILTRAGE DES DONNEES UTILISATEUR N°1 ------------------------- \n");
         int initialUserDataSize = userData.getTrips().size();
         System.out.println(initialUserDataSize);
@@ -354,6 +325,13 @@ public class ProblemSolver {
         System.out.println("------------------------- FILTRAGE DES DONNEES UTILISATEUR N°2 ------------------------- \n");
         userData.getTripsDistancesAndRemoveThoseUnderXMeters(500);
         System.out.println("---------------------------------------------------------------------------------------- \n");
+    }
+
+    /**
+     * Launches the resolution of the problem that user chose to solve
+     */
+    public void launchProblemSolving() {
+        filterUserData();
 
         switch (dialog.getProblemChoice()) {
             case 1:
@@ -371,7 +349,58 @@ public class ProblemSolver {
             case 5 :
                 displayGraph(false);
                 break;
+            case 6 :
+                exportTripLabelMatrix(new File("tours_matrice_etiquettes.bin"));
+                break;
+        }
+    }
+
+    /**
+     * Computes the labels of the shortest-paths between every starting node and every ending node of the user trips
+     * in one batched operation (see {@link Graph#calculateLabelMatrix(Collection, Collection, int)}) and writes them to a file
+     * @param file The file the label matrix is written to
+     */
+    private void exportTripLabelMatrix(File file) {
+        List<Node> origins = new ArrayList<>();
+        List<Node> destinations = new ArrayList<>();
+        for (Trip trip : userData.getTrips().values()) {
+            origins.add(trip.getStartNode());
+            destinations.add(trip.getEndNode());
         }
+        LabelMatrix matrix = graph.calculateLabelMatrix(origins, destinations, Graph.WITH_INITIAL_DANGER_VALUE);
+        try {
+            matrix.write(file);
+            log.info("Matrice d'étiquettes {} x {} écrite dans le fichier {}", matrix.getOriginCount(), matrix.getDestinationCount(), file);
+        } catch (IOException e) {
+            log.error("Impossible d'écrire la matrice d'étiquettes dans le fichier {}", file, e);
+        }
+    }
+
+    /**
+     * Computes the labels of the shortest-paths between the starting and ending nodes of trips, once per distinct
+     * (starting node, ending node) pair, in parallel (see {@link TripAnalysisEngine#calculateLabels(Graph, Collection, int)})
+     * @param trips The trips
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The labels of every linear combination, by (starting node, ending node) of trip
+     */
+    private HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> calculateTripLabels(Collection<Trip> trips, int useOfDangerValue) {
+        // trips sharing both ends only need their labels computed once, then shared by every one of them
+        LinkedHashMap<Pair<Node, Node>, List<Trip>> tripsByEndpoints = UserData.groupTripsByEndpoints(trips);
+        int avoidedComputations = trips.size() - tripsByEndpoints.size();
+        log.info("{} trajets, {} couples (départ, arrivée) distincts : {} calculs évités ({}%)", trips.size(), tripsByEndpoints.size(),
+                avoidedComputations, trips.isEmpty() ? 0 : Math.round(100.0 * avoidedComputations / trips.size()));
+        return tripAnalysisEngine.calculateLabels(graph, tripsByEndpoints.keySet(), useOfDangerValue);
+    }
+
+    /**
+     * Sorts trips by ID, so that the results of their parallel analyses are always reduced in the same order
+     * @param trips The trips
+     * @return The trips, by increasing ID
+     */
+    private static List<Trip> getTripsInIdOrder(Collection<Trip> trips) {
+        List<Trip> sortedTrips = new ArrayList<>(trips);
+        sortedTrips.sort(Comparator.comparingInt(Trip::getId));
+        return sortedTrips;
     }
 
     /**
@@ -379,151 +408,205 @@ public class ProblemSolver {
      * @param involvedTrips trips to recalculate
      */
     public void computeImprovements(HashSet<Trip> involvedTrips){
-        int nbOfModifiedTrips = 0;
-        double globalImprovement = 0;
-        // keeps track of the progress of the numerous iterations
-        int profileIterator = 0;
-        log.info("Début de la phase de calculs...");
-        for (Trip trip : involvedTrips) {
-            profileIterator++;
-
-            // computes the initial pareto front and also deduces the weights used for the edge values of the trip
-            HashMap<Double, Pair<Double, Double>> initialParetoFront = trip.setTripWeightsThanksToComparison(graph);
+        computeImprovements(involvedTrips, null);
+    }
 
-            graph.prepareNewCalculation();
+    /**
+     * Calculate the new paths of trips involved and display values quantifying the improvements made, with their labels
+     * with the initial danger values already computed (given to the workers of {@link ProblemSolver#shardCoordinator})
+     * @param involvedTrips trips to recalculate
+     * @param initialLabelsByPath The labels of every linear combination with the initial danger values, by (starting node,
+     *                            ending node) of trip, or null if they aren't computed yet
+     */
+    public void computeImprovements(HashSet<Trip> involvedTrips,
+                                    Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath) {
+        log.info("Début de la phase de calculs...");
+        TripAnalysisResult result;
+        try {
+            result = shardCoordinator == null ? analyseImprovements(involvedTrips)
+                    : shardCoordinator.analyse(graph, ShardCoordinator.IMPROVEMENTS, involvedTrips, initialLabelsByPath);
+        } catch (IOException e) {
+            log.error("Analyse répartie des trajets impossible, les partitions terminées seront reprises au prochain lancement", e);
+            return;
+        }
+        int nbOfModifiedTrips = result.getModifiedTripCount();
+        double globalImprovement = result.getImprovementSum() / nbOfModifiedTrips;
 
-            // computes the pareto front with the modified edge danger values
-            HashMap<Double, Pair<Double, Double>> modifiedParetoFront = graph.calculateLabelsForManyLinearCombinations(trip.getStartNode(), trip.getEndNode(), Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+        System.out.println("-----------------------------------------------------------------");
+        System.out.println();
 
+        System.out.format("Sur %d trajets utilisateur recensés, %d seraient impactés par cette modification de tronçon. Soit %d %% des trajets.%n", userData.getTrips().size(), nbOfModifiedTrips, ((nbOfModifiedTrips/userData.getTrips().size())*100));
+        System.out.format("Dans le cadre de ces %d trajets, la baisse moyenne du coût du trajet serait de %.3f%%.%n", nbOfModifiedTrips, globalImprovement);
 
-            // initialises a set containing possibly interesting labels in a pareto front
-            // with distance weight of label as map key and its future percent variation from initial value to new value as map value
-            HashMap<Double, Double> distanceWeightsNearUserTrip = new HashMap<>();
-            double tripDistanceWeightValue = trip.getDeducedWeightsValues().getValue0();
-            if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]) {
+        System.out.println();
+        System.out.println("-----------------------------------------------------------------");
+    }
 
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[1], 0.0);
+    /**
+     * Computes the improvements of some trips brought by the graph modifications
+     * @param tripsToAnalyse The trips
+     * @return The partial sums of the improvements
+     */
+    public TripAnalysisResult analyseImprovements(Collection<Trip> tripsToAnalyse) {
+        List<Trip> trips = getTripsInIdOrder(tripsToAnalyse);
+        graph.getSearchEngine().getSearchStatistics().reset();
+
+        // the labels of every trip are computed at once, trips starting from the same node sharing their searches
+        HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath = calculateTripLabels(trips, Graph.WITH_INITIAL_DANGER_VALUE);
+        HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> modifiedLabelsByPath = calculateTripLabels(trips, Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+
+        // the improvement of each trip is computed in parallel, then the improvements are summed in the order of the trips
+        // so that the result doesn't depend on the number of workers
+        List<Double> improvements = tripAnalysisEngine.analyse(trips,
+                trip -> computeTripImprovement(trip, initialLabelsByPath, modifiedLabelsByPath), "trajets analysés");
+        TripAnalysisResult result = new TripAnalysisResult();
+        for (Double improvement : improvements) {
+            result.addImprovement(improvement);
+        }
 
-            }
-            else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[1]) {
+        log.info("Statistiques des recherches : {}", graph.getSearchEngine().getSearchStatistics());
+        log.info("Statistiques du cache d'étiquettes : {}", graph.getLabelCalculator().getLabelCache().getStatistics());
+        return result;
+    }
 
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[1], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[2], 0.0);
+    /**
+     * Computes the improvement of a trip brought by the graph modifications, from its pareto fronts
+     * @param trip The trip (its weights are deduced from its initial pareto front)
+     * @param initialLabelsByPath The labels of every linear combination with the initial danger values, by (starting node, ending node)
+     * @param modifiedLabelsByPath The labels of every linear combination with the alternative danger values, by (starting node, ending node)
+     * @return The lowest percent variation of the cost of the labels near the user trip one, or null if none of them changed
+     */
+    private Double computeTripImprovement(Trip trip, Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath,
+                                          Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> modifiedLabelsByPath) {
+        // gets the initial pareto front and also deduces the weights used for the edge values of the trip
+        HashMap<Double, Pair<Double, Double>> initialParetoFront = trip.setTripWeightsThanksToComparison(initialLabelsByPath.get(trip.getEndpoints()));
 
-            }
-            else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[2]) {
+        // gets the pareto front with the modified edge danger values
+        HashMap<Double, Pair<Double, Double>> modifiedParetoFront = modifiedLabelsByPath.get(trip.getEndpoints());
 
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[1], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[2], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[3], 0.0);
 
-            }
-            else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[3]) {
+        // initialises a set containing possibly interesting labels in a pareto front
+        // with distance weight of label as map key and its future percent variation from initial value to new value as map value
+        HashMap<Double, Double> distanceWeightsNearUserTrip = new HashMap<>();
+        double tripDistanceWeightValue = trip.getDeducedWeightsValues().getValue0();
+        if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]) {
 
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[2], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[3], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[4], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[1], 0.0);
 
-            }
-            else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[4]) {
+        }
+        else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[1]) {
 
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[3], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[4], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[5], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[1], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[2], 0.0);
 
-            }
-            else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[5]) {
+        }
+        else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[2]) {
 
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[4], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[5], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[1], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[2], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[3], 0.0);
 
-            }
-            else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]) {
+        }
+        else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[3]) {
 
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[5], 0.0);
-                distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[2], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[3], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[4], 0.0);
 
-            }
+        }
+        else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[4]) {
 
-            // checks if there are modifications among labels near the user trip label one
-            HashMap<Double, Double> tempModifications = new HashMap<>(distanceWeightsNearUserTrip.size());
-            for (Double distanceWeight : distanceWeightsNearUserTrip.keySet()) {
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[3], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[4], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[5], 0.0);
 
-                // if modified label has seen its value modified (= the graph modification  impacted the path for this linear combination of weights)
-                if (!initialParetoFront.get(distanceWeight).equals(modifiedParetoFront.get(distanceWeight))) {
+        }
+        else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[5]) {
 
-                    // determines the extreme Pareto front distance value for normalisation
-                    double extremeDistanceLinearCombination;
-                    if (initialParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]).getValue0() < modifiedParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]).getValue0()) {
-                        extremeDistanceLinearCombination = modifiedParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]).getValue0();
-                    }
-                    else {
-                        extremeDistanceLinearCombination = initialParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]).getValue0();
-                    }
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[4], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[5], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6], 0.0);
 
+        }
+        else if (tripDistanceWeightValue == Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]) {
 
-                    // determines the extreme Pareto front danger value for normalisation
-                    double extremeDangerLinearCombination;
-                    if (initialParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]).getValue1() < modifiedParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]).getValue1()) {
-                        extremeDangerLinearCombination = modifiedParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]).getValue1();
-                    }
-                    else {
-                        extremeDangerLinearCombination = initialParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]).getValue1();
-                    }
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[5], 0.0);
+            distanceWeightsNearUserTrip.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6], 0.0);
 
-                    // computes percent variation and adds it in the previous hashmap
-                    double initialLabelCost = distanceWeight * initialParetoFront.get(distanceWeight).getValue0() / extremeDistanceLinearCombination
-                            + (1-distanceWeight) * initialParetoFront.get(distanceWeight).getValue1() / extremeDangerLinearCombination;
+        }
 
-                    double newLabelCost = distanceWeight * modifiedParetoFront.get(distanceWeight).getValue0() / extremeDistanceLinearCombination
-                            + (1-distanceWeight) * modifiedParetoFront.get(distanceWeight).getValue1() / extremeDangerLinearCombination;
+        // checks if there are modifications among labels near the user trip label one
+        HashMap<Double, Double> tempModifications = new HashMap<>(distanceWeightsNearUserTrip.size());
+        for (Double distanceWeight : distanceWeightsNearUserTrip.keySet()) {
 
+            // if modified label has seen its value modified (= the graph modification  impacted the path for this linear combination of weights)
+            if (!hasSameCost(initialParetoFront.get(distanceWeight), modifiedParetoFront.get(distanceWeight), distanceWeight)) {
 
-                    tempModifications.put(distanceWeight, ((newLabelCost - initialLabelCost) / initialLabelCost * 100));
+                // determines the extreme Pareto front distance value for normalisation
+                double extremeDistanceLinearCombination;
+                if (initialParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]).getValue0() < modifiedParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]).getValue0()) {
+                    extremeDistanceLinearCombination = modifiedParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]).getValue0();
+                }
+                else {
+                    extremeDistanceLinearCombination = initialParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[6]).getValue0();
+                }
 
-                    // log.warn("initialLabelCost = {} , newLabelCost = {} , iteration n°{}", initialLabelCost, newLabelCost, profileIterator);
 
+                // determines the extreme Pareto front danger value for normalisation
+                double extremeDangerLinearCombination;
+                if (initialParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]).getValue1() < modifiedParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]).getValue1()) {
+                    extremeDangerLinearCombination = modifiedParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]).getValue1();
                 }
                 else {
-
-                    // marks the modification as useless for this distance weight in order to remove it outside the loop
-                    tempModifications.put(distanceWeight, -999.0);
+                    extremeDangerLinearCombination = initialParetoFront.get(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0]).getValue1();
                 }
-            }
 
-            // effectively proceeds to make the changes
-            for (Map.Entry<Double, Double> modification : tempModifications.entrySet()) {
-                if (modification.getValue() == -999.0) {
-                    distanceWeightsNearUserTrip.remove(modification.getKey());
-                } else {
-                    distanceWeightsNearUserTrip.replace(modification.getKey(), modification.getValue());
-                }
-            }
+                // computes percent variation and adds it in the previous hashmap
+                double initialLabelCost = distanceWeight * initialParetoFront.get(distanceWeight).getValue0() / extremeDistanceLinearCombination
+                        + (1-distanceWeight) * initialParetoFront.get(distanceWeight).getValue1() / extremeDangerLinearCombination;
+
+                double newLabelCost = distanceWeight * modifiedParetoFront.get(distanceWeight).getValue0() / extremeDistanceLinearCombination
+                        + (1-distanceWeight) * modifiedParetoFront.get(distanceWeight).getValue1() / extremeDangerLinearCombination;
+
+
+                tempModifications.put(distanceWeight, ((newLabelCost - initialLabelCost) / initialLabelCost * 100));
+
+                // log.warn("initialLabelCost = {} , newLabelCost = {} , iteration n°{}", initialLabelCost, newLabelCost, profileIterator);
 
-            if (distanceWeightsNearUserTrip.size() > 0) {
-                nbOfModifiedTrips++;
-                globalImprovement += Collections.min(distanceWeightsNearUserTrip.values());
             }
+            else {
 
-            if (Math.floorMod(profileIterator, 50) == 0)   {
-                log.info("{}% -> {} trajets ont été traités jusqu'à présent sur un total de {}",
-                        Math.round(((double)profileIterator)/involvedTrips.size()*100), profileIterator, involvedTrips.size());
+                // marks the modification as useless for this distance weight in order to remove it outside the loop
+                tempModifications.put(distanceWeight, -999.0);
             }
         }
 
-        globalImprovement = globalImprovement / nbOfModifiedTrips;
-
-        System.out.println("-----------------------------------------------------------------");
-        System.out.println();
+        // effectively proceeds to make the changes
+        for (Map.Entry<Double, Double> modification : tempModifications.entrySet()) {
+            if (modification.getValue() == -999.0) {
+                distanceWeightsNearUserTrip.remove(modification.getKey());
+            } else {
+                distanceWeightsNearUserTrip.replace(modification.getKey(), modification.getValue());
+            }
+        }
 
-        System.out.format("Sur %d trajets utilisateur recensés, %d seraient impactés par cette modification de tronçon. Soit %d %% des trajets.%n", userData.getTrips().size(), nbOfModifiedTrips, ((nbOfModifiedTrips/userData.getTrips().size())*100));
-        System.out.format("Dans le cadre de ces %d trajets, la baisse moyenne du coût du trajet serait de %.3f%%.%n", nbOfModifiedTrips, globalImprovement);
+        return distanceWeightsNearUserTrip.isEmpty() ? null : Collections.min(distanceWeightsNearUserTrip.values());
+    }
 
-        System.out.println();
-        System.out.println("-----------------------------------------------------------------");
+    /**
+     * Checks if two labels of a linear combination have the same cost, up to {@link ProblemSolver#LABEL_COST_TOLERANCE}.
+     * Equally short paths being equivalent for the linear combination, their labels aren't compared value by value
+     * @param initialLabel The label (distance, danger) with the initial danger values
+     * @param modifiedLabel The label (distance, danger) with the alternative danger values
+     * @param distanceWeight The distance weight of the linear combination
+     * @return True if the labels have the same cost
+     */
+    private static boolean hasSameCost(Pair<Double, Double> initialLabel, Pair<Double, Double> modifiedLabel, double distanceWeight) {
+        double initialCost = distanceWeight * initialLabel.getValue0() + (1 - distanceWeight) * initialLabel.getValue1();
+        double modifiedCost = distanceWeight * modifiedLabel.getValue0() + (1 - distanceWeight) * modifiedLabel.getValue1();
+        return Math.abs(initialCost - modifiedCost) <= LABEL_COST_TOLERANCE * Math.max(Math.abs(initialCost), Math.abs(modifiedCost));
     }
 
     /**
@@ -0,0 +1,483 @@
+package fr.alanguenegou.prd.prdapp.controller;
+
+import fr.alanguenegou.prd.prdapp.PrdappApplication;
+import fr.alanguenegou.prd.prdapp.graph.Graph;
+import fr.alanguenegou.prd.prdapp.graph.LabelStore;
+import fr.alanguenegou.prd.prdapp.graph.Node;
+import fr.alanguenegou.prd.prdapp.userdata.Trip;
+import fr.alanguenegou.prd.prdapp.userdata.UserData;
+import lombok.Getter;
+import org.javatuples.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The class sharing an analysis of user trips between several worker processes, on this machine or on other hosts
+ * sharing its file system. The trips are split into shards (the trips starting from the same node being in the same
+ * shard, so that they still share their searches), described in a task file of a shared directory: each worker loads
+ * the graph and the user data (without the preprocessing of the search modes, the workers searching with
+ * {@link ShardCoordinator#WORKER_SEARCH_MODE}), analyses its shard and writes its partial sums in a result file, which are then merged
+ * in the order of the shards. A shard whose worker failed is launched again on its own, and the shards whose result
+ * is already written for the same task are not analysed again, so an interrupted analysis can be resumed (a shard can
+ * also be analysed by hand with the command of {@link ShardCoordinator#getWorkerCommand(int)}). The labels with the
+ * initial danger values already computed by the coordinator are written in the label stores of the shards, so that
+ * the workers don't search them again, when the coordinator computes them with the search configuration of the workers.
+ * Directory layout: the task file "tache.properties", then for each shard its result file "resultat_i.properties",
+ * its journal "journal_i.log" and the store of its labels with the initial danger values "etiquettes_initiales_i.bin"
+ * @version 1.00
+ */
+public class ShardCoordinator {
+
+    /**
+     * Logger of the class
+     */
+    private final static Logger log = LoggerFactory.getLogger(ShardCoordinator.class);
+
+    /**
+     * The analysis of the differences between the real trips and their computed versions (see {@link ProblemSolver#analyseTrips(Collection)})
+     */
+    public static final String FIRST_PROBLEM = "ecarts";
+
+    /**
+     * The analysis of the improvements brought by the graph modifications (see {@link ProblemSolver#analyseImprovements(Collection)})
+     */
+    public static final String IMPROVEMENTS = "ameliorations";
+
+    /**
+     * The command line option launching the application as a worker, followed by the shared directory and the shard index
+     */
+    public static final String WORKER_OPTION = "--shard-worker";
+
+    /**
+     * The search mode of the workers, which neither use an adaptive weight search nor hub labels
+     */
+    public static final int WORKER_SEARCH_MODE = Graph.HEAP_SEARCH;
+
+    /**
+     * The number of times a shard is launched before the analysis is given up
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * The directory shared with the workers
+     */
+    @Getter
+    private final File directory;
+
+    /**
+     * The number of shards, each one analysed by its own worker
+     */
+    @Getter
+    private final int shardCount;
+
+    /**
+     * The hosts the workers are launched on through ssh, in turn (empty to launch them on this machine)
+     */
+    @Getter
+    private final List<String> hosts;
+
+    /**
+     * The class constructor
+     * @param directory The directory shared with the workers
+     * @param shardCount The number of shards
+     * @param hosts The hosts the workers are launched on (empty to launch them on this machine)
+     */
+    public ShardCoordinator(File directory, int shardCount, List<String> hosts) {
+        this.directory = directory;
+        this.shardCount = shardCount;
+        this.hosts = new ArrayList<>(hosts);
+    }
+
+    /**
+     * Analyses trips in the worker processes and merges their results. The workers apply again every modification
+     * applied to the graph (see {@link Graph#getAppliedModifications()})
+     * @param graph The graph, as loaded by the workers
+     * @param problem The analysis ({@link ShardCoordinator#FIRST_PROBLEM} or {@link ShardCoordinator#IMPROVEMENTS})
+     * @param trips The trips to analyse
+     * @return The merged partial sums of every shard
+     * @throws IOException If the task can't be written, or a shard still fails after its last attempt
+     */
+    public TripAnalysisResult analyse(Graph graph, String problem, Collection<Trip> trips) throws IOException {
+        return analyse(graph, problem, trips, null);
+    }
+
+    /**
+     * Analyses trips in the worker processes and merges their results, the labels of the trips with the initial danger
+     * values being given to the workers
+     * @param graph The graph, as loaded by the workers
+     * @param problem The analysis ({@link ShardCoordinator#FIRST_PROBLEM} or {@link ShardCoordinator#IMPROVEMENTS})
+     * @param trips The trips to analyse
+     * @param initialLabelsByPath The labels of every linear combination with the initial danger values, by (starting node,
+     *                            ending node) of trip, or null if they aren't computed yet
+     * @return The merged partial sums of every shard
+     * @throws IOException If the task or the labels can't be written, or a shard still fails after its last attempt
+     */
+    public TripAnalysisResult analyse(Graph graph, String problem, Collection<Trip> trips,
+                                      Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath) throws IOException {
+        Files.createDirectories(directory.toPath());
+        String taskId = writeTask(graph, problem, trips);
+
+        List<Integer> pendingShards = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (readResult(shard, taskId) == null) {
+                pendingShards.add(shard);
+            }
+        }
+        log.info("Analyse répartie de {} trajets en {} partitions : {} partitions à calculer", trips.size(), shardCount, pendingShards.size());
+        if (initialLabelsByPath != null) {
+            writeInitialLabels(graph, pendingShards, trips, initialLabelsByPath);
+        }
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !pendingShards.isEmpty(); attempt++) {
+            runWorkers(pendingShards);
+            pendingShards.removeIf(shard -> readResult(shard, taskId) != null);
+            for (int shard : pendingShards) {
+                log.warn("La partition {} a échoué (tentative {} sur {}), voir {}", shard, attempt, MAX_ATTEMPTS, getJournalFile(shard));
+            }
+        }
+        if (!pendingShards.isEmpty()) {
+            throw new IOException("Partitions en échec après " + MAX_ATTEMPTS + " tentatives : " + pendingShards);
+        }
+
+        // the partial sums are merged in the order of the shards, so that the result only depends on the number of shards
+        TripAnalysisResult result = new TripAnalysisResult();
+        for (int shard = 0; shard < shardCount; shard++) {
+            result.merge(readResult(shard, taskId));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the task file describing an analysis and its shards, unless it is already written
+     * @param graph The graph
+     * @param problem The analysis
+     * @param trips The trips to analyse
+     * @return The ID of the task, which only depends on its content
+     * @throws IOException If the task file can't be written
+     */
+    String writeTask(Graph graph, String problem, Collection<Trip> trips) throws IOException {
+        // the trips starting from the same node are kept together, in the order of their IDs
+        List<List<Integer>> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards.add(new ArrayList<>());
+        }
+        for (Trip trip : trips) {
+            shards.get(getShard(trip)).add(trip.getId());
+        }
+
+        Properties task = new Properties();
+        task.setProperty("probleme", problem);
+        task.setProperty("partitions", Integer.toString(shardCount));
+        task.setProperty("empreinte", Long.toString(graph.getCompactGraph().getFingerprint(Graph.WITH_INITIAL_DANGER_VALUE)));
+        StringJoiner modifications = new StringJoiner(",");
+        graph.getAppliedModifications().forEach((sectionId, securityFactor) -> modifications.add(sectionId + ":" + securityFactor));
+        task.setProperty("modifications", modifications.toString());
+        for (int shard = 0; shard < shardCount; shard++) {
+            Collections.sort(shards.get(shard));
+            StringJoiner tripIds = new StringJoiner(",");
+            shards.get(shard).forEach(tripId -> tripIds.add(Integer.toString(tripId)));
+            task.setProperty("partition." + shard, tripIds.toString());
+        }
+        String taskId = getTaskId(task);
+        task.setProperty("tache", taskId);
+
+        Properties writtenTask = readProperties(getTaskFile());
+        if (writtenTask == null || !taskId.equals(writtenTask.getProperty("tache"))) {
+            writeProperties(task, getTaskFile());
+        }
+        return taskId;
+    }
+
+    /**
+     * Gets the shard of a trip, the trips starting from the same node being in the same shard
+     * @param trip The trip
+     * @return The shard index
+     */
+    private int getShard(Trip trip) {
+        return Math.floorMod(Long.hashCode(trip.getStartNode().getId()), shardCount);
+    }
+
+    /**
+     * Writes the labels of the trips of some shards with the initial danger values in the label stores of these shards
+     * (see {@link ShardCoordinator#getLabelStoreFile(File, int)}), where their workers find them instead of searching them.
+     * Nothing is written if the graph doesn't search with the configuration of the workers (see
+     * {@link ShardCoordinator#WORKER_SEARCH_MODE}), its labels being then different from the ones of the workers by
+     * the rounding of their sums
+     * @param graph The graph
+     * @param shards The shard indices
+     * @param trips The trips to analyse
+     * @param initialLabelsByPath The labels of every linear combination with the initial danger values, by (starting node,
+     *                            ending node) of trip
+     * @throws IOException If a label store can't be written
+     */
+    private void writeInitialLabels(Graph graph, List<Integer> shards, Collection<Trip> trips,
+                                    Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath) throws IOException {
+        if (graph.getSearchEngine().getSearchMode() != WORKER_SEARCH_MODE || graph.getLabelCalculator().isAdaptiveWeightSearch()
+                || graph.getSearchEngine().hasHubLabels()) {
+            log.info("Étiquettes initiales non transmises aux partitions : configuration de recherche différente de celle des travailleurs");
+            return;
+        }
+        Map<Integer, LabelStore> stores = new HashMap<>();
+        try {
+            for (int shard : shards) {
+                stores.put(shard, LabelStore.open(getLabelStoreFile(directory, shard), graph.getCompactGraph(),
+                        Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS, WORKER_SEARCH_MODE, false, false));
+            }
+            for (Trip trip : trips) {
+                LabelStore store = stores.get(getShard(trip));
+                HashMap<Double, Pair<Double, Double>> labels = initialLabelsByPath.get(trip.getEndpoints());
+                if (store != null && labels != null) {
+                    store.put(trip.getStartNode().getId(), trip.getEndNode().getId(), labels);
+                }
+            }
+        } finally {
+            for (LabelStore store : stores.values()) {
+                store.close();
+            }
+        }
+    }
+
+    /**
+     * Computes the ID of a task from its content (a 64-bit FNV-1a hash)
+     * @param task The content of the task
+     * @return The ID
+     */
+    private static String getTaskId(Properties task) {
+        long hash = 0xcbf29ce484222325L;
+        for (String key : new TreeSet<>(task.stringPropertyNames())) {
+            for (byte b : (key + "=" + task.getProperty(key) + "\n").getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+        }
+        return Long.toHexString(hash);
+    }
+
+    /**
+     * Launches the workers of some shards at once and waits for them
+     * @param shards The shard indices
+     */
+    private void runWorkers(List<Integer> shards) {
+        Map<Integer, Process> workers = new LinkedHashMap<>();
+        for (int shard : shards) {
+            getResultFile(shard).delete();
+            try {
+                workers.put(shard, new ProcessBuilder(getWorkerCommand(shard))
+                        .directory(new File(System.getProperty("user.dir")))
+                        .redirectErrorStream(true)
+                        .redirectOutput(getJournalFile(shard))
+                        .start());
+            } catch (IOException e) {
+                log.error("Impossible de lancer le processus de la partition {}", shard, e);
+            }
+        }
+        for (Map.Entry<Integer, Process> worker : workers.entrySet()) {
+            try {
+                int exitValue = worker.getValue().waitFor();
+                if (exitValue != 0) {
+                    log.warn("Le processus de la partition {} s'est terminé avec le code {}", worker.getKey(), exitValue);
+                }
+            } catch (InterruptedException e) {
+                workers.values().forEach(Process::destroy);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Builds the command analysing a shard: the application is launched again with the same class path and JVM options
+     * (on another host through ssh, in the same working directory)
+     * @param shard The shard index
+     * @return The command
+     */
+    public List<String> getWorkerCommand(int shard) {
+        List<String> command = new ArrayList<>();
+        command.add(hosts.isEmpty() ? Paths.get(System.getProperty("java.home"), "bin", "java").toString() : "java");
+        for (String jvmOption : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (jvmOption.startsWith("-X") || jvmOption.startsWith("-D")) {
+                command.add(jvmOption);
+            }
+        }
+        String classPath = System.getProperty("java.class.path");
+        if (classPath.endsWith(".jar") && !classPath.contains(File.pathSeparator)) {
+            // an executable jar starts the application with its own launcher
+            command.add("-jar");
+            command.add(classPath);
+        }
+        else {
+            command.add("-cp");
+            command.add(classPath);
+            command.add(PrdappApplication.class.getName());
+        }
+        command.add(WORKER_OPTION);
+        command.add(directory.getAbsolutePath());
+        command.add(Integer.toString(shard));
+
+        if (hosts.isEmpty()) {
+            return command;
+        }
+        StringJoiner remoteCommand = new StringJoiner(" ", "cd " + quote(System.getProperty("user.dir")) + " && ", "");
+        command.forEach(argument -> remoteCommand.add(quote(argument)));
+        return Arrays.asList("ssh", hosts.get(shard % hosts.size()), remoteCommand.toString());
+    }
+
+    /**
+     * Analyses the shard of a task in this process and writes its result file (run by the workers)
+     * @param problemSolver The problem solver, with the graph and the user data loaded as in the coordinator process
+     *                      and the same analysis options
+     * @param directory The directory shared with the coordinator
+     * @param shard The shard index
+     * @throws IOException If the task can't be read, doesn't match the loaded data or the result can't be written
+     */
+    public static void runWorker(ProblemSolver problemSolver, File directory, int shard) throws IOException {
+        Graph graph = problemSolver.getGraph();
+        UserData userData = problemSolver.getUserData();
+        ShardCoordinator coordinator = new ShardCoordinator(directory, 0, Collections.emptyList());
+        Properties task = readProperties(coordinator.getTaskFile());
+        if (task == null || task.getProperty("partition." + shard) == null) {
+            throw new IOException("Tâche ou partition " + shard + " introuvable dans " + directory);
+        }
+        if (!Long.toString(graph.getCompactGraph().getFingerprint(Graph.WITH_INITIAL_DANGER_VALUE)).equals(task.getProperty("empreinte"))) {
+            throw new IOException("Le graphe chargé ne correspond pas à celui de la tâche " + task.getProperty("tache"));
+        }
+
+        problemSolver.filterUserData();
+        List<Trip> trips = new ArrayList<>();
+        for (String tripId : task.getProperty("partition." + shard).split(",")) {
+            if (tripId.isEmpty()) {
+                continue;
+            }
+            Trip trip = userData.getTrips().get(Integer.parseInt(tripId));
+            if (trip == null) {
+                throw new IOException("Trajet " + tripId + " absent des données utilisateur chargées");
+            }
+            trips.add(trip);
+        }
+        log.info("Partition {} de la tâche {} : {} trajets", shard, task.getProperty("tache"), trips.size());
+
+        TripAnalysisResult result;
+        if (IMPROVEMENTS.equals(task.getProperty("probleme"))) {
+            HashMap<Long, Integer> modifications = new HashMap<>();
+            for (String modification : task.getProperty("modifications").split(",")) {
+                if (!modification.isEmpty()) {
+                    String[] values = modification.split(":");
+                    modifications.put(Long.parseLong(values[0]), Integer.parseInt(values[1]));
+                }
+            }
+            graph.modifyGraph(modifications);
+            result = problemSolver.analyseImprovements(trips);
+        }
+        else {
+            result = problemSolver.analyseTrips(trips);
+        }
+
+        Properties resultProperties = new Properties();
+        resultProperties.setProperty("tache", task.getProperty("tache"));
+        result.writeTo(resultProperties);
+        writeProperties(resultProperties, coordinator.getResultFile(shard));
+    }
+
+    /**
+     * Reads the result of a shard
+     * @param shard The shard index
+     * @param taskId The ID of the task
+     * @return The partial sums of the shard, or null if the shard has no complete result for this task
+     */
+    TripAnalysisResult readResult(int shard, String taskId) {
+        try {
+            Properties result = readProperties(getResultFile(shard));
+            if (result == null || !taskId.equals(result.getProperty("tache"))) {
+                return null;
+            }
+            return TripAnalysisResult.readFrom(result);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Résultat illisible pour la partition {}", shard, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the task file
+     * @return The task file
+     */
+    private File getTaskFile() {
+        return new File(directory, "tache.properties");
+    }
+
+    /**
+     * Gets the result file of a shard
+     * @param shard The shard index
+     * @return The result file
+     */
+    File getResultFile(int shard) {
+        return new File(directory, "resultat_" + shard + ".properties");
+    }
+
+    /**
+     * Gets the journal file of a shard, where the output of its worker is written
+     * @param shard The shard index
+     * @return The journal file
+     */
+    private File getJournalFile(int shard) {
+        return new File(directory, "journal_" + shard + ".log");
+    }
+
+    /**
+     * Gets the file the labels computed by the worker of a shard with the initial danger values are stored in between
+     * its attempts (each worker having its own store, as the stores can't be appended to by several processes)
+     * @param directory The directory shared with the coordinator
+     * @param shard The shard index
+     * @return The label store file
+     */
+    public static File getLabelStoreFile(File directory, int shard) {
+        return new File(directory, "etiquettes_initiales_" + shard + ".bin");
+    }
+
+    /**
+     * Reads a properties file
+     * @param file The file
+     * @return The properties, or null if the file doesn't exist
+     * @throws IOException If the file can't be read
+     */
+    private static Properties readProperties(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * Writes a properties file, through a temporary file moved at once so that a process reading it never sees it partly written
+     * @param properties The properties
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    private static void writeProperties(Properties properties, File file) throws IOException {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Quotes an argument for a POSIX shell
+     * @param argument The argument
+     * @return The quoted argument
+     */
+    private static String quote(String argument) {
+        return "'" + argument.replace("'", "'\\''") + "'";
+    }
+}
@@ -0,0 +1,178 @@
+package fr.alanguenegou.prd.prdapp.controller;
+
+import fr.alanguenegou.prd.prdapp.graph.Graph;
+import fr.alanguenegou.prd.prdapp.graph.Node;
+import fr.alanguenegou.prd.prdapp.userdata.Trip;
+import lombok.Getter;
+import org.javatuples.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The class processing many trips in parallel on a fork/join pool: the longest tasks are started first so that the
+ * workers finish together, each worker taking the next task as soon as it is free, and every result is kept at the
+ * position of its trip so that the reductions done afterwards in this order give the same values whatever the number of workers.
+ * The searches of each worker use its own search state (see {@link fr.alanguenegou.prd.prdapp.graph.SearchEngine#getSearchContext()})
+ * @version 1.00
+ */
+public class TripAnalysisEngine {
+
+    /**
+     * Logger of the class
+     */
+    private final static Logger log = LoggerFactory.getLogger(TripAnalysisEngine.class);
+
+    /**
+     * The number of progress reports during a processing
+     */
+    private static final int PROGRESS_STEPS = 10;
+
+    /**
+     * The number of workers
+     */
+    @Getter
+    private final int parallelism;
+
+    /**
+     * The pool running the workers
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The class constructor
+     * @param parallelism The number of workers
+     */
+    public TripAnalysisEngine(int parallelism) {
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Computes the labels of many path requests, the requests starting from the same node being computed together
+     * (see {@link Graph#calculateLabelsForManyPaths(Collection, int)}) and the groups going farthest first
+     * @param graph The graph
+     * @param paths The (starting node, ending node) path requests
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The labels of every linear combination of each path request
+     */
+    public HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> calculateLabels(Graph graph, Collection<Pair<Node, Node>> paths,
+                                                                                           int useOfDangerValue) {
+        LinkedHashMap<Node, List<Pair<Node, Node>>> pathsBySource = new LinkedHashMap<>();
+        for (Pair<Node, Node> path : paths) {
+            pathsBySource.computeIfAbsent(path.getValue0(), source -> new ArrayList<>()).add(path);
+        }
+        List<List<Pair<Node, Node>>> groups = new ArrayList<>(pathsBySource.values());
+
+        // the linear scan search mode keeps its state in the nodes, so its searches can't run together
+        int workers = graph.getSearchEngine().getSearchMode() == Graph.LINEAR_SCAN_SEARCH ? 1 : parallelism;
+        Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> labelsByPath = new ConcurrentHashMap<>();
+        run(groups.size(), workers, group -> getFarthestSinkDistance(groups.get(group)),
+                group -> labelsByPath.putAll(graph.calculateLabelsForManyPaths(groups.get(group), useOfDangerValue)),
+                "points de départ traités");
+        return new HashMap<>(labelsByPath);
+    }
+
+    /**
+     * Applies an analysis to every trip, the trips with the most nodes first
+     * @param trips The trips
+     * @param analysis The analysis of a trip (only changing this trip)
+     * @param description The description of the processed trips in the progress reports
+     * @param <R> The type of the result of an analysis
+     * @return The result of each trip, in the order of the trips
+     */
+    public <R> List<R> analyse(List<Trip> trips, Function<Trip, R> analysis, String description) {
+        Object[] results = new Object[trips.size()];
+        run(trips.size(), parallelism, trip -> trips.get(trip).getTrip().size(),
+                trip -> results[trip] = analysis.apply(trips.get(trip)), description);
+        List<R> orderedResults = new ArrayList<>(results.length);
+        for (Object result : results) {
+            @SuppressWarnings("unchecked") R typedResult = (R) result;
+            orderedResults.add(typedResult);
+        }
+        return orderedResults;
+    }
+
+    /**
+     * Runs some tasks on the workers, the longest ones first, and waits for them
+     * @param taskCount The number of tasks
+     * @param workers The number of workers to use
+     * @param length The estimated length of each task
+     * @param task The task of each index
+     * @param description The description of the tasks in the progress reports
+     */
+    private void run(int taskCount, int workers, IntToDoubleFunction length, IntConsumer task, String description) {
+        int[] order = getDecreasingLengthOrder(taskCount, length);
+        AtomicInteger nextTask = new AtomicInteger();
+        AtomicInteger doneTasks = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int position = nextTask.getAndIncrement(); position < taskCount; position = nextTask.getAndIncrement()) {
+                task.accept(order[position]);
+                reportProgress(doneTasks.incrementAndGet(), taskCount, description);
+            }
+        };
+
+        if (workers <= 1) {
+            worker.run();
+            return;
+        }
+        List<ForkJoinTask<?>> runningWorkers = new ArrayList<>(workers);
+        for (int i = 0; i < Math.min(workers, taskCount); i++) {
+            runningWorkers.add(pool.submit(worker));
+        }
+        for (ForkJoinTask<?> runningWorker : runningWorkers) {
+            runningWorker.join();
+        }
+    }
+
+    /**
+     * Sorts tasks by decreasing estimated length (ties keep the index order)
+     * @param taskCount The number of tasks
+     * @param length The estimated length of each task
+     * @return The task indices, the longest task first
+     */
+    private static int[] getDecreasingLengthOrder(int taskCount, IntToDoubleFunction length) {
+        double[] lengths = new double[taskCount];
+        Integer[] order = new Integer[taskCount];
+        for (int task = 0; task < taskCount; task++) {
+            lengths[task] = length.applyAsDouble(task);
+            order[task] = task;
+        }
+        Arrays.sort(order, (first, second) -> Double.compare(lengths[second], lengths[first]));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Logs the progress of a processing each time it passes a step
+     * @param doneTasks The number of tasks done
+     * @param taskCount The number of tasks
+     * @param description The description of the tasks
+     */
+    private static void reportProgress(int doneTasks, int taskCount, String description) {
+        if ((long) doneTasks * PROGRESS_STEPS / taskCount != (long) (doneTasks - 1) * PROGRESS_STEPS / taskCount) {
+            log.info("{}% -> {} {} sur un total de {}", Math.round(100.0 * doneTasks / taskCount), doneTasks, description, taskCount);
+        }
+    }
+
+    /**
+     * Estimates the length of the searches of path requests sharing their starting node
+     * @param paths The path requests
+     * @return The largest distance (in coordinate degrees) between the starting node and an ending node
+     */
+    private static double getFarthestSinkDistance(List<Pair<Node, Node>> paths) {
+        double farthestDistance = 0.0;
+        for (Pair<Node, Node> path : paths) {
+            farthestDistance = Math.max(farthestDistance, Math.hypot(path.getValue1().getCoordX() - path.getValue0().getCoordX(),
+                    path.getValue1().getCoordY() - path.getValue0().getCoordY()));
+        }
+        return farthestDistance;
+    }
+}
@@ -0,0 +1,200 @@
+package fr.alanguenegou.prd.prdapp.controller;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * The class gathering the partial sums of an analysis of user trips (differences between the real trips and their
+ * computed versions, improvements brought by graph modifications), so that the analyses of several parts of the trips
+ * can be merged into the result of all of them (see {@link ShardCoordinator})
+ * @version 1.00
+ */
+public class TripAnalysisResult {
+
+    /**
+     * The number of distribution intervals of the differences (1% wide between 0 and 10%, then every difference outside of them)
+     */
+    public static final int DISTRIBUTION_SIZE = 11;
+
+    /**
+     * The number of analysed trips
+     */
+    @Getter
+    private int tripCount = 0;
+
+    /**
+     * The sum of the percent differences between the real trips and their computed versions
+     */
+    @Getter
+    private double differenceSum = 0.0;
+
+    /**
+     * The number of differences in each distribution interval
+     */
+    private final int[] distribution = new int[DISTRIBUTION_SIZE];
+
+    /**
+     * The number of trips improved by the graph modifications
+     */
+    @Getter
+    private int modifiedTripCount = 0;
+
+    /**
+     * The sum of the percent improvements of the improved trips
+     */
+    @Getter
+    private double improvementSum = 0.0;
+
+    /**
+     * Adds the difference between a real trip and its computed version
+     * @param difference The percent difference
+     */
+    public void addDifference(double difference) {
+        tripCount++;
+        differenceSum += difference;
+
+        // analyse de la distribution entre 0 et 100% d'écart
+        /*
+        // fill distribution array
+        if (difference >= 0.0 && difference < 10.0)
+            distribution[0]++;
+        else if (difference >= 10.0 && difference < 20.0)
+            distribution[1]++;
+        else if (difference >= 20.0 && difference < 30.0)
+            distribution[2]++;
+        else if (difference >= 30.0 && difference < 40.0)
+            distribution[3]++;
+        else if (difference >= 40.0 && difference < 50.0)
+            distribution[4]++;
+        else if (difference >= 50.0 && difference < 60.0)
+            distribution[5]++;
+        else if (difference >= 60.0 && difference < 70.0)
+            distribution[6]++;
+        else if (difference >= 70.0 && difference < 80.0)
+            distribution[7]++;
+        else if (difference >= 80.0 && difference < 90.0)
+            distribution[8]++;
+        else if (difference >= 90.0 && difference <= 100.0)
+            distribution[9]++;
+        else
+            distribution[10]++;
+         */
+
+        // fill distribution array
+        if (difference >= 0.0 && difference < 1.0)
+            distribution[0]++;
+        else if (difference >= 1.0 && difference < 2.0)
+            distribution[1]++;
+        else if (difference >= 2.0 && difference < 3.0)
+            distribution[2]++;
+        else if (difference >= 3.0 && difference < 4.0)
+            distribution[3]++;
+        else if (difference >= 4.0 && difference < 5.0)
+            distribution[4]++;
+        else if (difference >= 5.0 && difference < 6.0)
+            distribution[5]++;
+        else if (difference >= 6.0 && difference < 7.0)
+            distribution[6]++;
+        else if (difference >= 7.0 && difference < 8.0)
+            distribution[7]++;
+        else if (difference >= 8.0 && difference < 9.0)
+            distribution[8]++;
+        else if (difference >= 9.0 && difference <= 10.0)
+            distribution[9]++;
+        else
+            distribution[10]++;
+    }
+
+    /**
+     * Adds the improvement of a trip brought by the graph modifications
+     * @param improvement The percent improvement, or null if the trip isn't improved
+     */
+    public void addImprovement(Double improvement) {
+        tripCount++;
+        if (improvement != null) {
+            modifiedTripCount++;
+            improvementSum += improvement;
+        }
+    }
+
+    /**
+     * Adds the partial sums of another analysis to this one
+     * @param other The other analysis
+     */
+    public void merge(TripAnalysisResult other) {
+        tripCount += other.tripCount;
+        differenceSum += other.differenceSum;
+        for (int interval = 0; interval < DISTRIBUTION_SIZE; interval++) {
+            distribution[interval] += other.distribution[interval];
+        }
+        modifiedTripCount += other.modifiedTripCount;
+        improvementSum += other.improvementSum;
+    }
+
+    /**
+     * Gets the number of differences in each distribution interval
+     * @return A copy of the distribution
+     */
+    public int[] getDistribution() {
+        return distribution.clone();
+    }
+
+    /**
+     * Writes the partial sums of this analysis in properties (the double values being written exactly)
+     * @param properties The properties to fill
+     */
+    public void writeTo(Properties properties) {
+        properties.setProperty("trajets", Integer.toString(tripCount));
+        properties.setProperty("sommeEcarts", Double.toString(differenceSum));
+        StringBuilder intervals = new StringBuilder();
+        for (int interval = 0; interval < DISTRIBUTION_SIZE; interval++) {
+            intervals.append(interval == 0 ? "" : ",").append(distribution[interval]);
+        }
+        properties.setProperty("distribution", intervals.toString());
+        properties.setProperty("trajetsAmeliores", Integer.toString(modifiedTripCount));
+        properties.setProperty("sommeAmeliorations", Double.toString(improvementSum));
+    }
+
+    /**
+     * Reads the partial sums of an analysis written by {@link TripAnalysisResult#writeTo(Properties)}
+     * @param properties The properties
+     * @return The analysis
+     * @throws IllegalArgumentException If a partial sum is missing or malformed
+     */
+    public static TripAnalysisResult readFrom(Properties properties) {
+        TripAnalysisResult result = new TripAnalysisResult();
+        try {
+            result.tripCount = Integer.parseInt(getRequiredProperty(properties, "trajets"));
+            result.differenceSum = Double.parseDouble(getRequiredProperty(properties, "sommeEcarts"));
+            String[] intervals = getRequiredProperty(properties, "distribution").split(",");
+            if (intervals.length != DISTRIBUTION_SIZE) {
+                throw new IllegalArgumentException("Distribution des écarts incomplète : " + Arrays.toString(intervals));
+            }
+            for (int interval = 0; interval < DISTRIBUTION_SIZE; interval++) {
+                result.distribution[interval] = Integer.parseInt(intervals[interval]);
+            }
+            result.modifiedTripCount = Integer.parseInt(getRequiredProperty(properties, "trajetsAmeliores"));
+            result.improvementSum = Double.parseDouble(getRequiredProperty(properties, "sommeAmeliorations"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Résultat d'analyse de trajets incomplet ou mal formé", e);
+        }
+        return result;
+    }
+
+    /**
+     * Gets a property that must be present
+     * @param properties The properties
+     * @param key The key of the property
+     * @return The value of the property
+     * @throws IllegalArgumentException If the property is missing
+     */
+    private static String getRequiredProperty(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Valeur absente du résultat d'analyse de trajets : " + key);
+        }
+        return value;
+    }
+}
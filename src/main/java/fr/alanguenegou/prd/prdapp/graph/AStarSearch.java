@@ -0,0 +1,68 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+/**
+ * The class computing point-to-point shortest-paths on a {@link CompactGraph} with the A* algorithm:
+ * nodes are explored by increasing cost from the source plus a lower bound on their cost to the sink,
+ * so that the search heads towards the sink instead of growing evenly around the source
+ * @version 1.00
+ */
+public final class AStarSearch {
+
+    /**
+     * Private constructor of this utility class
+     */
+    private AStarSearch() {
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node, stopping once the sink is taken out of the queue.
+     * The result is exact as long as the lower bound is admissible (never above the real cost to the sink);
+     * an already explored node is explored again if a cheaper path to it is found, so the bound doesn't need to be consistent
+     * @param graph The compact graph
+     * @param context The search context (reset by this method)
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param lowerBound The lower bounds on the cost from any node to the sink
+     * @param statistics The statistics in which the settled nodes are recorded
+     * @return The shortest-path, or {@link ShortestPath#NOT_FOUND} if the sink can't be reached
+     */
+    public static ShortestPath search(CompactGraph graph, SearchContext context, int source, int sink,
+                                      double distanceWeight, int useOfDangerValue, LowerBound lowerBound,
+                                      SearchStatistics statistics) {
+        context.reset();
+        IndexedMinHeap unsettledNodes = context.getQueue();
+
+        context.setCost(source, 0.0, -1, 0.0, 0.0);
+        unsettledNodes.push(source, context.getPotential(source, lowerBound));
+        int settled = 0;
+
+        while (!unsettledNodes.isEmpty()) {
+            int currentNode = unsettledNodes.poll();
+            settled++;
+
+            // the sink has the lowest estimated total cost, so no other path can be cheaper
+            if (currentNode == sink) {
+                statistics.recordSearch(settled, 0);
+                return ShortestPath.fromSearchContext(graph, context, source, sink);
+            }
+
+            double currentCost = context.getCost(currentNode);
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                int adjacentNode = graph.getEdgeTarget(edge);
+                double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+
+                // queues the neighbour (again if it had already been explored) if its cost improved
+                if (newCost < context.getCost(adjacentNode)) {
+                    context.setCost(adjacentNode, newCost, edge,
+                            context.getDistance(currentNode) + graph.getEdgeDistance(edge),
+                            context.getDanger(currentNode) + graph.getEdgeDanger(edge, useOfDangerValue));
+                    unsettledNodes.push(adjacentNode, newCost + context.getPotential(adjacentNode, lowerBound));
+                }
+            }
+        }
+        statistics.recordSearch(settled, 0);
+        return ShortestPath.NOT_FOUND;
+    }
+}
@@ -0,0 +1,195 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The class holding the arc flags of a {@link CompactGraph} for a specific linear combination:
+ * each edge has one bit per cell of a {@link CellPartition}, set if the edge starts a shortest-path to a boundary node
+ * of the cell or ends inside the cell. A Dijkstra search towards a sink can then skip every edge whose flag for the
+ * cell of the sink isn't set, and still find a shortest-path (the one made of the shortest-path to the last boundary node
+ * it goes through and of edges inside the cell)
+ * @version 1.00
+ */
+public class ArcFlags {
+
+    /**
+     * The compact graph of these flags
+     */
+    private final CompactGraph graph;
+
+    /**
+     * The partition of the nodes into cells
+     */
+    private final CellPartition partition;
+
+    /**
+     * The weight of the distance value for the linear combination of these flags
+     */
+    @Getter
+    private final double distanceWeight;
+
+    /**
+     * A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used by these flags
+     */
+    @Getter
+    private final int useOfDangerValue;
+
+    /**
+     * The flags of each edge, one bit per cell
+     */
+    private final long[] flags;
+
+    /**
+     * The class constructor, computing the flags of every cell
+     * @param graph The compact graph
+     * @param partition The partition of the nodes into cells
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     */
+    public ArcFlags(CompactGraph graph, CellPartition partition, double distanceWeight, int useOfDangerValue) {
+        this.graph = graph;
+        this.partition = partition;
+        this.distanceWeight = distanceWeight;
+        this.useOfDangerValue = useOfDangerValue;
+        this.flags = new long[graph.getEdgeCount()];
+        recomputeCells(partition.getCellCount() == Long.SIZE ? -1L : (1L << partition.getCellCount()) - 1);
+    }
+
+    /**
+     * Recomputes the flags of some cells: one backward search on the predecessors from each of their boundary nodes
+     * flags the first edge of the shortest-path from every node to this boundary node. The cells are processed in parallel
+     * @param cells The cells to recompute, one bit per cell
+     */
+    public void recomputeCells(long cells) {
+        int[] cellsToRecompute = IntStream.range(0, partition.getCellCount()).filter(cell -> (cells & (1L << cell)) != 0).toArray();
+        BitSet[] flaggedEdges = IntStream.of(cellsToRecompute).parallel()
+                .mapToObj(this::computeFlaggedEdges)
+                .toArray(BitSet[]::new);
+
+        for (int edge = 0; edge < flags.length; edge++) {
+            flags[edge] &= ~cells;
+        }
+        for (int i = 0; i < cellsToRecompute.length; i++) {
+            long cellBit = 1L << cellsToRecompute[i];
+            for (int edge = flaggedEdges[i].nextSetBit(0); edge >= 0; edge = flaggedEdges[i].nextSetBit(edge + 1)) {
+                flags[edge] |= cellBit;
+            }
+        }
+    }
+
+    /**
+     * Computes the edges to flag for a cell
+     * @param cell The cell
+     * @return The set of edges to flag
+     */
+    private BitSet computeFlaggedEdges(int cell) {
+        BitSet flaggedEdges = new BitSet(graph.getEdgeCount());
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            if (partition.getCell(graph.getEdgeTarget(edge)) == cell) {
+                flaggedEdges.set(edge);
+            }
+        }
+
+        SearchContext context = new SearchContext(graph.getNodeCount());
+        for (int boundaryNode : partition.getBoundaryNodes(cell)) {
+            DijkstraSearch.searchAll(graph, context, boundaryNode, distanceWeight, useOfDangerValue, true);
+            for (int node = 0; node < graph.getNodeCount(); node++) {
+                if (node != boundaryNode && context.isVisited(node)) {
+                    flaggedEdges.set(context.getPredecessorEdge(node));
+                }
+            }
+        }
+        return flaggedEdges;
+    }
+
+    /**
+     * Finds the cells whose flags won't be valid anymore once the alternative danger values of some edges are changed
+     * (to be called before the change, these flags having been computed with the current values).
+     * A cell is stale if one of the changed edges is flagged for it, or if a changed edge gets cheaper and then gives
+     * a shorter path to one of its boundary nodes than the current ones (one search from each end of the edge)
+     * @param newAlternativeDangers The new alternative danger value of each changed edge
+     * @return The stale cells, one bit per cell (none if these flags use the initial danger values)
+     */
+    public long findStaleCells(Map<Integer, Double> newAlternativeDangers) {
+        if (useOfDangerValue != Graph.WITH_ALTERNATIVE_DANGER_VALUE) {
+            return 0L;
+        }
+
+        long staleCells = 0L;
+        SearchContext fromSource = new SearchContext(graph.getNodeCount());
+        SearchContext fromTarget = new SearchContext(graph.getNodeCount());
+        for (Map.Entry<Integer, Double> newAlternativeDanger : newAlternativeDangers.entrySet()) {
+            int edge = newAlternativeDanger.getKey();
+            staleCells |= flags[edge];
+
+            double newCost = distanceWeight*graph.getEdgeDistance(edge) + (1-distanceWeight)*newAlternativeDanger.getValue();
+            if (newCost >= graph.getEdgeCost(edge, distanceWeight, useOfDangerValue)) {
+                continue;
+            }
+            DijkstraSearch.searchAll(graph, fromSource, graph.getEdgeSource(edge), distanceWeight, useOfDangerValue, false);
+            DijkstraSearch.searchAll(graph, fromTarget, graph.getEdgeTarget(edge), distanceWeight, useOfDangerValue, false);
+            for (int cell = 0; cell < partition.getCellCount(); cell++) {
+                if ((staleCells & (1L << cell)) != 0) {
+                    continue;
+                }
+                for (int boundaryNode : partition.getBoundaryNodes(cell)) {
+                    if (fromTarget.isVisited(boundaryNode)
+                            && newCost + fromTarget.getCost(boundaryNode) < fromSource.getCost(boundaryNode)) {
+                        staleCells |= 1L << cell;
+                        break;
+                    }
+                }
+            }
+        }
+        return staleCells;
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node with a Dijkstra search restricted to the edges
+     * flagged for the cell of the sink
+     * @param context The search context (reset by this method)
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param statistics The statistics in which the settled nodes are recorded
+     * @return The shortest-path, or {@link ShortestPath#NOT_FOUND} if the sink can't be reached
+     */
+    public ShortestPath search(SearchContext context, int source, int sink, SearchStatistics statistics) {
+        context.reset();
+        IndexedMinHeap unsettledNodes = context.getQueue();
+        long sinkCellBit = 1L << partition.getCell(sink);
+
+        context.setCost(source, 0.0, -1, 0.0, 0.0);
+        unsettledNodes.push(source, 0.0);
+        int settled = 0;
+
+        while (!unsettledNodes.isEmpty()) {
+            int currentNode = unsettledNodes.poll();
+            context.settle(currentNode);
+            settled++;
+            if (currentNode == sink) {
+                break;
+            }
+
+            double currentCost = context.getCost(currentNode);
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                int adjacentNode = graph.getEdgeTarget(edge);
+                if ((flags[edge] & sinkCellBit) == 0 || context.isSettled(adjacentNode)) {
+                    continue;
+                }
+                double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+                if (newCost < context.getCost(adjacentNode)) {
+                    context.setCost(adjacentNode, newCost, edge,
+                            context.getDistance(currentNode) + graph.getEdgeDistance(edge),
+                            context.getDanger(currentNode) + graph.getEdgeDanger(edge, useOfDangerValue));
+                    unsettledNodes.push(adjacentNode, newCost);
+                }
+            }
+        }
+        statistics.recordSearch(settled, 0);
+        return ShortestPath.fromSearchContext(graph, context, source, sink);
+    }
+}
@@ -0,0 +1,156 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+/**
+ * The class computing point-to-point shortest-paths on a {@link CompactGraph} with a bidirectional Dijkstra algorithm:
+ * a forward search from the source on the successors and a backward search from the sink on the predecessors
+ * (reverse CSR) are run alternately until they can't improve the best path found where they meet
+ * @version 1.00
+ */
+public final class BidirectionalDijkstraSearch {
+
+    /**
+     * Private constructor of this utility class
+     */
+    private BidirectionalDijkstraSearch() {
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node.
+     * In the backward context, costs and totals are the ones from each node to the sink
+     * and predecessor edges are the first edges of these paths
+     * @param graph The compact graph
+     * @param forward The search context of the forward direction (reset by this method)
+     * @param backward The search context of the backward direction (reset by this method)
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param statistics The statistics in which the settled nodes of both directions are recorded
+     * @return The shortest-path, or {@link ShortestPath#NOT_FOUND} if the sink can't be reached
+     */
+    public static ShortestPath search(CompactGraph graph, SearchContext forward, SearchContext backward, int source, int sink,
+                                      double distanceWeight, int useOfDangerValue, SearchStatistics statistics) {
+        forward.reset();
+        backward.reset();
+        IndexedMinHeap forwardQueue = forward.getQueue();
+        IndexedMinHeap backwardQueue = backward.getQueue();
+
+        forward.setCost(source, 0.0, -1, 0.0, 0.0);
+        forwardQueue.push(source, 0.0);
+        backward.setCost(sink, 0.0, -1, 0.0, 0.0);
+        backwardQueue.push(sink, 0.0);
+
+        // cost of the best path found so far and node where its forward and backward halves meet
+        double bestCost = source == sink ? 0.0 : Double.MAX_VALUE;
+        int meetingNode = source == sink ? source : -1;
+        int forwardSettled = 0;
+        int backwardSettled = 0;
+
+        // no shorter path can be found once the sum of both queue minimums reaches the best cost
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()
+                && forwardQueue.peekKey() + backwardQueue.peekKey() < bestCost) {
+
+            // expands the direction whose next node is the closest to its origin
+            if (forwardQueue.peekKey() <= backwardQueue.peekKey()) {
+                int currentNode = forwardQueue.poll();
+                forward.settle(currentNode);
+                forwardSettled++;
+
+                double currentCost = forward.getCost(currentNode);
+                for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                    int adjacentNode = graph.getEdgeTarget(edge);
+                    if (forward.isSettled(adjacentNode)) {
+                        continue;
+                    }
+                    double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+                    if (newCost < forward.getCost(adjacentNode)) {
+                        forward.setCost(adjacentNode, newCost, edge,
+                                forward.getDistance(currentNode) + graph.getEdgeDistance(edge),
+                                forward.getDanger(currentNode) + graph.getEdgeDanger(edge, useOfDangerValue));
+                        forwardQueue.push(adjacentNode, newCost);
+
+                        // checks if a better path goes through this node, already reached by the backward direction
+                        if (backward.isVisited(adjacentNode) && newCost + backward.getCost(adjacentNode) < bestCost) {
+                            bestCost = newCost + backward.getCost(adjacentNode);
+                            meetingNode = adjacentNode;
+                        }
+                    }
+                }
+            }
+            else {
+                int currentNode = backwardQueue.poll();
+                backward.settle(currentNode);
+                backwardSettled++;
+
+                double currentCost = backward.getCost(currentNode);
+                for (int position = graph.getFirstIncomingEdge(currentNode); position < graph.getLastIncomingEdgeExclusive(currentNode); position++) {
+                    int edge = graph.getIncomingEdge(position);
+                    int adjacentNode = graph.getEdgeSource(edge);
+                    if (backward.isSettled(adjacentNode)) {
+                        continue;
+                    }
+                    double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+                    if (newCost < backward.getCost(adjacentNode)) {
+                        backward.setCost(adjacentNode, newCost, edge,
+                                backward.getDistance(currentNode) + graph.getEdgeDistance(edge),
+                                backward.getDanger(currentNode) + graph.getEdgeDanger(edge, useOfDangerValue));
+                        backwardQueue.push(adjacentNode, newCost);
+
+                        // checks if a better path goes through this node, already reached by the forward direction
+                        if (forward.isVisited(adjacentNode) && newCost + forward.getCost(adjacentNode) < bestCost) {
+                            bestCost = newCost + forward.getCost(adjacentNode);
+                            meetingNode = adjacentNode;
+                        }
+                    }
+                }
+            }
+        }
+        statistics.recordSearch(forwardSettled, backwardSettled);
+
+        if (meetingNode == -1) {
+            return ShortestPath.NOT_FOUND;
+        }
+        return joinHalves(graph, forward, backward, source, sink, meetingNode);
+    }
+
+    /**
+     * Builds the complete path from its forward half (source to meeting node) and its backward half (meeting node to sink)
+     * @param graph The compact graph
+     * @param forward The search context of the forward direction
+     * @param backward The search context of the backward direction
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param meetingNode The node where both halves meet
+     * @return The complete shortest-path
+     */
+    static ShortestPath joinHalves(CompactGraph graph, SearchContext forward, SearchContext backward,
+                                   int source, int sink, int meetingNode) {
+        int forwardLength = 1;
+        for (int node = meetingNode; node != source; node = graph.getEdgeSource(forward.getPredecessorEdge(node))) {
+            forwardLength++;
+        }
+        int backwardLength = 0;
+        for (int node = meetingNode; node != sink; node = graph.getEdgeTarget(backward.getPredecessorEdge(node))) {
+            backwardLength++;
+        }
+
+        int[] nodes = new int[forwardLength + backwardLength];
+        int node = meetingNode;
+        for (int i = forwardLength - 1; i >= 0; i--) {
+            nodes[i] = node;
+            if (i > 0) {
+                node = graph.getEdgeSource(forward.getPredecessorEdge(node));
+            }
+        }
+        node = meetingNode;
+        for (int i = forwardLength; i < nodes.length; i++) {
+            node = graph.getEdgeTarget(backward.getPredecessorEdge(node));
+            nodes[i] = node;
+        }
+
+        return new ShortestPath(nodes,
+                forward.getCost(meetingNode) + backward.getCost(meetingNode),
+                forward.getDistance(meetingNode) + backward.getDistance(meetingNode),
+                forward.getDanger(meetingNode) + backward.getDanger(meetingNode));
+    }
+}
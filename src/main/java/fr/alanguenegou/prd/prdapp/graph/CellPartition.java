@@ -0,0 +1,142 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * The class splitting the nodes of a {@link CompactGraph} into geographic cells of similar sizes,
+ * by recursive cuts of the widest coordinate (k-d tree over the longitudes and latitudes of the nodes)
+ * @version 1.00
+ */
+public class CellPartition {
+
+    /**
+     * The maximal number of cells (one bit per cell in a long)
+     */
+    public static final int MAX_CELL_COUNT = Long.SIZE;
+
+    /**
+     * The compact graph whose nodes are split
+     */
+    private final CompactGraph graph;
+
+    /**
+     * The number of cells
+     */
+    @Getter
+    private final int cellCount;
+
+    /**
+     * The cell of each node
+     */
+    private final int[] cells;
+
+    /**
+     * The boundary nodes of each cell (nodes of the cell with an incoming edge from another cell)
+     */
+    private final int[][] boundaryNodes;
+
+    /**
+     * The scale applied to the longitudes so that both coordinates have the same unit
+     */
+    private final double longitudeScale;
+
+    /**
+     * The class constructor
+     * @param graph The compact graph whose nodes are split
+     * @param cellCount The number of cells (at most {@link CellPartition#MAX_CELL_COUNT})
+     */
+    public CellPartition(CompactGraph graph, int cellCount) {
+        if (cellCount < 1 || cellCount > MAX_CELL_COUNT) {
+            throw new IllegalArgumentException("Nombre de cellules invalide : " + cellCount);
+        }
+        this.graph = graph;
+        this.cellCount = cellCount;
+        cells = new int[graph.getNodeCount()];
+
+        double meanLatitude = 0;
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            meanLatitude += graph.getCoordY(node) / graph.getNodeCount();
+        }
+        longitudeScale = Math.cos(Math.toRadians(meanLatitude));
+        split(IntStream.range(0, graph.getNodeCount()).toArray(), 0, cellCount);
+
+        int[][] boundaries = new int[cellCount][];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int currentCell = cell;
+            boundaries[cell] = IntStream.range(0, graph.getNodeCount())
+                    .filter(node -> cells[node] == currentCell && hasIncomingEdgeFromAnotherCell(node))
+                    .toArray();
+        }
+        boundaryNodes = boundaries;
+    }
+
+    /**
+     * Assigns cells to the nodes of a region
+     * @param region The nodes of the region
+     * @param firstCell The first cell of the region
+     * @param regionCellCount The number of cells of the region
+     */
+    private void split(int[] region, int firstCell, int regionCellCount) {
+        if (regionCellCount == 1) {
+            for (int node : region) {
+                cells[node] = firstCell;
+            }
+            return;
+        }
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int node : region) {
+            minX = Math.min(minX, graph.getCoordX(node));
+            maxX = Math.max(maxX, graph.getCoordX(node));
+            minY = Math.min(minY, graph.getCoordY(node));
+            maxY = Math.max(maxY, graph.getCoordY(node));
+        }
+        Comparator<Integer> byCoordinate = (maxX - minX) * longitudeScale >= maxY - minY
+                ? Comparator.comparingDouble(graph::getCoordX)
+                : Comparator.comparingDouble(graph::getCoordY);
+        int[] sorted = Arrays.stream(region).boxed().sorted(byCoordinate.thenComparingInt(node -> node))
+                .mapToInt(Integer::intValue).toArray();
+
+        // the region is cut in proportion of the number of cells of each side
+        int firstCellCount = regionCellCount / 2;
+        int cut = (int) ((long) sorted.length * firstCellCount / regionCellCount);
+        split(Arrays.copyOfRange(sorted, 0, cut), firstCell, firstCellCount);
+        split(Arrays.copyOfRange(sorted, cut, sorted.length), firstCell + firstCellCount, regionCellCount - firstCellCount);
+    }
+
+    /**
+     * Checks if a node has a predecessor in another cell
+     * @param node The node index
+     * @return True if the node is a boundary node of its cell
+     */
+    private boolean hasIncomingEdgeFromAnotherCell(int node) {
+        for (int position = graph.getFirstIncomingEdge(node); position < graph.getLastIncomingEdgeExclusive(node); position++) {
+            if (cells[graph.getEdgeSource(graph.getIncomingEdge(position))] != cells[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the cell of a node
+     * @param node The node index
+     * @return The cell, from 0 to the number of cells - 1
+     */
+    public int getCell(int node) {
+        return cells[node];
+    }
+
+    /**
+     * Gets the boundary nodes of a cell, that is its nodes with an incoming edge from another cell
+     * @param cell The cell
+     * @return The boundary node indices
+     */
+    public int[] getBoundaryNodes(int cell) {
+        return boundaryNodes[cell];
+    }
+}
@@ -0,0 +1,325 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Triplet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class modelling a read-only compressed sparse row (CSR) form of a {@link Graph}.
+ * Nodes are designated by their dense index (see {@link Node#getIndex()}) and sections by an edge index,
+ * the outgoing edges of a node u being the indices from firstEdge[u] to firstEdge[u+1]-1.
+ * Only the alternative danger values can still change (through {@link Graph#modifyGraph(java.util.HashMap)})
+ * @version 1.00
+ */
+public class CompactGraph {
+
+    /**
+     * The number of nodes of this graph
+     */
+    @Getter
+    private final int nodeCount;
+
+    /**
+     * The number of edges (directed sections) of this graph
+     */
+    @Getter
+    private final int edgeCount;
+
+    /**
+     * The IDs of the nodes, by node index
+     */
+    private final long[] nodeIds;
+
+    /**
+     * The X coordinates (longitude) of the nodes, by node index
+     */
+    private final double[] coordX;
+
+    /**
+     * The Y coordinates (latitude) of the nodes, by node index
+     */
+    private final double[] coordY;
+
+    /**
+     * The index of the first outgoing edge of each node (with one more entry holding the number of edges)
+     */
+    private final int[] firstEdge;
+
+    /**
+     * The starting node of each edge
+     */
+    private final int[] edgeSource;
+
+    /**
+     * The ending node of each edge
+     */
+    private final int[] edgeTarget;
+
+    /**
+     * The distance value of each edge
+     */
+    private final double[] edgeDistance;
+
+    /**
+     * The initial danger value of each edge
+     */
+    private final double[] edgeDanger;
+
+    /**
+     * The alternative danger value of each edge (NaN if the section has no alternative danger value)
+     */
+    private final double[] edgeAlternativeDanger;
+
+    /**
+     * The index of the first incoming edge of each node in {@link CompactGraph#incomingEdges}
+     * (with one more entry holding the number of edges)
+     */
+    private final int[] firstIncomingEdge;
+
+    /**
+     * The incoming edges of every node, grouped by ending node (reverse CSR)
+     */
+    private final int[] incomingEdges;
+
+    /**
+     * The class constructor, building the CSR arrays from the adjacency maps of the nodes
+     * @param indexedNodes The nodes of the graph ordered by their index
+     */
+    CompactGraph(List<Node> indexedNodes) {
+        nodeCount = indexedNodes.size();
+        nodeIds = new long[nodeCount];
+        coordX = new double[nodeCount];
+        coordY = new double[nodeCount];
+        firstEdge = new int[nodeCount + 1];
+
+        int edges = 0;
+        for (Node node : indexedNodes) {
+            edges += node.getAdjacentNodes().size();
+        }
+        edgeCount = edges;
+        edgeSource = new int[edgeCount];
+        edgeTarget = new int[edgeCount];
+        edgeDistance = new double[edgeCount];
+        edgeDanger = new double[edgeCount];
+        edgeAlternativeDanger = new double[edgeCount];
+
+        // forward CSR, the outgoing edges of a node being sorted by ending node so that the edge order doesn't depend
+        // on the iteration order of the adjacency maps (and thus stays the same from one run to another)
+        int edge = 0;
+        for (Node node : indexedNodes) {
+            int index = node.getIndex();
+            nodeIds[index] = node.getId();
+            coordX[index] = node.getCoordX();
+            coordY[index] = node.getCoordY();
+            firstEdge[index] = edge;
+            List<Map.Entry<Node, Triplet<Double, Double, Double>>> adjacentNodeEntries = new ArrayList<>(node.getAdjacentNodes().entrySet());
+            adjacentNodeEntries.sort(Comparator.comparingInt(adjacentNodeEntry -> adjacentNodeEntry.getKey().getIndex()));
+            for (Map.Entry<Node, Triplet<Double, Double, Double>> adjacentNodeEntry : adjacentNodeEntries) {
+                Triplet<Double, Double, Double> edgeValues = adjacentNodeEntry.getValue();
+                edgeSource[edge] = index;
+                edgeTarget[edge] = adjacentNodeEntry.getKey().getIndex();
+                edgeDistance[edge] = edgeValues.getValue0();
+                edgeDanger[edge] = edgeValues.getValue1();
+                edgeAlternativeDanger[edge] = edgeValues.getValue2() == null ? Double.NaN : edgeValues.getValue2();
+                edge++;
+            }
+        }
+        firstEdge[nodeCount] = edgeCount;
+
+        // reverse CSR, built with a counting sort of the edges on their ending node
+        firstIncomingEdge = new int[nodeCount + 1];
+        incomingEdges = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            firstIncomingEdge[edgeTarget[e] + 1]++;
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            firstIncomingEdge[v + 1] += firstIncomingEdge[v];
+        }
+        int[] nextSlot = Arrays.copyOf(firstIncomingEdge, nodeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            incomingEdges[nextSlot[edgeTarget[e]]++] = e;
+        }
+    }
+
+    /**
+     * Gets the ID of a node
+     * @param node The node index
+     * @return The node ID
+     */
+    public long getNodeId(int node) {
+        return nodeIds[node];
+    }
+
+    /**
+     * Gets the X coordinate (longitude) of a node
+     * @param node The node index
+     * @return The X coordinate
+     */
+    public double getCoordX(int node) {
+        return coordX[node];
+    }
+
+    /**
+     * Gets the Y coordinate (latitude) of a node
+     * @param node The node index
+     * @return The Y coordinate
+     */
+    public double getCoordY(int node) {
+        return coordY[node];
+    }
+
+    /**
+     * Gets the index of the first outgoing edge of a node
+     * @param node The node index
+     * @return The first outgoing edge index
+     */
+    public int getFirstEdge(int node) {
+        return firstEdge[node];
+    }
+
+    /**
+     * Gets the index following the last outgoing edge of a node
+     * @param node The node index
+     * @return The index following the last outgoing edge
+     */
+    public int getLastEdgeExclusive(int node) {
+        return firstEdge[node + 1];
+    }
+
+    /**
+     * Gets the index of the first incoming edge of a node in the reverse CSR
+     * @param node The node index
+     * @return The position of its first incoming edge (see {@link CompactGraph#getIncomingEdge(int)})
+     */
+    public int getFirstIncomingEdge(int node) {
+        return firstIncomingEdge[node];
+    }
+
+    /**
+     * Gets the position following the last incoming edge of a node in the reverse CSR
+     * @param node The node index
+     * @return The position following its last incoming edge
+     */
+    public int getLastIncomingEdgeExclusive(int node) {
+        return firstIncomingEdge[node + 1];
+    }
+
+    /**
+     * Gets an incoming edge stored in the reverse CSR
+     * @param position The position in the reverse CSR
+     * @return The edge index
+     */
+    public int getIncomingEdge(int position) {
+        return incomingEdges[position];
+    }
+
+    /**
+     * Gets the starting node of an edge
+     * @param edge The edge index
+     * @return The starting node index
+     */
+    public int getEdgeSource(int edge) {
+        return edgeSource[edge];
+    }
+
+    /**
+     * Gets the ending node of an edge
+     * @param edge The edge index
+     * @return The ending node index
+     */
+    public int getEdgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    /**
+     * Gets the distance value of an edge
+     * @param edge The edge index
+     * @return The distance
+     */
+    public double getEdgeDistance(int edge) {
+        return edgeDistance[edge];
+    }
+
+    /**
+     * Gets the danger value of an edge
+     * @param edge The edge index
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The danger value (the initial one if the alternative one is asked for but not set)
+     */
+    public double getEdgeDanger(int edge, int useOfDangerValue) {
+        if (useOfDangerValue == Graph.WITH_ALTERNATIVE_DANGER_VALUE && !Double.isNaN(edgeAlternativeDanger[edge])) {
+            return edgeAlternativeDanger[edge];
+        }
+        return edgeDanger[edge];
+    }
+
+    /**
+     * Gets the cost of an edge, that is the linear combination of its distance and danger values
+     * @param edge The edge index
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The cost of the edge
+     */
+    public double getEdgeCost(int edge, double distanceWeight, int useOfDangerValue) {
+        return distanceWeight*edgeDistance[edge] + (1-distanceWeight)*getEdgeDanger(edge, useOfDangerValue);
+    }
+
+    /**
+     * Finds the edge going from a node to another one
+     * @param source The starting node index
+     * @param target The ending node index
+     * @return The edge index, or -1 if the nodes are not linked
+     */
+    public int findEdge(int source, int target) {
+        for (int edge = firstEdge[source]; edge < firstEdge[source + 1]; edge++) {
+            if (edgeTarget[edge] == target) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes a fingerprint of the content of this graph (node IDs, edges, distance and danger values),
+     * used to check that data computed from it and stored on disk still matches it
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger values are also taken into account or only initial (= 2) ones
+     * @return The 64 bits fingerprint
+     */
+    public long getFingerprint(int useOfDangerValue) {
+        long fingerprint = mix(nodeCount, edgeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            fingerprint = mix(fingerprint, nodeIds[node]);
+        }
+        for (int edge = 0; edge < edgeCount; edge++) {
+            fingerprint = mix(fingerprint, ((long) edgeSource[edge] << 32) | edgeTarget[edge]);
+            fingerprint = mix(fingerprint, Double.doubleToLongBits(edgeDistance[edge]));
+            fingerprint = mix(fingerprint, Double.doubleToLongBits(getEdgeDanger(edge, useOfDangerValue)));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Mixes a value into a fingerprint
+     * @param fingerprint The current fingerprint
+     * @param value The value to add
+     * @return The new fingerprint
+     */
+    private static long mix(long fingerprint, long value) {
+        long mixed = (fingerprint ^ value) * 0x9E3779B97F4A7C15L;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    /**
+     * Sets the alternative danger value of an edge (used to keep this graph in line with {@link Graph#modifyGraph(java.util.HashMap)})
+     * @param edge The edge index
+     * @param alternativeDanger The new alternative danger value
+     */
+    void setAlternativeDanger(int edge, double alternativeDanger) {
+        edgeAlternativeDanger[edge] = alternativeDanger;
+    }
+}
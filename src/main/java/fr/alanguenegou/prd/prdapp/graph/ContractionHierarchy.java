@@ -0,0 +1,432 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * The class modelling a contraction hierarchy of a {@link CompactGraph} for a specific linear combination
+ * (see {@link ContractionHierarchyBuilder}). Every node has a rank (its contraction order) and every shortest-path
+ * can be found by a bidirectional search that only goes up the ranks: the forward search from the source follows the
+ * upward edges, the backward search from the sink follows the downward edges in reverse.
+ * Shortcuts are unpacked afterwards into original edges, whose values are summed in path order
+ * @version 1.00
+ */
+public class ContractionHierarchy {
+
+    /**
+     * The compact graph of this hierarchy
+     */
+    private final CompactGraph graph;
+
+    /**
+     * The weight of the distance value for the linear combination of this hierarchy
+     */
+    @Getter
+    private final double distanceWeight;
+
+    /**
+     * A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used by this hierarchy
+     */
+    @Getter
+    private final int useOfDangerValue;
+
+    /**
+     * The rank (contraction order) of each node
+     */
+    private final int[] ranks;
+
+    /**
+     * The starting node of each hierarchy edge
+     */
+    private final int[] edgeSource;
+
+    /**
+     * The ending node of each hierarchy edge
+     */
+    private final int[] edgeTarget;
+
+    /**
+     * The cost of each hierarchy edge
+     */
+    private final double[] edgeCost;
+
+    /**
+     * The total distance of the original edges represented by each hierarchy edge
+     */
+    private final double[] edgeDistance;
+
+    /**
+     * The total danger of the original edges represented by each hierarchy edge
+     */
+    private final double[] edgeDanger;
+
+    /**
+     * The original edge of each hierarchy edge that is not a shortcut, or the first hierarchy edge bypassed by a shortcut
+     */
+    private final int[] firstChild;
+
+    /**
+     * The second hierarchy edge bypassed by each shortcut (-1 if the hierarchy edge is an original edge)
+     */
+    private final int[] secondChild;
+
+    /**
+     * The index of the first upward edge of each node in {@link ContractionHierarchy#upwardEdges}
+     * (with one more entry holding the number of upward edges)
+     */
+    private final int[] firstUpwardEdge;
+
+    /**
+     * The hierarchy edges going from each node to a node of higher rank, grouped by starting node
+     */
+    private final int[] upwardEdges;
+
+    /**
+     * The index of the first downward edge of each node in {@link ContractionHierarchy#downwardEdges}
+     * (with one more entry holding the number of downward edges)
+     */
+    private final int[] firstDownwardEdge;
+
+    /**
+     * The hierarchy edges coming to each node from a node of higher rank, grouped by ending node
+     */
+    private final int[] downwardEdges;
+
+    /**
+     * The class constructor
+     * @param graph The compact graph of this hierarchy
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param ranks The rank of each node
+     * @param edgeSource The starting node of each hierarchy edge
+     * @param edgeTarget The ending node of each hierarchy edge
+     * @param edgeCost The cost of each hierarchy edge
+     * @param edgeDistance The total distance of each hierarchy edge
+     * @param edgeDanger The total danger of each hierarchy edge
+     * @param firstChild The original edge or first bypassed hierarchy edge of each hierarchy edge
+     * @param secondChild The second bypassed hierarchy edge of each hierarchy edge (-1 for original edges)
+     * @param upwardEdges The upward edges of each node
+     * @param downwardEdges The downward edges of each node
+     */
+    ContractionHierarchy(CompactGraph graph, double distanceWeight, int useOfDangerValue, int[] ranks,
+                         int[] edgeSource, int[] edgeTarget, double[] edgeCost, double[] edgeDistance, double[] edgeDanger,
+                         int[] firstChild, int[] secondChild,
+                         int[][] upwardEdges, int[][] downwardEdges) {
+        this.graph = graph;
+        this.distanceWeight = distanceWeight;
+        this.useOfDangerValue = useOfDangerValue;
+        this.ranks = ranks;
+        this.edgeSource = edgeSource;
+        this.edgeTarget = edgeTarget;
+        this.edgeCost = edgeCost;
+        this.edgeDistance = edgeDistance;
+        this.edgeDanger = edgeDanger;
+        this.firstChild = firstChild;
+        this.secondChild = secondChild;
+        this.firstUpwardEdge = new int[ranks.length + 1];
+        this.upwardEdges = flatten(upwardEdges, firstUpwardEdge);
+        this.firstDownwardEdge = new int[ranks.length + 1];
+        this.downwardEdges = flatten(downwardEdges, firstDownwardEdge);
+    }
+
+    /**
+     * Builds the contraction hierarchy of a compact graph for a linear combination
+     * @param graph The compact graph
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The contraction hierarchy
+     */
+    public static ContractionHierarchy build(CompactGraph graph, double distanceWeight, int useOfDangerValue) {
+        return new ContractionHierarchyBuilder(graph, distanceWeight, useOfDangerValue).build();
+    }
+
+    /**
+     * Turns edge lists into a single array (CSR form)
+     * @param lists The edge list of each node
+     * @param firstEntries The array receiving the index of the first entry of each node
+     * @return The concatenated edge lists
+     */
+    private static int[] flatten(int[][] lists, int[] firstEntries) {
+        for (int node = 0; node < lists.length; node++) {
+            firstEntries[node + 1] = firstEntries[node] + lists[node].length;
+        }
+        int[] entries = new int[firstEntries[lists.length]];
+        for (int node = 0; node < lists.length; node++) {
+            System.arraycopy(lists[node], 0, entries, firstEntries[node], lists[node].length);
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the rank (contraction order) of a node
+     * @param node The node index
+     * @return The rank, from 0 (first contracted node) to the number of nodes - 1
+     */
+    public int getRank(int node) {
+        return ranks[node];
+    }
+
+    /**
+     * Gets the number of nodes of this hierarchy
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return ranks.length;
+    }
+
+    /**
+     * Gets the compact graph of this hierarchy
+     * @return The compact graph
+     */
+    CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Gets the position of the first upward edge of a node
+     * @param node The node index
+     * @return The position of its first upward edge (see {@link ContractionHierarchy#getUpwardEdge(int)})
+     */
+    int getFirstUpwardEdge(int node) {
+        return firstUpwardEdge[node];
+    }
+
+    /**
+     * Gets the position following the last upward edge of a node
+     * @param node The node index
+     * @return The position following its last upward edge
+     */
+    int getLastUpwardEdgeExclusive(int node) {
+        return firstUpwardEdge[node + 1];
+    }
+
+    /**
+     * Gets an upward edge
+     * @param position The position of the edge in the upward edges
+     * @return The hierarchy edge index
+     */
+    int getUpwardEdge(int position) {
+        return upwardEdges[position];
+    }
+
+    /**
+     * Gets the position of the first downward edge of a node
+     * @param node The node index
+     * @return The position of its first downward edge (see {@link ContractionHierarchy#getDownwardEdge(int)})
+     */
+    int getFirstDownwardEdge(int node) {
+        return firstDownwardEdge[node];
+    }
+
+    /**
+     * Gets the position following the last downward edge of a node
+     * @param node The node index
+     * @return The position following its last downward edge
+     */
+    int getLastDownwardEdgeExclusive(int node) {
+        return firstDownwardEdge[node + 1];
+    }
+
+    /**
+     * Gets a downward edge
+     * @param position The position of the edge in the downward edges
+     * @return The hierarchy edge index
+     */
+    int getDownwardEdge(int position) {
+        return downwardEdges[position];
+    }
+
+    /**
+     * Gets the starting node of a hierarchy edge
+     * @param edge The hierarchy edge index
+     * @return The starting node index
+     */
+    int getEdgeSource(int edge) {
+        return edgeSource[edge];
+    }
+
+    /**
+     * Gets the ending node of a hierarchy edge
+     * @param edge The hierarchy edge index
+     * @return The ending node index
+     */
+    int getEdgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    /**
+     * Gets the cost of a hierarchy edge
+     * @param edge The hierarchy edge index
+     * @return The cost
+     */
+    double getEdgeCost(int edge) {
+        return edgeCost[edge];
+    }
+
+    /**
+     * Gets the total distance of the original edges represented by a hierarchy edge
+     * @param edge The hierarchy edge index
+     * @return The total distance
+     */
+    double getEdgeDistance(int edge) {
+        return edgeDistance[edge];
+    }
+
+    /**
+     * Gets the total danger of the original edges represented by a hierarchy edge
+     * @param edge The hierarchy edge index
+     * @return The total danger
+     */
+    double getEdgeDanger(int edge) {
+        return edgeDanger[edge];
+    }
+
+    /**
+     * Gets the number of hierarchy edges used by the searches (original edges and shortcuts)
+     * @return The number of upward and downward edges
+     */
+    public int getEdgeCount() {
+        return upwardEdges.length + downwardEdges.length;
+    }
+
+    /**
+     * Gets the number of shortcuts used by the searches
+     * @return The number of upward and downward edges that are shortcuts
+     */
+    public int getShortcutCount() {
+        int shortcuts = 0;
+        for (int edge : upwardEdges) {
+            shortcuts += secondChild[edge] != -1 ? 1 : 0;
+        }
+        for (int edge : downwardEdges) {
+            shortcuts += secondChild[edge] != -1 ? 1 : 0;
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node.
+     * Each direction stops once its queue minimum reaches the cost of the best path found where both directions meet
+     * @param forward The search context of the upward search from the source (reset by this method)
+     * @param backward The search context of the upward search from the sink (reset by this method)
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param statistics The statistics in which the settled nodes of both directions are recorded
+     * @return The shortest-path with the values of its original edges, or {@link ShortestPath#NOT_FOUND} if the sink can't be reached
+     */
+    public ShortestPath search(SearchContext forward, SearchContext backward, int source, int sink, SearchStatistics statistics) {
+        forward.reset();
+        backward.reset();
+        IndexedMinHeap forwardQueue = forward.getQueue();
+        IndexedMinHeap backwardQueue = backward.getQueue();
+
+        forward.setCost(source, 0.0, -1, 0.0, 0.0);
+        forwardQueue.push(source, 0.0);
+        backward.setCost(sink, 0.0, -1, 0.0, 0.0);
+        backwardQueue.push(sink, 0.0);
+
+        double bestCost = Double.MAX_VALUE;
+        int meetingNode = -1;
+        int forwardSettled = 0;
+        int backwardSettled = 0;
+
+        while (true) {
+            boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.peekKey() < bestCost;
+            boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.peekKey() < bestCost;
+            if (!forwardActive && !backwardActive) {
+                break;
+            }
+
+            if (forwardActive && (!backwardActive || forwardQueue.peekKey() <= backwardQueue.peekKey())) {
+                int currentNode = forwardQueue.poll();
+                forwardSettled++;
+                double currentCost = forward.getCost(currentNode);
+                if (backward.isVisited(currentNode) && currentCost + backward.getCost(currentNode) < bestCost) {
+                    bestCost = currentCost + backward.getCost(currentNode);
+                    meetingNode = currentNode;
+                }
+                for (int position = firstUpwardEdge[currentNode]; position < firstUpwardEdge[currentNode + 1]; position++) {
+                    int edge = upwardEdges[position];
+                    int adjacentNode = edgeTarget[edge];
+                    double newCost = currentCost + edgeCost[edge];
+                    if (newCost < forward.getCost(adjacentNode)) {
+                        forward.setCost(adjacentNode, newCost, edge, 0.0, 0.0);
+                        forwardQueue.push(adjacentNode, newCost);
+                    }
+                }
+            }
+            else {
+                int currentNode = backwardQueue.poll();
+                backwardSettled++;
+                double currentCost = backward.getCost(currentNode);
+                if (forward.isVisited(currentNode) && currentCost + forward.getCost(currentNode) < bestCost) {
+                    bestCost = currentCost + forward.getCost(currentNode);
+                    meetingNode = currentNode;
+                }
+                for (int position = firstDownwardEdge[currentNode]; position < firstDownwardEdge[currentNode + 1]; position++) {
+                    int edge = downwardEdges[position];
+                    int adjacentNode = edgeSource[edge];
+                    double newCost = currentCost + edgeCost[edge];
+                    if (newCost < backward.getCost(adjacentNode)) {
+                        backward.setCost(adjacentNode, newCost, edge, 0.0, 0.0);
+                        backwardQueue.push(adjacentNode, newCost);
+                    }
+                }
+            }
+        }
+        statistics.recordSearch(forwardSettled, backwardSettled);
+
+        if (meetingNode == -1) {
+            return ShortestPath.NOT_FOUND;
+        }
+        return unpack(forward, backward, source, sink, meetingNode);
+    }
+
+    /**
+     * Unpacks the hierarchy path found by a search into original edges and sums their values in path order
+     * (so that the totals are the ones a Dijkstra search would give for the same path)
+     * @param forward The search context of the upward search from the source
+     * @param backward The search context of the upward search from the sink
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param meetingNode The node where both searches meet
+     * @return The shortest-path
+     */
+    private ShortestPath unpack(SearchContext forward, SearchContext backward, int source, int sink, int meetingNode) {
+        // hierarchy edges still to unpack, the next one on the path being on top
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int node = meetingNode; node != sink; node = edgeTarget[backward.getPredecessorEdge(node)]) {
+            pending.addLast(backward.getPredecessorEdge(node));
+        }
+        for (int node = meetingNode; node != source; node = edgeSource[forward.getPredecessorEdge(node)]) {
+            pending.push(forward.getPredecessorEdge(node));
+        }
+
+        int[] nodes = new int[16];
+        int length = 0;
+        nodes[length++] = source;
+        double cost = 0.0;
+        double distance = 0.0;
+        double danger = 0.0;
+        while (!pending.isEmpty()) {
+            int edge = pending.pop();
+            if (secondChild[edge] != -1) {
+                pending.push(secondChild[edge]);
+                pending.push(firstChild[edge]);
+                continue;
+            }
+            int originalEdge = firstChild[edge];
+            cost += graph.getEdgeCost(originalEdge, distanceWeight, useOfDangerValue);
+            distance += graph.getEdgeDistance(originalEdge);
+            danger += graph.getEdgeDanger(originalEdge, useOfDangerValue);
+            if (length == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * length);
+            }
+            nodes[length++] = graph.getEdgeTarget(originalEdge);
+        }
+        return new ShortestPath(Arrays.copyOf(nodes, length), cost, distance, danger);
+    }
+}
@@ -0,0 +1,381 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import java.util.Arrays;
+
+/**
+ * The class contracting the nodes of a {@link CompactGraph} one by one, for a specific linear combination, to build a
+ * {@link ContractionHierarchy}. The next node to contract is the one with the lowest priority (edge difference plus
+ * number of already contracted neighbours plus level in the hierarchy), the priorities of the neighbours of a contracted
+ * node being updated right away and the other ones lazily when nodes are taken out of the queue.
+ * A shortcut u-&gt;x is added when contracting v only if a bounded witness search from u avoiding v finds no path to x
+ * as cheap as u-&gt;v-&gt;x (a witness search stopped too early only adds an unnecessary shortcut)
+ * @version 1.00
+ */
+final class ContractionHierarchyBuilder {
+
+    /**
+     * The maximal number of nodes settled by a witness search when a node is contracted
+     */
+    private static final int WITNESS_SETTLED_LIMIT = 500;
+
+    /**
+     * The maximal number of nodes settled by a witness search when the priority of a node is estimated
+     */
+    private static final int PRIORITY_WITNESS_SETTLED_LIMIT = 50;
+
+    /**
+     * The compact graph whose nodes are contracted
+     */
+    private final CompactGraph graph;
+
+    /**
+     * The weight of the distance value for the linear combination
+     */
+    private final double distanceWeight;
+
+    /**
+     * A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     */
+    private final int useOfDangerValue;
+
+    /**
+     * The number of hierarchy edges created so far (original edges and shortcuts)
+     */
+    private int edgeCount;
+
+    /**
+     * The starting node of each hierarchy edge
+     */
+    private int[] edgeSource;
+
+    /**
+     * The ending node of each hierarchy edge
+     */
+    private int[] edgeTarget;
+
+    /**
+     * The cost of each hierarchy edge
+     */
+    private double[] edgeCost;
+
+    /**
+     * The total distance of the original edges represented by each hierarchy edge
+     */
+    private double[] edgeDistance;
+
+    /**
+     * The total danger of the original edges represented by each hierarchy edge
+     */
+    private double[] edgeDanger;
+
+    /**
+     * The original edge of each hierarchy edge that is not a shortcut, or the first hierarchy edge bypassed by a shortcut
+     */
+    private int[] firstChild;
+
+    /**
+     * The second hierarchy edge bypassed by each shortcut (-1 if the hierarchy edge is an original edge)
+     */
+    private int[] secondChild;
+
+    /**
+     * The outgoing hierarchy edges of each node to not contracted nodes (the first outgoingCount[node] entries are used)
+     */
+    private final int[][] outgoing;
+
+    /**
+     * The number of outgoing hierarchy edges of each node to not contracted nodes
+     */
+    private final int[] outgoingCount;
+
+    /**
+     * The incoming hierarchy edges of each node from not contracted nodes (the first incomingCount[node] entries are used)
+     */
+    private final int[][] incoming;
+
+    /**
+     * The number of incoming hierarchy edges of each node from not contracted nodes
+     */
+    private final int[] incomingCount;
+
+    /**
+     * The number of contracted neighbours of each node
+     */
+    private final int[] contractedNeighbours;
+
+    /**
+     * The level of each node in the hierarchy (one more than the highest level of its contracted neighbours)
+     */
+    private final int[] levels;
+
+    /**
+     * The search context of the witness searches
+     */
+    private final SearchContext witnessContext;
+
+    /**
+     * The class constructor
+     * @param graph The compact graph whose nodes are contracted
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     */
+    ContractionHierarchyBuilder(CompactGraph graph, double distanceWeight, int useOfDangerValue) {
+        this.graph = graph;
+        this.distanceWeight = distanceWeight;
+        this.useOfDangerValue = useOfDangerValue;
+
+        int nodeCount = graph.getNodeCount();
+        int initialCapacity = Math.max(16, 2 * graph.getEdgeCount());
+        edgeSource = new int[initialCapacity];
+        edgeTarget = new int[initialCapacity];
+        edgeCost = new double[initialCapacity];
+        edgeDistance = new double[initialCapacity];
+        edgeDanger = new double[initialCapacity];
+        firstChild = new int[initialCapacity];
+        secondChild = new int[initialCapacity];
+        outgoing = new int[nodeCount][];
+        outgoingCount = new int[nodeCount];
+        incoming = new int[nodeCount][];
+        incomingCount = new int[nodeCount];
+        contractedNeighbours = new int[nodeCount];
+        levels = new int[nodeCount];
+        witnessContext = new SearchContext(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            outgoing[node] = new int[Math.max(2, graph.getLastEdgeExclusive(node) - graph.getFirstEdge(node))];
+            incoming[node] = new int[Math.max(2, graph.getLastIncomingEdgeExclusive(node) - graph.getFirstIncomingEdge(node))];
+        }
+    }
+
+    /**
+     * Contracts every node and builds the resulting hierarchy
+     * @return The contraction hierarchy
+     */
+    ContractionHierarchy build() {
+        int nodeCount = graph.getNodeCount();
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            if (graph.getEdgeSource(edge) != graph.getEdgeTarget(edge)) {
+                addEdge(graph.getEdgeSource(edge), graph.getEdgeTarget(edge), graph.getEdgeCost(edge, distanceWeight, useOfDangerValue),
+                        graph.getEdgeDistance(edge), graph.getEdgeDanger(edge, useOfDangerValue), edge, -1);
+            }
+        }
+
+        IndexedMinHeap queue = new IndexedMinHeap(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            queue.push(node, getPriority(node));
+        }
+
+        int[] ranks = new int[nodeCount];
+        int[][] upwardEdges = new int[nodeCount][];
+        int[][] downwardEdges = new int[nodeCount][];
+        int rank = 0;
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+
+            // lazy update: the node goes back in the queue if its priority has grown past the next one
+            double priority = getPriority(node);
+            if (!queue.isEmpty() && priority > queue.peekKey()) {
+                queue.push(node, priority);
+                continue;
+            }
+
+            addShortcuts(node, true, WITNESS_SETTLED_LIMIT);
+            upwardEdges[node] = Arrays.copyOf(outgoing[node], outgoingCount[node]);
+            downwardEdges[node] = Arrays.copyOf(incoming[node], incomingCount[node]);
+            for (int edge : upwardEdges[node]) {
+                removeEdge(incoming, incomingCount, edgeTarget[edge], edge);
+            }
+            for (int edge : downwardEdges[node]) {
+                removeEdge(outgoing, outgoingCount, edgeSource[edge], edge);
+            }
+            ranks[node] = rank++;
+
+            for (int neighbour : getNeighbours(upwardEdges[node], downwardEdges[node])) {
+                contractedNeighbours[neighbour]++;
+                levels[neighbour] = Math.max(levels[neighbour], levels[node] + 1);
+                queue.update(neighbour, getPriority(neighbour));
+            }
+        }
+
+        return new ContractionHierarchy(graph, distanceWeight, useOfDangerValue, ranks,
+                Arrays.copyOf(edgeSource, edgeCount), Arrays.copyOf(edgeTarget, edgeCount), Arrays.copyOf(edgeCost, edgeCount),
+                Arrays.copyOf(edgeDistance, edgeCount), Arrays.copyOf(edgeDanger, edgeCount),
+                Arrays.copyOf(firstChild, edgeCount), Arrays.copyOf(secondChild, edgeCount),
+                upwardEdges, downwardEdges);
+    }
+
+    /**
+     * Computes the contraction priority of a node (the lower, the sooner it is contracted)
+     * @param node The node index
+     * @return The priority
+     */
+    private double getPriority(int node) {
+        int shortcuts = addShortcuts(node, false, PRIORITY_WITNESS_SETTLED_LIMIT);
+        return shortcuts - outgoingCount[node] - incomingCount[node] + contractedNeighbours[node] + levels[node];
+    }
+
+    /**
+     * Gets the distinct neighbours of a contracted node
+     * @param upwardEdges The edges going from the node to its neighbours
+     * @param downwardEdges The edges coming to the node from its neighbours
+     * @return The neighbour node indices
+     */
+    private int[] getNeighbours(int[] upwardEdges, int[] downwardEdges) {
+        int[] neighbours = new int[upwardEdges.length + downwardEdges.length];
+        int count = 0;
+        for (int edge : upwardEdges) {
+            neighbours[count++] = edgeTarget[edge];
+        }
+        for (int edge : downwardEdges) {
+            neighbours[count++] = edgeSource[edge];
+        }
+        return Arrays.stream(neighbours, 0, count).distinct().toArray();
+    }
+
+    /**
+     * Finds the shortcuts needed to contract a node, and adds them if asked
+     * @param node The node index
+     * @param add True to add the shortcuts, false to only count them
+     * @param settledLimit The maximal number of nodes settled by each witness search
+     * @return The number of shortcuts needed
+     */
+    private int addShortcuts(int node, boolean add, int settledLimit) {
+        int shortcuts = 0;
+        for (int i = 0; i < incomingCount[node]; i++) {
+            int incomingEdge = incoming[node][i];
+            int start = edgeSource[incomingEdge];
+
+            double maxCost = -1;
+            for (int j = 0; j < outgoingCount[node]; j++) {
+                int outgoingEdge = outgoing[node][j];
+                if (edgeTarget[outgoingEdge] != start) {
+                    maxCost = Math.max(maxCost, edgeCost[incomingEdge] + edgeCost[outgoingEdge]);
+                }
+            }
+            if (maxCost < 0) {
+                continue;
+            }
+
+            searchWitnesses(start, node, maxCost, settledLimit);
+            for (int j = 0; j < outgoingCount[node]; j++) {
+                int outgoingEdge = outgoing[node][j];
+                int end = edgeTarget[outgoingEdge];
+                double viaCost = edgeCost[incomingEdge] + edgeCost[outgoingEdge];
+                if (end != start && witnessContext.getCost(end) > viaCost) {
+                    shortcuts++;
+                    if (add) {
+                        addEdge(start, end, viaCost, edgeDistance[incomingEdge] + edgeDistance[outgoingEdge],
+                                edgeDanger[incomingEdge] + edgeDanger[outgoingEdge], incomingEdge, outgoingEdge);
+                    }
+                }
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Runs a Dijkstra search from a node on the not contracted nodes except one, until the costs exceed a maximum
+     * or a number of nodes are settled
+     * @param start The starting node index
+     * @param avoidedNode The node being contracted
+     * @param maxCost The cost over which witnesses are useless
+     * @param settledLimit The maximal number of settled nodes
+     */
+    private void searchWitnesses(int start, int avoidedNode, double maxCost, int settledLimit) {
+        witnessContext.reset();
+        IndexedMinHeap queue = witnessContext.getQueue();
+        witnessContext.setCost(start, 0.0, -1, 0.0, 0.0);
+        queue.push(start, 0.0);
+
+        int settled = 0;
+        while (!queue.isEmpty() && queue.peekKey() <= maxCost && settled < settledLimit) {
+            int currentNode = queue.poll();
+            settled++;
+            double currentCost = witnessContext.getCost(currentNode);
+            for (int i = 0; i < outgoingCount[currentNode]; i++) {
+                int edge = outgoing[currentNode][i];
+                int adjacentNode = edgeTarget[edge];
+                double newCost = currentCost + edgeCost[edge];
+                if (adjacentNode != avoidedNode && newCost < witnessContext.getCost(adjacentNode)) {
+                    witnessContext.setCost(adjacentNode, newCost, edge, 0.0, 0.0);
+                    queue.push(adjacentNode, newCost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a hierarchy edge between two not contracted nodes, unless a cheaper one already links them
+     * (a more expensive one is replaced, but stays available to the shortcuts bypassing it)
+     * @param source The starting node index
+     * @param target The ending node index
+     * @param cost The cost of the edge
+     * @param distance The total distance of the original edges represented by the edge
+     * @param danger The total danger of the original edges represented by the edge
+     * @param first The original edge, or the first bypassed hierarchy edge for a shortcut
+     * @param second The second bypassed hierarchy edge for a shortcut, -1 otherwise
+     */
+    private void addEdge(int source, int target, double cost, double distance, double danger, int first, int second) {
+        for (int i = 0; i < outgoingCount[source]; i++) {
+            int edge = outgoing[source][i];
+            if (edgeTarget[edge] == target) {
+                if (edgeCost[edge] <= cost) {
+                    return;
+                }
+                removeEdge(outgoing, outgoingCount, source, edge);
+                removeEdge(incoming, incomingCount, target, edge);
+                break;
+            }
+        }
+
+        if (edgeCount == edgeSource.length) {
+            int capacity = 2 * edgeCount;
+            edgeSource = Arrays.copyOf(edgeSource, capacity);
+            edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+            edgeCost = Arrays.copyOf(edgeCost, capacity);
+            edgeDistance = Arrays.copyOf(edgeDistance, capacity);
+            edgeDanger = Arrays.copyOf(edgeDanger, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            secondChild = Arrays.copyOf(secondChild, capacity);
+        }
+        int edge = edgeCount++;
+        edgeSource[edge] = source;
+        edgeTarget[edge] = target;
+        edgeCost[edge] = cost;
+        edgeDistance[edge] = distance;
+        edgeDanger[edge] = danger;
+        firstChild[edge] = first;
+        secondChild[edge] = second;
+        appendEdge(outgoing, outgoingCount, source, edge);
+        appendEdge(incoming, incomingCount, target, edge);
+    }
+
+    /**
+     * Appends an edge to the list of a node
+     * @param lists The edge lists of the nodes
+     * @param counts The number of used entries of each list
+     * @param node The node index
+     * @param edge The edge index
+     */
+    private static void appendEdge(int[][] lists, int[] counts, int node, int edge) {
+        if (counts[node] == lists[node].length) {
+            lists[node] = Arrays.copyOf(lists[node], 2 * counts[node]);
+        }
+        lists[node][counts[node]++] = edge;
+    }
+
+    /**
+     * Removes an edge from the list of a node (the last edge of the list takes its place)
+     * @param lists The edge lists of the nodes
+     * @param counts The number of used entries of each list
+     * @param node The node index
+     * @param edge The edge index
+     */
+    private static void removeEdge(int[][] lists, int[] counts, int node, int edge) {
+        for (int i = 0; i < counts[node]; i++) {
+            if (lists[node][i] == edge) {
+                lists[node][i] = lists[node][--counts[node]];
+                return;
+            }
+        }
+    }
+}
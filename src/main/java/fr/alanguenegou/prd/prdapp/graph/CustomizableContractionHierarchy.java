@@ -0,0 +1,398 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * The class modelling the metric-independent part of a customizable contraction hierarchy (CCH) of a {@link CompactGraph}:
+ * a contraction order computed once from the topology by geometric nested dissection (the nodes separating the two halves
+ * of a region are ranked above both halves), and the undirected arcs obtained by contracting the nodes in this order
+ * without any witness search. Any linear combination of distance and danger values can then be applied to these arcs
+ * in a fast customization phase (see {@link CustomizableContractionHierarchy#customize(double, int)}).
+ * Arcs link a lower ranked node (tail) to a higher ranked one (head), nodes being designated by their rank
+ * @version 1.00
+ */
+public class CustomizableContractionHierarchy {
+
+    /**
+     * The maximal number of nodes of a region that isn't dissected any further
+     */
+    private static final int LEAF_SIZE = 8;
+
+    /**
+     * The compact graph of this hierarchy
+     */
+    @Getter
+    private final CompactGraph graph;
+
+    /**
+     * The rank of each node (by node index)
+     */
+    private final int[] ranks;
+
+    /**
+     * The node index of each rank
+     */
+    private final int[] nodesByRank;
+
+    /**
+     * The index of the first arc of each rank in {@link CustomizableContractionHierarchy#arcHeads}
+     * (with one more entry holding the number of arcs)
+     */
+    private final int[] firstArc;
+
+    /**
+     * The higher rank of each arc, the arcs of a lower rank being sorted by increasing higher rank
+     */
+    private final int[] arcHeads;
+
+    /**
+     * The lower rank of each arc
+     */
+    private final int[] arcTails;
+
+    /**
+     * The class constructor, computing the contraction order and the arcs
+     * @param graph The compact graph
+     */
+    public CustomizableContractionHierarchy(CompactGraph graph) {
+        this.graph = graph;
+        int nodeCount = graph.getNodeCount();
+
+        nodesByRank = new NestedDissection().order();
+        ranks = new int[nodeCount];
+        for (int rank = 0; rank < nodeCount; rank++) {
+            ranks[nodesByRank[rank]] = rank;
+        }
+
+        // upward neighbours of each rank, then contraction in rank order: the upward neighbours of a contracted rank
+        // become neighbours of each other, which is propagated through its lowest upward neighbour
+        int[][] upwardNeighbours = new int[nodeCount][];
+        int[] counts = new int[nodeCount];
+        for (int rank = 0; rank < nodeCount; rank++) {
+            upwardNeighbours[rank] = new int[4];
+        }
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            int source = ranks[graph.getEdgeSource(edge)];
+            int target = ranks[graph.getEdgeTarget(edge)];
+            if (source != target) {
+                int low = Math.min(source, target);
+                if (counts[low] == upwardNeighbours[low].length) {
+                    upwardNeighbours[low] = Arrays.copyOf(upwardNeighbours[low], 2 * counts[low]);
+                }
+                upwardNeighbours[low][counts[low]++] = Math.max(source, target);
+            }
+        }
+        for (int rank = 0; rank < nodeCount; rank++) {
+            int[] neighbours = Arrays.stream(upwardNeighbours[rank], 0, counts[rank]).sorted().distinct().toArray();
+            upwardNeighbours[rank] = neighbours;
+            if (neighbours.length > 1) {
+                int lowest = neighbours[0];
+                int[] lowestNeighbours = Arrays.copyOf(upwardNeighbours[lowest], counts[lowest]);
+                Arrays.sort(lowestNeighbours);
+                upwardNeighbours[lowest] = mergeSorted(lowestNeighbours, Arrays.copyOfRange(neighbours, 1, neighbours.length));
+                counts[lowest] = upwardNeighbours[lowest].length;
+            }
+        }
+
+        firstArc = new int[nodeCount + 1];
+        for (int rank = 0; rank < nodeCount; rank++) {
+            firstArc[rank + 1] = firstArc[rank] + upwardNeighbours[rank].length;
+        }
+        arcHeads = new int[firstArc[nodeCount]];
+        arcTails = new int[firstArc[nodeCount]];
+        for (int rank = 0; rank < nodeCount; rank++) {
+            System.arraycopy(upwardNeighbours[rank], 0, arcHeads, firstArc[rank], upwardNeighbours[rank].length);
+            Arrays.fill(arcTails, firstArc[rank], firstArc[rank + 1], rank);
+        }
+    }
+
+    /**
+     * Merges two sorted arrays without duplicates
+     * @param first The first sorted array (possibly with duplicates)
+     * @param second The second sorted array
+     * @return The merged sorted array without duplicates
+     */
+    private static int[] mergeSorted(int[] first, int[] second) {
+        int[] merged = new int[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < first.length || j < second.length) {
+            int next = j == second.length || (i < first.length && first[i] <= second[j]) ? first[i++] : second[j++];
+            if (count == 0 || merged[count - 1] != next) {
+                merged[count++] = next;
+            }
+        }
+        return Arrays.copyOf(merged, count);
+    }
+
+    /**
+     * Gets the number of arcs of this hierarchy
+     * @return The number of arcs
+     */
+    public int getArcCount() {
+        return arcHeads.length;
+    }
+
+    /**
+     * Gets the rank of a node
+     * @param node The node index
+     * @return The rank
+     */
+    public int getRank(int node) {
+        return ranks[node];
+    }
+
+    /**
+     * Gets the node of a rank
+     * @param rank The rank
+     * @return The node index
+     */
+    public int getNodeByRank(int rank) {
+        return nodesByRank[rank];
+    }
+
+    /**
+     * Gets the first arc of a rank
+     * @param rank The rank
+     * @return The index of its first arc
+     */
+    int getFirstArc(int rank) {
+        return firstArc[rank];
+    }
+
+    /**
+     * Gets the index following the last arc of a rank
+     * @param rank The rank
+     * @return The index following its last arc
+     */
+    int getLastArcExclusive(int rank) {
+        return firstArc[rank + 1];
+    }
+
+    /**
+     * Gets the higher rank of an arc
+     * @param arc The arc index
+     * @return The higher rank
+     */
+    int getArcHead(int arc) {
+        return arcHeads[arc];
+    }
+
+    /**
+     * Gets the lower rank of an arc
+     * @param arc The arc index
+     * @return The lower rank
+     */
+    int getArcTail(int arc) {
+        return arcTails[arc];
+    }
+
+    /**
+     * Finds the arc linking two ranks
+     * @param tail The lower rank
+     * @param head The higher rank
+     * @return The arc index, or -1 if the ranks are not linked
+     */
+    int findArc(int tail, int head) {
+        int position = Arrays.binarySearch(arcHeads, firstArc[tail], firstArc[tail + 1], head);
+        return position < 0 ? -1 : position;
+    }
+
+    /**
+     * Applies a linear combination of distance and danger values to the arcs of this hierarchy.
+     * The original edges give the initial arc costs, then the lower triangles of every arc are relaxed
+     * (the triangle tail-&gt;x-&gt;head with x ranked below both ends), arcs being processed by increasing lower rank
+     * so that the arcs of a triangle are final when it is used
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The customized hierarchy, ready for searches
+     */
+    public CustomizedHierarchy customize(double distanceWeight, int useOfDangerValue) {
+        int arcCount = arcHeads.length;
+        double[] upwardCosts = new double[arcCount];
+        double[] downwardCosts = new double[arcCount];
+        int[] upwardMiddles = new int[arcCount];
+        int[] downwardMiddles = new int[arcCount];
+        Arrays.fill(upwardCosts, Double.POSITIVE_INFINITY);
+        Arrays.fill(downwardCosts, Double.POSITIVE_INFINITY);
+        Arrays.fill(upwardMiddles, -1);
+        Arrays.fill(downwardMiddles, -1);
+
+        // a middle of -2 - e means that the arc direction is the original edge e
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            int source = ranks[graph.getEdgeSource(edge)];
+            int target = ranks[graph.getEdgeTarget(edge)];
+            double cost = graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+            if (source < target) {
+                int arc = findArc(source, target);
+                if (cost < upwardCosts[arc]) {
+                    upwardCosts[arc] = cost;
+                    upwardMiddles[arc] = -2 - edge;
+                }
+            }
+            else if (source > target) {
+                int arc = findArc(target, source);
+                if (cost < downwardCosts[arc]) {
+                    downwardCosts[arc] = cost;
+                    downwardMiddles[arc] = -2 - edge;
+                }
+            }
+        }
+
+        for (int middle = 0; middle < nodesByRank.length; middle++) {
+            for (int lowArc = firstArc[middle]; lowArc < firstArc[middle + 1]; lowArc++) {
+                for (int highArc = lowArc + 1; highArc < firstArc[middle + 1]; highArc++) {
+                    int arc = findArc(arcHeads[lowArc], arcHeads[highArc]);
+                    // tail -> middle -> head and head -> middle -> tail
+                    double upwardCost = downwardCosts[lowArc] + upwardCosts[highArc];
+                    if (upwardCost < upwardCosts[arc]) {
+                        upwardCosts[arc] = upwardCost;
+                        upwardMiddles[arc] = middle;
+                    }
+                    double downwardCost = downwardCosts[highArc] + upwardCosts[lowArc];
+                    if (downwardCost < downwardCosts[arc]) {
+                        downwardCosts[arc] = downwardCost;
+                        downwardMiddles[arc] = middle;
+                    }
+                }
+            }
+        }
+
+        return new CustomizedHierarchy(this, distanceWeight, useOfDangerValue,
+                upwardCosts, downwardCosts, upwardMiddles, downwardMiddles);
+    }
+
+    /**
+     * The class computing the nested dissection order of the nodes: a region is split at the median of its widest
+     * coordinate, the nodes of the smaller side having a neighbour on the other side form the separator,
+     * and the order is the order of the first half, then of the second half, then the separator
+     */
+    private class NestedDissection {
+
+        /**
+         * The side of each node in the region being split (0 outside the region, 1 or 2 inside)
+         */
+        private final int[] sides = new int[graph.getNodeCount()];
+
+        /**
+         * The nodes in contraction order
+         */
+        private final int[] order = new int[graph.getNodeCount()];
+
+        /**
+         * The number of ordered nodes
+         */
+        private int orderedCount;
+
+        /**
+         * The scale applied to the longitudes so that both coordinates have the same unit
+         */
+        private final double longitudeScale;
+
+        /**
+         * The class constructor
+         */
+        private NestedDissection() {
+            double meanLatitude = 0;
+            for (int node = 0; node < graph.getNodeCount(); node++) {
+                meanLatitude += graph.getCoordY(node) / graph.getNodeCount();
+            }
+            longitudeScale = Math.cos(Math.toRadians(meanLatitude));
+        }
+
+        /**
+         * Computes the contraction order of all the nodes
+         * @return The nodes in contraction order
+         */
+        private int[] order() {
+            dissect(IntStream.range(0, graph.getNodeCount()).toArray());
+            return order;
+        }
+
+        /**
+         * Orders the nodes of a region
+         * @param region The nodes of the region
+         */
+        private void dissect(int[] region) {
+            if (region.length <= LEAF_SIZE) {
+                for (int node : region) {
+                    order[orderedCount++] = node;
+                }
+                return;
+            }
+
+            double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int node : region) {
+                minX = Math.min(minX, graph.getCoordX(node));
+                maxX = Math.max(maxX, graph.getCoordX(node));
+                minY = Math.min(minY, graph.getCoordY(node));
+                maxY = Math.max(maxY, graph.getCoordY(node));
+            }
+            Comparator<Integer> byCoordinate = (maxX - minX) * longitudeScale >= maxY - minY
+                    ? Comparator.comparingDouble(graph::getCoordX)
+                    : Comparator.comparingDouble(graph::getCoordY);
+            int[] sorted = Arrays.stream(region).boxed().sorted(byCoordinate.thenComparingInt(node -> node))
+                    .mapToInt(Integer::intValue).toArray();
+            int half = sorted.length / 2;
+            for (int i = 0; i < sorted.length; i++) {
+                sides[sorted[i]] = i < half ? 1 : 2;
+            }
+
+            boolean[] firstBoundary = new boolean[sorted.length];
+            boolean[] secondBoundary = new boolean[sorted.length];
+            int firstBoundaryCount = 0;
+            int secondBoundaryCount = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (hasNeighbourOnSide(sorted[i], i < half ? 2 : 1)) {
+                    if (i < half) {
+                        firstBoundary[i] = true;
+                        firstBoundaryCount++;
+                    }
+                    else {
+                        secondBoundary[i] = true;
+                        secondBoundaryCount++;
+                    }
+                }
+            }
+            boolean[] separator = firstBoundaryCount <= secondBoundaryCount ? firstBoundary : secondBoundary;
+            for (int node : sorted) {
+                sides[node] = 0;
+            }
+
+            int[] first = IntStream.range(0, half).filter(i -> !separator[i]).map(i -> sorted[i]).toArray();
+            int[] second = IntStream.range(half, sorted.length).filter(i -> !separator[i]).map(i -> sorted[i]).toArray();
+            dissect(first);
+            dissect(second);
+            for (int i = 0; i < sorted.length; i++) {
+                if (separator[i]) {
+                    order[orderedCount++] = sorted[i];
+                }
+            }
+        }
+
+        /**
+         * Checks if a node has a successor or a predecessor on a specific side of the region being split
+         * @param node The node index
+         * @param side The side (1 or 2)
+         * @return True if one of its neighbours is on this side
+         */
+        private boolean hasNeighbourOnSide(int node, int side) {
+            for (int edge = graph.getFirstEdge(node); edge < graph.getLastEdgeExclusive(node); edge++) {
+                if (sides[graph.getEdgeTarget(edge)] == side) {
+                    return true;
+                }
+            }
+            for (int position = graph.getFirstIncomingEdge(node); position < graph.getLastIncomingEdgeExclusive(node); position++) {
+                if (sides[graph.getEdgeSource(graph.getIncomingEdge(position))] == side) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * The class modelling a {@link CustomizableContractionHierarchy} customized for a specific linear combination:
+ * the cost of both directions of every arc, and how to unpack them (original edge or middle rank of a triangle).
+ * Searches are bidirectional upward searches, as in a {@link ContractionHierarchy}
+ * @version 1.00
+ */
+public class CustomizedHierarchy {
+
+    /**
+     * The metric-independent hierarchy
+     */
+    private final CustomizableContractionHierarchy hierarchy;
+
+    /**
+     * The weight of the distance value for the linear combination of this customization
+     */
+    @Getter
+    private final double distanceWeight;
+
+    /**
+     * A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used by this customization
+     */
+    @Getter
+    private final int useOfDangerValue;
+
+    /**
+     * The cost of each arc from its lower rank to its higher rank (infinite if there is no such path)
+     */
+    private final double[] upwardCosts;
+
+    /**
+     * The cost of each arc from its higher rank to its lower rank (infinite if there is no such path)
+     */
+    private final double[] downwardCosts;
+
+    /**
+     * How to unpack the upward direction of each arc: the middle rank of its triangle, or -2 - e if it is the original edge e
+     */
+    private final int[] upwardMiddles;
+
+    /**
+     * How to unpack the downward direction of each arc: the middle rank of its triangle, or -2 - e if it is the original edge e
+     */
+    private final int[] downwardMiddles;
+
+    /**
+     * The class constructor
+     * @param hierarchy The metric-independent hierarchy
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param upwardCosts The cost of each arc from its lower rank to its higher rank
+     * @param downwardCosts The cost of each arc from its higher rank to its lower rank
+     * @param upwardMiddles How to unpack the upward direction of each arc
+     * @param downwardMiddles How to unpack the downward direction of each arc
+     */
+    CustomizedHierarchy(CustomizableContractionHierarchy hierarchy, double distanceWeight, int useOfDangerValue,
+                        double[] upwardCosts, double[] downwardCosts, int[] upwardMiddles, int[] downwardMiddles) {
+        this.hierarchy = hierarchy;
+        this.distanceWeight = distanceWeight;
+        this.useOfDangerValue = useOfDangerValue;
+        this.upwardCosts = upwardCosts;
+        this.downwardCosts = downwardCosts;
+        this.upwardMiddles = upwardMiddles;
+        this.downwardMiddles = downwardMiddles;
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node (search contexts are indexed by rank)
+     * @param forward The search context of the upward search from the source (reset by this method)
+     * @param backward The search context of the upward search from the sink (reset by this method)
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param statistics The statistics in which the settled nodes of both directions are recorded
+     * @return The shortest-path with the values of its original edges, or {@link ShortestPath#NOT_FOUND} if the sink can't be reached
+     */
+    public ShortestPath search(SearchContext forward, SearchContext backward, int source, int sink, SearchStatistics statistics) {
+        forward.reset();
+        backward.reset();
+        IndexedMinHeap forwardQueue = forward.getQueue();
+        IndexedMinHeap backwardQueue = backward.getQueue();
+
+        int sourceRank = hierarchy.getRank(source);
+        int sinkRank = hierarchy.getRank(sink);
+        forward.setCost(sourceRank, 0.0, -1, 0.0, 0.0);
+        forwardQueue.push(sourceRank, 0.0);
+        backward.setCost(sinkRank, 0.0, -1, 0.0, 0.0);
+        backwardQueue.push(sinkRank, 0.0);
+
+        double bestCost = Double.MAX_VALUE;
+        int meetingRank = -1;
+        int forwardSettled = 0;
+        int backwardSettled = 0;
+
+        while (true) {
+            boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.peekKey() < bestCost;
+            boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.peekKey() < bestCost;
+            if (!forwardActive && !backwardActive) {
+                break;
+            }
+
+            boolean forwardTurn = forwardActive && (!backwardActive || forwardQueue.peekKey() <= backwardQueue.peekKey());
+            SearchContext current = forwardTurn ? forward : backward;
+            SearchContext other = forwardTurn ? backward : forward;
+            double[] costs = forwardTurn ? upwardCosts : downwardCosts;
+
+            int currentRank = current.getQueue().poll();
+            if (forwardTurn) {
+                forwardSettled++;
+            }
+            else {
+                backwardSettled++;
+            }
+            double currentCost = current.getCost(currentRank);
+            if (other.isVisited(currentRank) && currentCost + other.getCost(currentRank) < bestCost) {
+                bestCost = currentCost + other.getCost(currentRank);
+                meetingRank = currentRank;
+            }
+            for (int arc = hierarchy.getFirstArc(currentRank); arc < hierarchy.getLastArcExclusive(currentRank); arc++) {
+                int adjacentRank = hierarchy.getArcHead(arc);
+                double newCost = currentCost + costs[arc];
+                if (newCost < current.getCost(adjacentRank)) {
+                    current.setCost(adjacentRank, newCost, arc, 0.0, 0.0);
+                    current.getQueue().push(adjacentRank, newCost);
+                }
+            }
+        }
+        statistics.recordSearch(forwardSettled, backwardSettled);
+
+        if (meetingRank == -1) {
+            return ShortestPath.NOT_FOUND;
+        }
+        return unpack(forward, backward, sourceRank, sinkRank, meetingRank);
+    }
+
+    /**
+     * Unpacks the arcs of the path found by a search into original edges and sums their values in path order
+     * (so that the totals are the ones a Dijkstra search would give for the same path)
+     * @param forward The search context of the upward search from the source
+     * @param backward The search context of the upward search from the sink
+     * @param sourceRank The rank of the starting node
+     * @param sinkRank The rank of the ending node
+     * @param meetingRank The rank where both searches meet
+     * @return The shortest-path
+     */
+    private ShortestPath unpack(SearchContext forward, SearchContext backward, int sourceRank, int sinkRank, int meetingRank) {
+        int forwardArcs = 0;
+        for (int rank = meetingRank; rank != sourceRank; rank = hierarchy.getArcTail(forward.getPredecessorEdge(rank))) {
+            forwardArcs++;
+        }
+        int backwardArcs = 0;
+        for (int rank = meetingRank; rank != sinkRank; rank = hierarchy.getArcTail(backward.getPredecessorEdge(rank))) {
+            backwardArcs++;
+        }
+
+        // arc directions still to unpack (2 * arc for upward, 2 * arc + 1 for downward), the next one on the path being on top:
+        // the backward half goes in first, the arc nearest to the sink at the bottom
+        int[] pending = new int[2 * (forwardArcs + backwardArcs) + 64];
+        int rank = meetingRank;
+        for (int i = backwardArcs - 1; i >= 0; i--) {
+            pending[i] = 2 * backward.getPredecessorEdge(rank) + 1;
+            rank = hierarchy.getArcTail(backward.getPredecessorEdge(rank));
+        }
+        int pendingCount = backwardArcs;
+        for (rank = meetingRank; rank != sourceRank; rank = hierarchy.getArcTail(forward.getPredecessorEdge(rank))) {
+            pending[pendingCount++] = 2 * forward.getPredecessorEdge(rank);
+        }
+
+        CompactGraph graph = hierarchy.getGraph();
+        int[] nodes = new int[Math.max(16, forwardArcs + backwardArcs + 1)];
+        int length = 0;
+        nodes[length++] = hierarchy.getNodeByRank(sourceRank);
+        double cost = 0.0;
+        double distance = 0.0;
+        double danger = 0.0;
+        while (pendingCount > 0) {
+            int arcDirection = pending[--pendingCount];
+            int arc = arcDirection >> 1;
+            boolean upward = (arcDirection & 1) == 0;
+            int middle = upward ? upwardMiddles[arc] : downwardMiddles[arc];
+            if (middle >= 0) {
+                // tail -> middle -> head for the upward direction, head -> middle -> tail for the downward one
+                int tailArc = hierarchy.findArc(middle, hierarchy.getArcTail(arc));
+                int headArc = hierarchy.findArc(middle, hierarchy.getArcHead(arc));
+                if (pendingCount + 2 > pending.length) {
+                    pending = Arrays.copyOf(pending, 2 * pending.length);
+                }
+                if (upward) {
+                    pending[pendingCount++] = 2 * headArc;
+                    pending[pendingCount++] = 2 * tailArc + 1;
+                }
+                else {
+                    pending[pendingCount++] = 2 * tailArc;
+                    pending[pendingCount++] = 2 * headArc + 1;
+                }
+                continue;
+            }
+
+            int originalEdge = -2 - middle;
+            cost += graph.getEdgeCost(originalEdge, distanceWeight, useOfDangerValue);
+            distance += graph.getEdgeDistance(originalEdge);
+            danger += graph.getEdgeDanger(originalEdge, useOfDangerValue);
+            if (length == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * length);
+            }
+            nodes[length++] = graph.getEdgeTarget(originalEdge);
+        }
+        return new ShortestPath(Arrays.copyOf(nodes, length), cost, distance, danger);
+    }
+}
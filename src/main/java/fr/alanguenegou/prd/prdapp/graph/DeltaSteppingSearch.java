@@ -0,0 +1,343 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class computing the costs between a source node and every node of a {@link CompactGraph} with the delta-stepping
+ * algorithm, the relaxations of each step being shared between the workers of a fork/join pool. The nodes are kept in
+ * buckets of width delta by cost: the nodes of the lowest bucket relax their light edges (cost lower than or equal to
+ * delta) until the bucket doesn't change anymore, then their heavy edges, which can only reach later buckets.
+ * The cost of each node is lowered by compare-and-set on its bits, so concurrent relaxations keep the lowest one, and
+ * the costs found are the same as the ones of the Dijkstra algorithm whatever the order of the relaxations.
+ * An instance can be used by several threads at once
+ * @version 1.00
+ */
+public class DeltaSteppingSearch {
+
+    /**
+     * The number of chunks of a step given to each worker, so that the workers finish together
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * The smallest number of nodes relaxed by a chunk (smaller steps are done by the calling thread only)
+     */
+    private static final int MIN_CHUNK_SIZE = 256;
+
+    /**
+     * The number of workers
+     */
+    @Getter
+    private final int parallelism;
+
+    /**
+     * The pool running the workers (null until a search has a step large enough to be shared between them)
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The bucket width chosen for each linear combination, by (distance weight, use of danger value)
+     * (the mean edge cost being used for the other ones)
+     */
+    private final Map<Pair<Double, Integer>, Double> deltas = new ConcurrentHashMap<>();
+
+    /**
+     * The class constructor
+     * @param parallelism The number of workers
+     */
+    public DeltaSteppingSearch(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the pool running the workers, creating it if needed
+     * @return The pool
+     */
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * Sets the bucket width of the searches of a linear combination: a small width gives fewer useless relaxations but
+     * more steps, each with fewer nodes to share between the workers
+     * @param distanceWeight The distance weight of the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param delta The bucket width, in cost units
+     * @throws IllegalArgumentException If the width isn't strictly positive
+     */
+    public void setDelta(double distanceWeight, int useOfDangerValue, double delta) {
+        if (!(delta > 0.0) || Double.isInfinite(delta)) {
+            throw new IllegalArgumentException("La largeur des paquets doit être strictement positive et finie : " + delta);
+        }
+        deltas.put(Pair.with(distanceWeight, useOfDangerValue), delta);
+    }
+
+    /**
+     * Gets the bucket width of the searches of a linear combination
+     * @param graph The compact graph
+     * @param distanceWeight The distance weight of the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The width set by {@link DeltaSteppingSearch#setDelta(double, int, double)}, or the mean edge cost of the graph
+     */
+    public double getDelta(CompactGraph graph, double distanceWeight, int useOfDangerValue) {
+        Double delta = deltas.get(Pair.with(distanceWeight, useOfDangerValue));
+        if (delta != null) {
+            return delta;
+        }
+        double costSum = 0.0;
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            costSum += graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+        }
+        return costSum > 0.0 ? costSum / graph.getEdgeCount() : 1.0;
+    }
+
+    /**
+     * Calculates the costs between a source node and every node of a graph
+     * @param graph The compact graph
+     * @param source The source node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param statistics The statistics in which the relaxed nodes are recorded
+     * @return The cost of each node index, {@link Double#MAX_VALUE} for the nodes that can't be reached
+     */
+    public double[] search(CompactGraph graph, int source, double distanceWeight, int useOfDangerValue, SearchStatistics statistics) {
+        double delta = getDelta(graph, distanceWeight, useOfDangerValue);
+        int nodeCount = graph.getNodeCount();
+        AtomicLongArray costs = new AtomicLongArray(nodeCount);
+        long unreachedBits = Double.doubleToRawLongBits(Double.MAX_VALUE);
+        for (int node = 0; node < nodeCount; node++) {
+            costs.set(node, unreachedBits);
+        }
+        costs.set(source, Double.doubleToRawLongBits(0.0));
+
+        TreeMap<Long, NodeList> buckets = new TreeMap<>();
+        buckets.put(0L, new NodeList());
+        buckets.get(0L).add(source);
+        // the last step each node was put in the frontier of, and the last bucket it was relaxed in
+        int[] frontierSteps = new int[nodeCount];
+        long[] relaxedBuckets = new long[nodeCount];
+        Arrays.fill(relaxedBuckets, -1L);
+        int step = 0;
+        long relaxedNodes = 0;
+
+        while (!buckets.isEmpty()) {
+            Map.Entry<Long, NodeList> lowestBucket = buckets.pollFirstEntry();
+            long bucket = lowestBucket.getKey();
+
+            // the bucket can hold nodes whose cost was lowered to an earlier bucket since they were put in it
+            step++;
+            NodeList frontier = new NodeList();
+            for (int position = 0; position < lowestBucket.getValue().size(); position++) {
+                int node = lowestBucket.getValue().get(position);
+                if (getBucket(costs, node, delta) == bucket && frontierSteps[node] != step) {
+                    frontierSteps[node] = step;
+                    frontier.add(node);
+                }
+            }
+
+            // the light edges are relaxed until no cost of the bucket is lowered anymore
+            NodeList bucketNodes = new NodeList();
+            while (frontier.size() > 0) {
+                relaxedNodes += frontier.size();
+                for (int position = 0; position < frontier.size(); position++) {
+                    int node = frontier.get(position);
+                    if (relaxedBuckets[node] != bucket) {
+                        relaxedBuckets[node] = bucket;
+                        bucketNodes.add(node);
+                    }
+                }
+                NodeList lowered = relax(graph, costs, frontier, distanceWeight, useOfDangerValue, delta, true);
+                step++;
+                frontier = new NodeList();
+                for (int position = 0; position < lowered.size(); position++) {
+                    int node = lowered.get(position);
+                    long nodeBucket = getBucket(costs, node, delta);
+                    if (nodeBucket != bucket) {
+                        buckets.computeIfAbsent(nodeBucket, key -> new NodeList()).add(node);
+                    }
+                    else if (frontierSteps[node] != step) {
+                        frontierSteps[node] = step;
+                        frontier.add(node);
+                    }
+                }
+            }
+
+            // the costs of the bucket are now final, and its heavy edges only reach later buckets
+            NodeList lowered = relax(graph, costs, bucketNodes, distanceWeight, useOfDangerValue, delta, false);
+            for (int position = 0; position < lowered.size(); position++) {
+                int node = lowered.get(position);
+                buckets.computeIfAbsent(getBucket(costs, node, delta), key -> new NodeList()).add(node);
+            }
+        }
+        statistics.recordSearch(relaxedNodes, 0);
+
+        double[] finalCosts = new double[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            finalCosts[node] = Double.longBitsToDouble(costs.get(node));
+        }
+        return finalCosts;
+    }
+
+    /**
+     * Relaxes the light or heavy edges of some nodes, in parallel when there are enough of them
+     * @param graph The compact graph
+     * @param costs The bits of the current cost of each node
+     * @param nodes The nodes whose edges are relaxed
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param delta The bucket width
+     * @param light If true, the edges whose cost is lower than or equal to delta are relaxed, otherwise the other ones
+     * @return The nodes whose cost was lowered (a node can be there several times)
+     */
+    private NodeList relax(CompactGraph graph, AtomicLongArray costs, NodeList nodes, double distanceWeight,
+                           int useOfDangerValue, double delta, boolean light) {
+        int chunkCount = Math.min(parallelism * CHUNKS_PER_WORKER, nodes.size() / MIN_CHUNK_SIZE);
+        if (parallelism <= 1 || chunkCount <= 1) {
+            return relaxChunk(graph, costs, nodes, 0, nodes.size(), distanceWeight, useOfDangerValue, delta, light);
+        }
+
+        ForkJoinPool pool = getPool();
+        List<ForkJoinTask<NodeList>> chunks = new ArrayList<>(chunkCount);
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int from = (int) ((long) nodes.size() * chunk / chunkCount);
+            int to = (int) ((long) nodes.size() * (chunk + 1) / chunkCount);
+            chunks.add(pool.submit(() -> relaxChunk(graph, costs, nodes, from, to, distanceWeight, useOfDangerValue, delta, light)));
+        }
+        NodeList lowered = new NodeList();
+        for (ForkJoinTask<NodeList> chunk : chunks) {
+            lowered.addAll(chunk.join());
+        }
+        return lowered;
+    }
+
+    /**
+     * Relaxes the light or heavy edges of a range of nodes
+     * @param graph The compact graph
+     * @param costs The bits of the current cost of each node
+     * @param nodes The nodes whose edges are relaxed
+     * @param from The first position of the range in the nodes
+     * @param to The position after the last one of the range in the nodes
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param delta The bucket width
+     * @param light If true, the edges whose cost is lower than or equal to delta are relaxed, otherwise the other ones
+     * @return The nodes whose cost was lowered
+     */
+    private static NodeList relaxChunk(CompactGraph graph, AtomicLongArray costs, NodeList nodes, int from, int to,
+                                       double distanceWeight, int useOfDangerValue, double delta, boolean light) {
+        NodeList lowered = new NodeList();
+        for (int position = from; position < to; position++) {
+            int node = nodes.get(position);
+            // the cost is read again at each relaxation: if another worker lowers it, the node will be relaxed again
+            double nodeCost = Double.longBitsToDouble(costs.get(node));
+            for (int edge = graph.getFirstEdge(node); edge < graph.getLastEdgeExclusive(node); edge++) {
+                double edgeCost = graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+                if ((edgeCost <= delta) == light && lowerCost(costs, graph.getEdgeTarget(edge), nodeCost + edgeCost)) {
+                    lowered.add(graph.getEdgeTarget(edge));
+                }
+            }
+        }
+        return lowered;
+    }
+
+    /**
+     * Lowers the cost of a node if a new cost is lower, with a compare-and-set on its bits
+     * @param costs The bits of the current cost of each node
+     * @param node The node index
+     * @param cost The new cost
+     * @return True if the cost of the node was lowered
+     */
+    private static boolean lowerCost(AtomicLongArray costs, int node, double cost) {
+        long newBits = Double.doubleToRawLongBits(cost);
+        while (true) {
+            long currentBits = costs.get(node);
+            if (cost >= Double.longBitsToDouble(currentBits)) {
+                return false;
+            }
+            if (costs.compareAndSet(node, currentBits, newBits)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets the bucket of the current cost of a node
+     * @param costs The bits of the current cost of each node
+     * @param node The node index
+     * @param delta The bucket width
+     * @return The bucket index
+     */
+    private static long getBucket(AtomicLongArray costs, int node, double delta) {
+        return (long) Math.floor(Double.longBitsToDouble(costs.get(node)) / delta);
+    }
+
+    /**
+     * The class modelling a growable list of node indices
+     */
+    private static final class NodeList {
+
+        /**
+         * The node indices
+         */
+        private int[] nodes = new int[16];
+
+        /**
+         * The number of node indices
+         */
+        private int size = 0;
+
+        /**
+         * Adds a node index at the end of this list
+         * @param node The node index
+         */
+        void add(int node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+            }
+            nodes[size++] = node;
+        }
+
+        /**
+         * Adds the node indices of another list at the end of this list
+         * @param other The other list
+         */
+        void addAll(NodeList other) {
+            if (size + other.size > nodes.length) {
+                nodes = Arrays.copyOf(nodes, Math.max(2 * nodes.length, size + other.size));
+            }
+            System.arraycopy(other.nodes, 0, nodes, size, other.size);
+            size += other.size;
+        }
+
+        /**
+         * Gets a node index of this list
+         * @param position The position in the list
+         * @return The node index
+         */
+        int get(int position) {
+            return nodes[position];
+        }
+
+        /**
+         * Gets the number of node indices in this list
+         * @return The size of the list
+         */
+        int size() {
+            return size;
+        }
+    }
+}
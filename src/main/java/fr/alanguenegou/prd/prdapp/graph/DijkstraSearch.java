@@ -0,0 +1,246 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * The class computing point-to-point shortest-paths on a {@link CompactGraph} with the Dijkstra algorithm,
+ * the next node to settle being picked with the indexed heap of a {@link SearchContext}
+ * @version 1.00
+ */
+public final class DijkstraSearch {
+
+    /**
+     * Private constructor of this utility class
+     */
+    private DijkstraSearch() {
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node, stopping once the sink is settled.
+     * The costs, predecessors and path totals are left in the search context so that the path can be rebuilt from the sink
+     * (see {@link ShortestPath#fromSearchContext(CompactGraph, SearchContext, int, int)})
+     * @param graph The compact graph
+     * @param context The search context (reset by this method)
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param statistics The statistics in which the settled nodes are recorded
+     * @return The cost of the shortest-path, or {@link Double#MAX_VALUE} if the sink can't be reached
+     */
+    public static double search(CompactGraph graph, SearchContext context, int source, int sink,
+                                double distanceWeight, int useOfDangerValue, SearchStatistics statistics) {
+        context.reset();
+        IndexedMinHeap unsettledNodes = context.getQueue();
+
+        // adds the source node to the queue
+        context.setCost(source, 0.0, -1, 0.0, 0.0);
+        unsettledNodes.push(source, 0.0);
+        int settled = 0;
+
+        while (!unsettledNodes.isEmpty()) {
+
+            // the node with the lowest cost from source node is the next one to be settled
+            int currentNode = unsettledNodes.poll();
+            context.settle(currentNode);
+            settled++;
+
+            // if sink just got settled, its cost and shortest path are final
+            if (currentNode == sink) {
+                statistics.recordSearch(settled, 0);
+                return context.getCost(sink);
+            }
+
+            // iterates on every of its neighbours that hasn't been settled yet
+            double currentCost = context.getCost(currentNode);
+            double currentDistance = context.getDistance(currentNode);
+            double currentDanger = context.getDanger(currentNode);
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                int adjacentNode = graph.getEdgeTarget(edge);
+                if (!context.isSettled(adjacentNode)) {
+                    double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+
+                    // queues the neighbour (or updates its position in the queue) if its cost improved
+                    if (newCost < context.getCost(adjacentNode)) {
+                        context.setCost(adjacentNode, newCost, edge,
+                                currentDistance + graph.getEdgeDistance(edge),
+                                currentDanger + graph.getEdgeDanger(edge, useOfDangerValue));
+                        unsettledNodes.push(adjacentNode, newCost);
+                    }
+                }
+            }
+        }
+        statistics.recordSearch(settled, 0);
+        return Double.MAX_VALUE;
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node as
+     * {@link DijkstraSearch#search(CompactGraph, SearchContext, int, int, double, int, SearchStatistics)}, without exploring the
+     * nodes reached with a cost above a cap or out of a corridor. The path found is a shortest one if its cost is lower than the returned bound
+     * @param graph The compact graph
+     * @param context The search context (reset by this method)
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param costCap The highest cost of an explored node
+     * @param corridor The test of the nodes that can be explored
+     * @param lowerBound The lower bounds on the cost from any node to the sink
+     * @param statistics The statistics in which the settled nodes are recorded
+     * @return The lowest cost a path through a node that wasn't explored can reach the sink with ({@link Double#MAX_VALUE} if no node was left out)
+     */
+    public static double searchWithinLimits(CompactGraph graph, SearchContext context, int source, int sink,
+                                            double distanceWeight, int useOfDangerValue, double costCap, IntPredicate corridor,
+                                            LowerBound lowerBound, SearchStatistics statistics) {
+        context.reset();
+        IndexedMinHeap unsettledNodes = context.getQueue();
+        context.setCost(source, 0.0, -1, 0.0, 0.0);
+        unsettledNodes.push(source, 0.0);
+        int settled = 0;
+        double prunedBound = Double.MAX_VALUE;
+
+        while (!unsettledNodes.isEmpty()) {
+            int currentNode = unsettledNodes.poll();
+            context.settle(currentNode);
+            settled++;
+            if (currentNode == sink) {
+                break;
+            }
+
+            double currentCost = context.getCost(currentNode);
+            double currentDistance = context.getDistance(currentNode);
+            double currentDanger = context.getDanger(currentNode);
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                int adjacentNode = graph.getEdgeTarget(edge);
+                if (!context.isSettled(adjacentNode)) {
+                    double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+
+                    // a node beyond the limits is left out, the cheapest path it could give being remembered
+                    if (newCost > costCap || !corridor.test(adjacentNode)) {
+                        prunedBound = Math.min(prunedBound, newCost + lowerBound.toSink(adjacentNode));
+                    }
+                    else if (newCost < context.getCost(adjacentNode)) {
+                        context.setCost(adjacentNode, newCost, edge,
+                                currentDistance + graph.getEdgeDistance(edge),
+                                currentDanger + graph.getEdgeDanger(edge, useOfDangerValue));
+                        unsettledNodes.push(adjacentNode, newCost);
+                    }
+                }
+            }
+        }
+        statistics.recordSearch(settled, 0);
+        return prunedBound;
+    }
+
+    /**
+     * Calculates the shortest-paths from a source node to several sink nodes with a single search, stopping once every
+     * sink is settled (so once the farthest one is). The shortest-path to each sink is the one a search towards this sink
+     * alone would find, the nodes being settled in the same order
+     * @param graph The compact graph
+     * @param context The search context (reset by this method)
+     * @param source The starting node index
+     * @param sinks The ending node indices
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param statistics The statistics in which the settled nodes are recorded
+     */
+    public static void searchMany(CompactGraph graph, SearchContext context, int source, BitSet sinks,
+                                  double distanceWeight, int useOfDangerValue, SearchStatistics statistics) {
+        context.reset();
+        IndexedMinHeap unsettledNodes = context.getQueue();
+        context.setCost(source, 0.0, -1, 0.0, 0.0);
+        unsettledNodes.push(source, 0.0);
+        int remainingSinks = sinks.cardinality();
+        int settled = 0;
+
+        while (!unsettledNodes.isEmpty()) {
+            int currentNode = unsettledNodes.poll();
+            context.settle(currentNode);
+            settled++;
+            if (sinks.get(currentNode) && --remainingSinks == 0) {
+                break;
+            }
+
+            double currentCost = context.getCost(currentNode);
+            double currentDistance = context.getDistance(currentNode);
+            double currentDanger = context.getDanger(currentNode);
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                int adjacentNode = graph.getEdgeTarget(edge);
+                if (!context.isSettled(adjacentNode)) {
+                    double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+                    if (newCost < context.getCost(adjacentNode)) {
+                        context.setCost(adjacentNode, newCost, edge,
+                                currentDistance + graph.getEdgeDistance(edge),
+                                currentDanger + graph.getEdgeDanger(edge, useOfDangerValue));
+                        unsettledNodes.push(adjacentNode, newCost);
+                    }
+                }
+            }
+        }
+        statistics.recordSearch(settled, 0);
+    }
+
+    /**
+     * Calculates the costs between an origin node and every node it is linked to, without any stopping criterion
+     * (the costs, predecessor edges and totals are left in the search context)
+     * @param graph The compact graph
+     * @param context The search context (reset by this method)
+     * @param origin The origin node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param backward If true, the costs are the ones from every node to the origin (predecessors are then followed
+     *                 and predecessor edges are the first edges of the paths towards the origin), otherwise from the origin to every node
+     */
+    public static void searchAll(CompactGraph graph, SearchContext context, int origin,
+                                 double distanceWeight, int useOfDangerValue, boolean backward) {
+        searchAll(graph, context, origin, distanceWeight, useOfDangerValue, backward, Double.MAX_VALUE);
+    }
+
+    /**
+     * Calculates the costs between an origin node and every node it is linked to with a cost up to a limit, as
+     * {@link DijkstraSearch#searchAll(CompactGraph, SearchContext, int, double, int, boolean)}. The nodes costing more
+     * than the limit are left unsettled, with a cost higher than the limit (or {@link Double#MAX_VALUE} if unreached)
+     * @param graph The compact graph
+     * @param context The search context (reset by this method)
+     * @param origin The origin node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param backward If true, the costs are the ones from every node to the origin, otherwise from the origin to every node
+     * @param costLimit The highest cost of a settled node
+     */
+    public static void searchAll(CompactGraph graph, SearchContext context, int origin,
+                                 double distanceWeight, int useOfDangerValue, boolean backward, double costLimit) {
+        context.reset();
+        IndexedMinHeap unsettledNodes = context.getQueue();
+        context.setCost(origin, 0.0, -1, 0.0, 0.0);
+        unsettledNodes.push(origin, 0.0);
+
+        while (!unsettledNodes.isEmpty()) {
+            int currentNode = unsettledNodes.poll();
+            double currentCost = context.getCost(currentNode);
+            if (currentCost > costLimit) {
+                break;
+            }
+            context.settle(currentNode);
+
+            int first = backward ? graph.getFirstIncomingEdge(currentNode) : graph.getFirstEdge(currentNode);
+            int last = backward ? graph.getLastIncomingEdgeExclusive(currentNode) : graph.getLastEdgeExclusive(currentNode);
+            for (int position = first; position < last; position++) {
+                int edge = backward ? graph.getIncomingEdge(position) : position;
+                int adjacentNode = backward ? graph.getEdgeSource(edge) : graph.getEdgeTarget(edge);
+                if (context.isSettled(adjacentNode)) {
+                    continue;
+                }
+                double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+                if (newCost < context.getCost(adjacentNode)) {
+                    context.setCost(adjacentNode, newCost, edge,
+                            context.getDistance(currentNode) + graph.getEdgeDistance(edge),
+                            context.getDanger(currentNode) + graph.getEdgeDanger(edge, useOfDangerValue));
+                    unsettledNodes.push(adjacentNode, newCost);
+                }
+            }
+        }
+    }
+}
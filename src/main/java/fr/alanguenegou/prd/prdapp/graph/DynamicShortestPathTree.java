@@ -0,0 +1,343 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Pair;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The class modelling the shortest-path tree of a source node on a {@link CompactGraph} for a linear combination, kept
+ * up to date when the danger values of some edges change instead of being searched again (in the style of the
+ * Ramalingam–Reps dynamic algorithm). The tree holds every node whose cost is below a bound (the cost of its farthest
+ * sink when it was built): when edges get cheaper, only the nodes whose path improves are searched again, from the
+ * ends of these edges; when edges get more expensive, the tree stays as it is unless one of them is in the tree.
+ * The nodes are stored sparsely (a tree only covers the part of the graph its sinks needed).
+ * An instance must only be used by one thread at a time
+ * @version 1.00
+ */
+public class DynamicShortestPathTree {
+
+    /**
+     * The compact graph of this tree
+     */
+    @Getter
+    private final CompactGraph graph;
+
+    /**
+     * The root node index
+     */
+    @Getter
+    private final int source;
+
+    /**
+     * The weight of the distance value for the linear combination of this tree
+     */
+    @Getter
+    private final double distanceWeight;
+
+    /**
+     * A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used by this tree
+     */
+    @Getter
+    private final int useOfDangerValue;
+
+    /**
+     * The cost below which every node is in this tree ({@link Double#MAX_VALUE} if every node linked to the source is)
+     */
+    private final double bound;
+
+    /**
+     * The node of each position of the hash table (node index + 1, 0 for an empty position)
+     */
+    private int[] tableNodes;
+
+    /**
+     * The slot of each position of the hash table
+     */
+    private int[] tableSlots;
+
+    /**
+     * The number of nodes in this tree
+     */
+    private int size;
+
+    /**
+     * The cost of the path of each slot
+     */
+    private double[] costs;
+
+    /**
+     * The total distance of the path of each slot
+     */
+    private double[] distances;
+
+    /**
+     * The total danger of the path of each slot
+     */
+    private double[] dangers;
+
+    /**
+     * The last edge of the path of each slot (-1 for the source)
+     */
+    private int[] predecessorEdges;
+
+    /**
+     * The class constructor, with an empty tree
+     * @param graph The compact graph
+     * @param source The root node index
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param bound The cost below which every node is in the tree
+     * @param capacity The expected number of nodes
+     */
+    private DynamicShortestPathTree(CompactGraph graph, int source, double distanceWeight, int useOfDangerValue, double bound, int capacity) {
+        this.graph = graph;
+        this.source = source;
+        this.distanceWeight = distanceWeight;
+        this.useOfDangerValue = useOfDangerValue;
+        this.bound = bound;
+        int tableSize = Integer.highestOneBit(Math.max(16, 2 * capacity) - 1) << 1;
+        tableNodes = new int[tableSize];
+        tableSlots = new int[tableSize];
+        costs = new double[Math.max(8, capacity)];
+        distances = new double[costs.length];
+        dangers = new double[costs.length];
+        predecessorEdges = new int[costs.length];
+    }
+
+    /**
+     * Computes the shortest-path tree of a source node, up to the farthest of some sink nodes
+     * @param graph The compact graph
+     * @param context The search context (reset by this method)
+     * @param source The root node index
+     * @param sinks The node indices the tree must reach
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param statistics The statistics in which the settled nodes are recorded
+     * @return The shortest-path tree
+     */
+    public static DynamicShortestPathTree build(CompactGraph graph, SearchContext context, int source, BitSet sinks,
+                                                double distanceWeight, int useOfDangerValue, SearchStatistics statistics) {
+        context.reset();
+        IndexedMinHeap unsettledNodes = context.getQueue();
+        context.setCost(source, 0.0, -1, 0.0, 0.0);
+        unsettledNodes.push(source, 0.0);
+        int remainingSinks = sinks.cardinality();
+        int[] settledNodes = new int[64];
+        int settled = 0;
+
+        while (!unsettledNodes.isEmpty()) {
+            int currentNode = unsettledNodes.poll();
+            context.settle(currentNode);
+            if (settled == settledNodes.length) {
+                settledNodes = Arrays.copyOf(settledNodes, 2 * settled);
+            }
+            settledNodes[settled++] = currentNode;
+            if (sinks.get(currentNode) && --remainingSinks == 0) {
+                break;
+            }
+
+            double currentCost = context.getCost(currentNode);
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                int adjacentNode = graph.getEdgeTarget(edge);
+                if (!context.isSettled(adjacentNode)) {
+                    double newCost = currentCost + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+                    if (newCost < context.getCost(adjacentNode)) {
+                        context.setCost(adjacentNode, newCost, edge,
+                                context.getDistance(currentNode) + graph.getEdgeDistance(edge),
+                                context.getDanger(currentNode) + graph.getEdgeDanger(edge, useOfDangerValue));
+                        unsettledNodes.push(adjacentNode, newCost);
+                    }
+                }
+            }
+        }
+        statistics.recordSearch(settled, 0);
+
+        // the nodes of the tree are the settled ones, whose cost is final
+        double bound = remainingSinks == 0 ? context.getCost(settledNodes[settled - 1]) : Double.MAX_VALUE;
+        DynamicShortestPathTree tree = new DynamicShortestPathTree(graph, source, distanceWeight, useOfDangerValue, bound, settled);
+        for (int position = 0; position < settled; position++) {
+            int node = settledNodes[position];
+            tree.setPath(node, context.getCost(node), context.getPredecessorEdge(node), context.getDistance(node), context.getDanger(node));
+        }
+        return tree;
+    }
+
+    /**
+     * Gets the number of nodes in this tree
+     * @return The number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the shortest-path to a node is known by this tree
+     * @param node The node index
+     * @return True if the node is in this tree, or can't be reached at all
+     */
+    public boolean covers(int node) {
+        return getSlot(node) >= 0 || bound == Double.MAX_VALUE;
+    }
+
+    /**
+     * Gets the labels (distance, danger) of the shortest-path to a node covered by this tree
+     * @param node The node index
+     * @return The distance and danger values of the shortest-path (both 0 if the node can't be reached, as for {@link ShortestPath#NOT_FOUND})
+     */
+    public Pair<Double, Double> getLabel(int node) {
+        int slot = getSlot(node);
+        if (slot < 0) {
+            return Pair.with(ShortestPath.NOT_FOUND.getDistance(), ShortestPath.NOT_FOUND.getDanger());
+        }
+        return Pair.with(distances[slot], dangers[slot]);
+    }
+
+    /**
+     * Updates this tree after the danger values of some edges changed in the graph
+     * @param edges The modified edges
+     * @param previousDangers The danger value of each modified edge before the modification
+     * @param queue An empty queue sized for the graph, used to search the improved paths again
+     * @param statistics The statistics in which the searched nodes are recorded
+     * @return True if this tree is up to date, false if it has to be computed again (an edge of the tree got more expensive)
+     */
+    public boolean repair(int[] edges, double[] previousDangers, IndexedMinHeap queue, SearchStatistics statistics) {
+        // an edge of the tree that got more expensive can lengthen the path of every node below it
+        for (int position = 0; position < edges.length; position++) {
+            double danger = graph.getEdgeDanger(edges[position], useOfDangerValue);
+            if (danger > previousDangers[position]) {
+                int slot = getSlot(graph.getEdgeTarget(edges[position]));
+                if (slot >= 0 && predecessorEdges[slot] == edges[position]) {
+                    return false;
+                }
+            }
+        }
+
+        // the paths going through an edge that got cheaper are searched again from the end of this edge
+        queue.clear();
+        for (int position = 0; position < edges.length; position++) {
+            int slot = getSlot(graph.getEdgeSource(edges[position]));
+            if (slot >= 0 && graph.getEdgeDanger(edges[position], useOfDangerValue) < previousDangers[position]) {
+                relax(slot, edges[position], queue);
+            }
+        }
+        int searched = 0;
+        while (!queue.isEmpty()) {
+            int currentNode = queue.poll();
+            searched++;
+            int slot = getSlot(currentNode);
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                relax(slot, edge, queue);
+            }
+        }
+        statistics.recordSearch(searched, 0);
+        return true;
+    }
+
+    /**
+     * Gives the end of an edge the path through this edge if it is cheaper than its current one and below the bound of this tree
+     * @param slot The slot of the start of the edge
+     * @param edge The edge
+     * @param queue The queue of the nodes whose path improved
+     */
+    private void relax(int slot, int edge, IndexedMinHeap queue) {
+        double newCost = costs[slot] + graph.getEdgeCost(edge, distanceWeight, useOfDangerValue);
+        if (newCost > bound) {
+            return;
+        }
+        int adjacentNode = graph.getEdgeTarget(edge);
+        int adjacentSlot = getSlot(adjacentNode);
+        if (adjacentSlot < 0 || newCost < costs[adjacentSlot]) {
+            setPath(adjacentNode, newCost, edge,
+                    distances[slot] + graph.getEdgeDistance(edge),
+                    dangers[slot] + graph.getEdgeDanger(edge, useOfDangerValue));
+            queue.push(adjacentNode, newCost);
+        }
+    }
+
+    /**
+     * Gets the slot of a node
+     * @param node The node index
+     * @return The slot, or -1 if the node isn't in this tree
+     */
+    private int getSlot(int node) {
+        int mask = tableNodes.length - 1;
+        for (int position = hash(node) & mask; tableNodes[position] != 0; position = (position + 1) & mask) {
+            if (tableNodes[position] == node + 1) {
+                return tableSlots[position];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the shortest-path of a node, adding the node to this tree if needed
+     * @param node The node index
+     * @param cost The cost of the path
+     * @param predecessorEdge The last edge of the path
+     * @param distance The total distance of the path
+     * @param danger The total danger of the path
+     */
+    private void setPath(int node, double cost, int predecessorEdge, double distance, double danger) {
+        int slot = getSlot(node);
+        if (slot < 0) {
+            if (2 * (size + 1) > tableNodes.length) {
+                resizeTable();
+            }
+            if (size == costs.length) {
+                int capacity = 2 * size;
+                costs = Arrays.copyOf(costs, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+                dangers = Arrays.copyOf(dangers, capacity);
+                predecessorEdges = Arrays.copyOf(predecessorEdges, capacity);
+            }
+            slot = size++;
+            insert(node, slot);
+        }
+        costs[slot] = cost;
+        predecessorEdges[slot] = predecessorEdge;
+        distances[slot] = distance;
+        dangers[slot] = danger;
+    }
+
+    /**
+     * Adds a node to the hash table
+     * @param node The node index
+     * @param slot The slot of the node
+     */
+    private void insert(int node, int slot) {
+        int mask = tableNodes.length - 1;
+        int position = hash(node) & mask;
+        while (tableNodes[position] != 0) {
+            position = (position + 1) & mask;
+        }
+        tableNodes[position] = node + 1;
+        tableSlots[position] = slot;
+    }
+
+    /**
+     * Doubles the size of the hash table
+     */
+    private void resizeTable() {
+        int[] oldNodes = tableNodes;
+        int[] oldSlots = tableSlots;
+        tableNodes = new int[2 * oldNodes.length];
+        tableSlots = new int[tableNodes.length];
+        for (int position = 0; position < oldNodes.length; position++) {
+            if (oldNodes[position] != 0) {
+                insert(oldNodes[position] - 1, oldSlots[position]);
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a node index over the hash table
+     * @param node The node index
+     * @return The hash of the node
+     */
+    private static int hash(int node) {
+        int mixed = node * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+}
@@ -0,0 +1,116 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import org.javatuples.Pair;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class providing lower bounds on path costs from the node coordinates (longitude, latitude):
+ * the geodesic distance to the sink multiplied by the minimum cost per metre of the graph edges.
+ * The minimum cost per metre is measured on the edges themselves rather than deduced from the facility coefficients
+ * of {@link fr.alanguenegou.prd.prdapp.dbaccess.GraphDataAccess#getDangerValue(String, Double)}, so that the bound
+ * stays admissible for every linear combination, for the sections created from user trips and whatever the
+ * difference between the section lengths and the geodesic distances of their ends
+ * @version 1.00
+ */
+public class GeodesicLowerBound {
+
+    /**
+     * The mean radius of the Earth, in metres
+     */
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    /**
+     * The compact graph whose coordinates are used
+     */
+    private final CompactGraph graph;
+
+    /**
+     * The latitude of each node, in radians
+     */
+    private final double[] latitudes;
+
+    /**
+     * The longitude of each node, in radians
+     */
+    private final double[] longitudes;
+
+    /**
+     * The cosine of the latitude of each node
+     */
+    private final double[] cosLatitudes;
+
+    /**
+     * The minimum cost per metre of geodesic distance, by (distance weight, use of danger value)
+     */
+    private final ConcurrentHashMap<Pair<Double, Integer>, Double> costsPerMetre = new ConcurrentHashMap<>();
+
+    /**
+     * The class constructor
+     * @param graph The compact graph whose coordinates are used
+     */
+    public GeodesicLowerBound(CompactGraph graph) {
+        this.graph = graph;
+        latitudes = new double[graph.getNodeCount()];
+        longitudes = new double[graph.getNodeCount()];
+        cosLatitudes = new double[graph.getNodeCount()];
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            latitudes[node] = Math.toRadians(graph.getCoordY(node));
+            longitudes[node] = Math.toRadians(graph.getCoordX(node));
+            cosLatitudes[node] = Math.cos(latitudes[node]);
+        }
+    }
+
+    /**
+     * Computes the geodesic (great-circle) distance between two nodes with the haversine formula
+     * @param first The first node index
+     * @param second The second node index
+     * @return The distance in metres
+     */
+    public double getGeodesicDistance(int first, int second) {
+        double sinLatitude = Math.sin((latitudes[second] - latitudes[first]) / 2);
+        double sinLongitude = Math.sin((longitudes[second] - longitudes[first]) / 2);
+        double h = sinLatitude*sinLatitude + cosLatitudes[first]*cosLatitudes[second]*sinLongitude*sinLongitude;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    /**
+     * Gets the minimum cost per metre of geodesic distance among all edges, for a linear combination.
+     * Any path then costs at least this value times the geodesic distance between its ends (triangle inequality)
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The minimum cost per metre
+     */
+    public double getCostPerMetre(double distanceWeight, int useOfDangerValue) {
+        return costsPerMetre.computeIfAbsent(Pair.with(distanceWeight, useOfDangerValue), key -> {
+            double minimum = Double.MAX_VALUE;
+            for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+                double geodesicDistance = getGeodesicDistance(graph.getEdgeSource(edge), graph.getEdgeTarget(edge));
+                if (geodesicDistance > 0) {
+                    minimum = Math.min(minimum, graph.getEdgeCost(edge, distanceWeight, useOfDangerValue) / geodesicDistance);
+                }
+            }
+            // a small margin absorbs the rounding errors of the haversine formula
+            return minimum == Double.MAX_VALUE ? 0.0 : minimum * (1 - 1e-9);
+        });
+    }
+
+    /**
+     * Prepares the lower bounds of a search towards a specific sink
+     * @param sink The ending node index
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The lower bounds on the cost from any node to the sink
+     */
+    public LowerBound towards(int sink, double distanceWeight, int useOfDangerValue) {
+        double costPerMetre = getCostPerMetre(distanceWeight, useOfDangerValue);
+        return node -> costPerMetre * getGeodesicDistance(node, sink);
+    }
+
+    /**
+     * Forgets the costs per metre measured with the alternative danger values (to be called when they are modified)
+     */
+    public void invalidateAlternativeDangerValues() {
+        costsPerMetre.keySet().removeIf(key -> key.getValue1() == Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+    }
+}
@@ -6,9 +6,12 @@ import org.javatuples.*;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * The class modelling a city road network (here, the city of Tours, France)
+ * The class modelling a city road network (here, the city of Tours, France).
+ * The shortest-path searches are done on its compact form by its {@link SearchEngine}, and the labels of its path
+ * requests are computed by its {@link LabelCalculator}: the methods searching this graph only hand their nodes over to them
  * @author GUENEGOU A.
  * @version 1.00
  */
@@ -32,6 +35,68 @@ public class Graph {
     public static final int WITH_INITIAL_DANGER_VALUE = 2;
 
 
+    /**
+     * Constant for pointing out that the shortest path algorithm picks its next node by scanning every unsettled node
+     * (the original implementation, kept as a reference to compare the other search modes with)
+     */
+    public static final int LINEAR_SCAN_SEARCH = 0;
+
+
+    /**
+     * Constant for pointing out that the shortest path algorithm picks its next node with an indexed binary heap
+     */
+    public static final int HEAP_SEARCH = 1;
+
+
+    /**
+     * Constant for pointing out that the shortest path algorithm searches simultaneously from the source on the successors
+     * and from the sink on the predecessors
+     */
+    public static final int BIDIRECTIONAL_SEARCH = 2;
+
+
+    /**
+     * Constant for pointing out that the shortest path algorithm is an A* search directed by the geodesic distance to the sink
+     * (see {@link GeodesicLowerBound})
+     */
+    public static final int A_STAR_SEARCH = 3;
+
+
+    /**
+     * Constant for pointing out that the shortest path algorithm is an A* search directed by precomputed landmark costs
+     * (see {@link LandmarkLowerBound})
+     */
+    public static final int ALT_SEARCH = 4;
+
+
+    /**
+     * Constant for pointing out that the shortest path algorithm is a search in the contraction hierarchy of the linear combination
+     * (see {@link ContractionHierarchy})
+     */
+    public static final int CH_SEARCH = 5;
+
+
+    /**
+     * Constant for pointing out that the shortest path algorithm is a search in the customizable contraction hierarchy
+     * of this graph, customized for the linear combination (see {@link CustomizableContractionHierarchy})
+     */
+    public static final int CCH_SEARCH = 6;
+
+
+    /**
+     * Constant for pointing out that the shortest path algorithm is a Dijkstra search restricted to the edges flagged
+     * for the cell of the sink (see {@link ArcFlags})
+     */
+    public static final int ARC_FLAGS_SEARCH = 7;
+
+
+    /**
+     * Constant for pointing out that the labels of all the linear combinations are computed by a single search relaxing
+     * one lane per linear combination (see {@link MultiLaneDijkstraSearch}); a single shortest-path is a {@link Graph#HEAP_SEARCH}
+     */
+    public static final int MULTI_LANE_SEARCH = 8;
+
+
     /**
      * Convenient mapping for sections : section id -> {node start id, node end id}
      */
@@ -45,13 +110,103 @@ public class Graph {
     @Getter @Setter
     private HashMap<Long, Node> nodes = new HashMap<>();
 
+
+    /**
+     * Nodes of this graph ordered by their dense index (see {@link Node#getIndex()})
+     */
+    @Getter
+    private final ArrayList<Node> indexedNodes = new ArrayList<>();
+
+
+    /**
+     * The read-only compressed sparse row form of this graph, built by {@link Graph#freeze()}
+     * (null while the graph topology is still being populated)
+     */
+    private volatile CompactGraph compactGraph;
+
+
+    /**
+     * The search engine of this graph, selecting the search mode and holding the preprocessing of every mode
+     */
+    @Getter
+    private final SearchEngine searchEngine = new SearchEngine(this);
+
+
+    /**
+     * The label calculator of this graph, with its label cache, label store and shortest-path trees
+     */
+    @Getter
+    private final LabelCalculator labelCalculator = new LabelCalculator(this, searchEngine);
+
+
+    /**
+     * Every modification applied to this graph since it was loaded ({section ID, new security factor}), in the order they were applied
+     * (applying them again with {@link Graph#modifyGraph(HashMap)} on the same loaded graph gives the same danger values)
+     */
+    @Getter
+    private final LinkedHashMap<Long, Integer> appliedModifications = new LinkedHashMap<>();
+
+
+    /**
+     * The version of this graph, increased by every change of its topology or of its danger values
+     */
+    private final AtomicLong graphVersion = new AtomicLong();
+
+
+    /**
+     * The version of the initial danger values of this graph, increased by every change of its topology only
+     * ({@link Graph#modifyGraph(HashMap)} only changes the alternative danger values)
+     */
+    private final AtomicLong initialDangerVersion = new AtomicLong();
+
+
     /**
      * Creates a new node and adds it to this graph
      * @param id The ID of the new node
      */
     public void addNode(long id){
         Node node = new Node(id);
+        node.setIndex(indexedNodes.size());
+        indexedNodes.add(node);
         nodes.put(id, node);
+        compactGraph = null;
+    }
+
+
+    /**
+     * Builds the read-only compressed sparse row form of this graph, once it has been fully populated
+     * (by {@link fr.alanguenegou.prd.prdapp.dbaccess.GraphDataAccess} then {@link fr.alanguenegou.prd.prdapp.dbaccess.UserDataDataAccess}).
+     * Any later topology change (new node or section) discards it, with everything the search engine and the label calculator
+     * computed from it
+     * @return The compact form of this graph
+     */
+    public synchronized CompactGraph freeze() {
+        CompactGraph compact = new CompactGraph(indexedNodes);
+        searchEngine.reset(compact);
+        labelCalculator.reset();
+        compactGraph = compact;
+        graphVersion.incrementAndGet();
+        initialDangerVersion.incrementAndGet();
+        return compact;
+    }
+
+
+    /**
+     * Gets the read-only compressed sparse row form of this graph, building it if needed (only once when several threads
+     * need it at the same time)
+     * @return The compact form of this graph
+     */
+    public CompactGraph getCompactGraph() {
+        CompactGraph compact = compactGraph;
+        if (compact == null) {
+            synchronized (this) {
+                compact = compactGraph;
+                if (compact == null) {
+                    compact = freeze();
+                }
+            }
+        }
+        return compact;
     }
 
 
@@ -175,6 +330,7 @@ public class Graph {
      */
     public void addSection(Pair<Long, Boolean> sectionId, Pair<Long, Long> nodePair) {
         sections.put(sectionId, nodePair);
+        compactGraph = null;
     }
 
 
@@ -193,9 +349,103 @@ public class Graph {
     }
 
 
+    /**
+     * Calculates the shortest-path from a source node to a sink node in this graph with the search mode of its search engine
+     * (see {@link SearchEngine#getSearchMode()})
+     * @param source The starting node
+     * @param sink The ending node
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @return The node list that represents the shortest-path from the source to the sink and its total cost
+     */
+    public Pair<List<Node>, Double> calculateShortestPath(Node source, Node sink, double distanceWeight, int useOfDangerValue) {
+        int searchMode = searchEngine.getSearchMode();
+        if (searchMode == LINEAR_SCAN_SEARCH) {
+            return calculateShortestPathFromSourceToSink(source, sink, distanceWeight, useOfDangerValue);
+        }
+        return toNodeListAndCost(searchShortestPath(source, sink, distanceWeight, useOfDangerValue, searchMode));
+    }
+
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node in this graph
+     * (based on the Dijkstra algorithm, the next node to explore being picked with an indexed binary heap).
+     * Unlike {@link Graph#calculateShortestPathFromSourceToSink(Node, Node, double, int)}, the search stops once
+     * the sink is settled and not as soon as it is first reached, so the returned path is always a shortest one
+     * @param source The starting node
+     * @param sink The ending node
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @return The node list that represents the shortest-path from the source to the sink and its total cost
+     * (an empty list and {@link Double#MAX_VALUE} if the sink can't be reached)
+     */
+    public Pair<List<Node>, Double> calculateShortestPathWithHeap(Node source, Node sink, double distanceWeight, int useOfDangerValue) {
+        return toNodeListAndCost(searchShortestPath(source, sink, distanceWeight, useOfDangerValue, HEAP_SEARCH));
+    }
+
+
+    /**
+     * Converts a shortest-path computed on the compact form of this graph into a node list and its cost
+     * @param shortestPath The shortest-path
+     * @return The node list that represents the shortest-path and its total cost
+     */
+    private Pair<List<Node>, Double> toNodeListAndCost(ShortestPath shortestPath) {
+        LinkedList<Node> nodeList = new LinkedList<>();
+        for (int node : shortestPath.getNodes()) {
+            nodeList.add(indexedNodes.get(node));
+        }
+        return Pair.with(nodeList, shortestPath.getCost());
+    }
+
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node on the compact form of this graph
+     * @param source The starting node
+     * @param sink The ending node
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @return The shortest-path with its node indices, cost, distance and danger values
+     */
+    public ShortestPath searchShortestPath(Node source, Node sink, double distanceWeight, int useOfDangerValue) {
+        return searchShortestPath(source, sink, distanceWeight, useOfDangerValue, HEAP_SEARCH);
+    }
+
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node on the compact form of this graph, with a specific search mode
+     * @param source The starting node
+     * @param sink The ending node
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param searchMode The search mode ({@link Graph#HEAP_SEARCH}, {@link Graph#BIDIRECTIONAL_SEARCH}, {@link Graph#A_STAR_SEARCH},
+     *                   {@link Graph#ALT_SEARCH}, {@link Graph#CH_SEARCH}, {@link Graph#CCH_SEARCH} or {@link Graph#ARC_FLAGS_SEARCH},
+     *                   a {@link Graph#MULTI_LANE_SEARCH} of a single linear combination being a {@link Graph#HEAP_SEARCH})
+     * @return The shortest-path with its node indices, cost, distance and danger values
+     */
+    public ShortestPath searchShortestPath(Node source, Node sink, double distanceWeight, int useOfDangerValue, int searchMode) {
+        return searchEngine.search(source.getIndex(), sink.getIndex(), distanceWeight, useOfDangerValue, searchMode);
+    }
+
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node on the compact form of this graph with a Dijkstra search
+     * that doesn't explore the nodes beyond some limits (see {@link SearchEngine#searchWithinLimits(int, int, double, int, SearchLimits)})
+     * @param source The starting node
+     * @param sink The ending node
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param limits The limits of the search
+     * @return The shortest-path with its node indices, cost, distance and danger values (with the same cost as the one of a search without limits)
+     */
+    public ShortestPath searchShortestPathWithinLimits(Node source, Node sink, double distanceWeight, int useOfDangerValue, SearchLimits limits) {
+        return searchEngine.searchWithinLimits(source.getIndex(), sink.getIndex(), distanceWeight, useOfDangerValue, limits);
+    }
+
+
     /**
      * Calculates the shortest-path from a source node to a sink node in this graph
-     * (based on the Dijkstra algorithm)
+     * (based on the Dijkstra algorithm, the next node to explore being picked by a linear scan of all unsettled nodes).
+     * This is the reference implementation of {@link Graph#LINEAR_SCAN_SEARCH}: it stops as soon as the sink is first reached
      * @param source The starting node
      * @param sink The ending node
      * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
@@ -308,13 +558,108 @@ public class Graph {
 
 
     /**
-     * Computes the labels (distance, danger) of a shortest-path, for numerous linear combination weights
+     * Computes the labels (distance, danger) of a shortest-path, for numerous linear combination weights, with the search mode
+     * of the search engine of this graph (see {@link SearchEngine#getSearchMode()})
      * @param source The starting node of the path request
      * @param sink The ending node of the path request
      * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
      * @return A HashMap containing the distance and danger values for X linear combinations (see {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS})
      */
     public HashMap<Double, Pair<Double, Double>> calculateLabelsForManyLinearCombinations(Node source, Node sink, int useOfDangerValue) {
+        return labelCalculator.calculateLabelsForManyLinearCombinations(source, sink, useOfDangerValue, searchEngine.getSearchMode());
+    }
+
+
+    /**
+     * Computes the labels (distance, danger) of a shortest-path, for numerous linear combination weights, with a specific search mode
+     * (see {@link LabelCalculator#calculateLabelsForManyLinearCombinations(Node, Node, int, int)})
+     * @param source The starting node of the path request
+     * @param sink The ending node of the path request
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param searchMode The search mode
+     * @return A HashMap containing the distance and danger values for X linear combinations (see {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS})
+     */
+    public HashMap<Double, Pair<Double, Double>> calculateLabelsForManyLinearCombinations(Node source, Node sink, int useOfDangerValue,
+                                                                                        int searchMode) {
+        return labelCalculator.calculateLabelsForManyLinearCombinations(source, sink, useOfDangerValue, searchMode);
+    }
+
+
+    /**
+     * Computes the labels (distance, danger) of the shortest-paths of many path requests, for numerous linear combination weights
+     * (see {@link LabelCalculator#calculateLabelsForManyPaths(Collection, int)})
+     * @param paths The (starting node, ending node) path requests
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @return The labels of every linear combination (see {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}) of each path request
+     */
+    public HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> calculateLabelsForManyPaths(Collection<Pair<Node, Node>> paths,
+                                                                                                       int useOfDangerValue) {
+        return labelCalculator.calculateLabelsForManyPaths(paths, useOfDangerValue);
+    }
+
+
+    /**
+     * Finds the path requests whose labels with the alternative danger values can differ from their labels with the initial ones
+     * (see {@link LabelCalculator#findPathsAffectedByModifications(Map)})
+     * @param initialLabelsByPath The labels of every linear combination of each path request with the initial danger values
+     * @return The path requests whose labels can change
+     */
+    public Set<Pair<Node, Node>> findPathsAffectedByModifications(Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath) {
+        return labelCalculator.findPathsAffectedByModifications(initialLabelsByPath);
+    }
+
+
+    /**
+     * Computes the exact Pareto front of the (distance, danger) labels of the paths between two nodes, of which
+     * {@link Graph#calculateLabelsForManyLinearCombinations(Node, Node, int)} only finds the points minimising a linear combination
+     * @param source The starting node of the path request
+     * @param sink The ending node of the path request
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The non-dominated labels (distance, danger), by increasing distance and decreasing danger (empty if the sink can't be reached)
+     */
+    public List<Pair<Double, Double>> calculateParetoFront(Node source, Node sink, int useOfDangerValue) {
+        return searchEngine.calculateParetoFront(source.getIndex(), sink.getIndex(), useOfDangerValue);
+    }
+
+
+    /**
+     * Computes the labels (distance, danger) of the shortest-paths between every origin and every destination, for all the
+     * linear combinations of {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}
+     * (see {@link SearchEngine#calculateLabelMatrix(int[], int[], int)})
+     * @param origins The origin nodes (duplicates are ignored)
+     * @param destinations The destination nodes (duplicates are ignored)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The label matrices, one per linear combination
+     */
+    public LabelMatrix calculateLabelMatrix(Collection<Node> origins, Collection<Node> destinations, int useOfDangerValue) {
+        int[] sources = new LinkedHashSet<>(origins).stream().mapToInt(Node::getIndex).toArray();
+        int[] targets = new LinkedHashSet<>(destinations).stream().mapToInt(Node::getIndex).toArray();
+        return searchEngine.calculateLabelMatrix(sources, targets, useOfDangerValue);
+    }
+
+
+    /**
+     * Computes the costs of the shortest-paths from a source node to every node of this graph, for whole-graph analyses
+     * such as reachability (see {@link SearchEngine#calculateCostsFromSource(int, double, int)})
+     * @param source The source node
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The cost of each node, by node index (see {@link Node#getIndex()}), {@link Double#MAX_VALUE} for the nodes that can't be reached
+     */
+    public double[] calculateCostsFromSource(Node source, double distanceWeight, int useOfDangerValue) {
+        return searchEngine.calculateCostsFromSource(source.getIndex(), distanceWeight, useOfDangerValue);
+    }
+
+
+    /**
+     * Computes the labels (distance, danger) of a shortest-path, for numerous linear combination weights,
+     * with the reference search {@link Graph#calculateShortestPathFromSourceToSink(Node, Node, double, int)}
+     * @param source The starting node of the path request
+     * @param sink The ending node of the path request
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @return A HashMap containing the distance and danger values for X linear combinations (see {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS})
+     */
+    HashMap<Double, Pair<Double, Double>> calculateLabelsWithLinearScan(Node source, Node sink, int useOfDangerValue) {
         HashMap<Double, Pair<Double, Double>> labels = new HashMap<>(LINEAR_COMBINATION_DISTANCE_WEIGHTS.length);
         for (double distanceWeight: LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
             prepareNewCalculation();
@@ -412,6 +757,7 @@ public class Graph {
 
     /**
      * Prepares new calculation of a path by resetting distance and path attributes of every node of this graph
+     * (only needed by {@link Graph#calculateShortestPathFromSourceToSink(Node, Node, double, int)})
      */
     public void prepareNewCalculation() {
         for (Node node: getNodes().values()) {
@@ -421,18 +767,51 @@ public class Graph {
 
 
     /**
-     * Applies a set of modifications to the Danger value of some specific nodes of this graph
+     * Applies a set of modifications to the Danger value of some specific nodes of this graph, then to its compact form and to
+     * everything the search engine and the label calculator computed from the alternative danger values
      * @param modifications A HashMap that contains each section on which we want to apply a modification
      *                      ({section ID, new security factor})
      */
     public void modifyGraph(HashMap<Long, Integer> modifications) {
+        CompactGraph compact = compactGraph;
+        int[] modifiedEdges = new int[2 * modifications.size()];
+        double[] newDangers = new double[modifiedEdges.length];
+        int position = 0;
+
         // for each section that has to be modified
         for (Entry<Long, Integer> modification : modifications.entrySet()) {
 
-            // modifies its danger value
-            getNodeStartBySection(Pair.with(modification.getKey(), true)).modifySectionDangerValue(getNodeEndBySection(Pair.with(modification.getKey(), true)), modification.getValue());
-            getNodeStartBySection(Pair.with(modification.getKey(), false)).modifySectionDangerValue(getNodeEndBySection(Pair.with(modification.getKey(), false)), modification.getValue());
+            // modifies its danger value in both directions
+            for (boolean direction : new boolean[] { true, false }) {
+                Node start = getNodeStartBySection(Pair.with(modification.getKey(), direction));
+                Node end = getNodeEndBySection(Pair.with(modification.getKey(), direction));
+                start.modifySectionDangerValue(end, modification.getValue());
+                if (compact != null) {
+                    modifiedEdges[position] = compact.findEdge(start.getIndex(), end.getIndex());
+                    newDangers[position++] = start.getAdjacentNodes().get(end).getValue2();
+                }
+            }
+            appliedModifications.remove(modification.getKey());
+            appliedModifications.put(modification.getKey(), modification.getValue());
+        }
+
+        // without compact form, the next one is built from the modified nodes
+        if (compact != null && modifiedEdges.length > 0) {
+            double[] previousDangers = searchEngine.modifyAlternativeDangers(compact, modifiedEdges, newDangers);
+            labelCalculator.repairShortestPathTrees(modifiedEdges, previousDangers);
         }
+        graphVersion.incrementAndGet();
+    }
+
+
+    /**
+     * Gets the version of the values of this graph used by the searches with some danger values: labels computed with
+     * the same version are still valid
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The version, increased by every change of the topology (and by {@link Graph#modifyGraph(HashMap)} for the alternative danger values)
+     */
+    public long getGraphVersion(int useOfDangerValue) {
+        return useOfDangerValue == WITH_INITIAL_DANGER_VALUE ? initialDangerVersion.get() : graphVersion.get();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,449 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Pair;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * The class modelling a 2-hop hub labeling of a {@link CompactGraph} for a specific linear combination, stored in a
+ * memory-mapped file that several processes can share. Every node has a forward label (hubs it can reach, with the
+ * distance and danger of the path) and a backward label (hubs it can be reached from), sorted by hub, so that the
+ * labels of a shortest-path are found by merging the forward label of its source with the backward label of its sink.
+ * The labels are the search spaces of a {@link ContractionHierarchy}, computed from the highest ranked node down
+ * and pruned of the hubs that are not on a shortest-path. Hubs are designated by their rank in the hierarchy.
+ * File layout: a 32 bytes header, the first entry of the forward then backward label of every node (n + 1 ints each),
+ * then the forward and backward entries (hub int, distance double, danger double)
+ * @version 1.00
+ */
+public class HubLabels {
+
+    /**
+     * The first bytes of a hub labels file ("HUB1")
+     */
+    private static final int FILE_MAGIC = 0x48554231;
+
+    /**
+     * The size of the file header in bytes
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of a label entry in bytes
+     */
+    private static final int ENTRY_SIZE = Integer.BYTES + 2 * Double.BYTES;
+
+    /**
+     * The memory-mapped content of the file
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The number of nodes
+     */
+    private final int nodeCount;
+
+    /**
+     * The weight of the distance value for the linear combination of these labels
+     */
+    @Getter
+    private final double distanceWeight;
+
+    /**
+     * A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used by these labels
+     */
+    @Getter
+    private final int useOfDangerValue;
+
+    /**
+     * The position of the forward entries in the file
+     */
+    private final int forwardEntriesPosition;
+
+    /**
+     * The position of the backward entries in the file
+     */
+    private final int backwardEntriesPosition;
+
+    /**
+     * The class constructor
+     * @param buffer The memory-mapped content of the file
+     * @param nodeCount The number of nodes
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     */
+    private HubLabels(MappedByteBuffer buffer, int nodeCount, double distanceWeight, int useOfDangerValue) {
+        this.buffer = buffer;
+        this.nodeCount = nodeCount;
+        this.distanceWeight = distanceWeight;
+        this.useOfDangerValue = useOfDangerValue;
+        this.forwardEntriesPosition = HEADER_SIZE + 2 * (nodeCount + 1) * Integer.BYTES;
+        this.backwardEntriesPosition = forwardEntriesPosition + getForwardOffset(nodeCount) * ENTRY_SIZE;
+    }
+
+    /**
+     * Computes the hub labels of a contraction hierarchy, writes them to a file and maps it. The labels are written to a
+     * temporary file of the same directory then moved at once, so that another process never maps a partly written file
+     * @param hierarchy The contraction hierarchy
+     * @param file The file to write
+     * @return The hub labels
+     * @throws IOException If the file can't be written
+     */
+    public static HubLabels build(ContractionHierarchy hierarchy, File file) throws IOException {
+        CompactGraph graph = hierarchy.getGraph();
+        int nodeCount = hierarchy.getNodeCount();
+        int[] nodesByRank = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            nodesByRank[hierarchy.getRank(node)] = node;
+        }
+
+        LabelBuilder forward = new LabelBuilder(nodeCount);
+        LabelBuilder backward = new LabelBuilder(nodeCount);
+        for (int rank = nodeCount - 1; rank >= 0; rank--) {
+            int node = nodesByRank[rank];
+
+            // forward label: the node itself, then the forward labels of its upward neighbours
+            forward.start(rank);
+            for (int position = hierarchy.getFirstUpwardEdge(node); position < hierarchy.getLastUpwardEdgeExclusive(node); position++) {
+                int edge = hierarchy.getUpwardEdge(position);
+                forward.extend(hierarchy.getRank(hierarchy.getEdgeTarget(edge)),
+                        hierarchy.getEdgeCost(edge), hierarchy.getEdgeDistance(edge), hierarchy.getEdgeDanger(edge));
+            }
+            forward.finish(rank, backward);
+
+            // backward label: the node itself, then the backward labels of the nodes of its downward edges
+            backward.start(rank);
+            for (int position = hierarchy.getFirstDownwardEdge(node); position < hierarchy.getLastDownwardEdgeExclusive(node); position++) {
+                int edge = hierarchy.getDownwardEdge(position);
+                backward.extend(hierarchy.getRank(hierarchy.getEdgeSource(edge)),
+                        hierarchy.getEdgeCost(edge), hierarchy.getEdgeDistance(edge), hierarchy.getEdgeDanger(edge));
+            }
+            backward.finish(rank, forward);
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        Path temporaryFile = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(nodeCount);
+            out.writeDouble(hierarchy.getDistanceWeight());
+            out.writeInt(hierarchy.getUseOfDangerValue());
+            out.writeInt(0);
+            out.writeLong(graph.getFingerprint(hierarchy.getUseOfDangerValue()));
+            forward.writeOffsets(out, nodesByRank);
+            backward.writeOffsets(out, nodesByRank);
+            forward.writeEntries(out, nodesByRank);
+            backward.writeEntries(out, nodesByRank);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+        Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file, graph, hierarchy.getDistanceWeight(), hierarchy.getUseOfDangerValue());
+    }
+
+    /**
+     * Maps a hub labels file, if it was computed on the current content of a graph for a linear combination
+     * @param file The file
+     * @param graph The compact graph
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The hub labels, or null if the file doesn't match the graph or the linear combination
+     * @throws IOException If the file can't be read
+     */
+    public static HubLabels open(File file, CompactGraph graph, double distanceWeight, int useOfDangerValue) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Fichier d'étiquettes trop volumineux pour être projeté en mémoire : " + file);
+            }
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            // the mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != graph.getNodeCount()
+                    || buffer.getDouble(8) != distanceWeight || buffer.getInt(16) != useOfDangerValue
+                    || buffer.getLong(24) != graph.getFingerprint(useOfDangerValue)) {
+                return null;
+            }
+            return new HubLabels(buffer, graph.getNodeCount(), distanceWeight, useOfDangerValue);
+        }
+    }
+
+    /**
+     * Gets the index of the first forward entry of a node
+     * @param node The node index (or the number of nodes to get the number of forward entries)
+     * @return The entry index
+     */
+    private int getForwardOffset(int node) {
+        return buffer.getInt(HEADER_SIZE + node * Integer.BYTES);
+    }
+
+    /**
+     * Gets the index of the first backward entry of a node
+     * @param node The node index (or the number of nodes to get the number of backward entries)
+     * @return The entry index
+     */
+    private int getBackwardOffset(int node) {
+        return buffer.getInt(HEADER_SIZE + (nodeCount + 1 + node) * Integer.BYTES);
+    }
+
+    /**
+     * Gets the labels (distance, danger) of the shortest-path from a source node to a sink node,
+     * by merging the forward label of the source with the backward label of the sink
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @return The distance and danger values of the shortest-path (both 0 if the sink can't be reached, as for {@link ShortestPath#NOT_FOUND})
+     */
+    public Pair<Double, Double> getLabel(int source, int sink) {
+        int forwardPosition = forwardEntriesPosition + getForwardOffset(source) * ENTRY_SIZE;
+        int forwardEnd = forwardEntriesPosition + getForwardOffset(source + 1) * ENTRY_SIZE;
+        int backwardPosition = backwardEntriesPosition + getBackwardOffset(sink) * ENTRY_SIZE;
+        int backwardEnd = backwardEntriesPosition + getBackwardOffset(sink + 1) * ENTRY_SIZE;
+
+        double bestCost = Double.MAX_VALUE;
+        double bestDistance = 0.0;
+        double bestDanger = 0.0;
+        while (forwardPosition < forwardEnd && backwardPosition < backwardEnd) {
+            int forwardHub = buffer.getInt(forwardPosition);
+            int backwardHub = buffer.getInt(backwardPosition);
+            if (forwardHub < backwardHub) {
+                forwardPosition += ENTRY_SIZE;
+            }
+            else if (forwardHub > backwardHub) {
+                backwardPosition += ENTRY_SIZE;
+            }
+            else {
+                double distance = buffer.getDouble(forwardPosition + Integer.BYTES) + buffer.getDouble(backwardPosition + Integer.BYTES);
+                double danger = buffer.getDouble(forwardPosition + Integer.BYTES + Double.BYTES)
+                        + buffer.getDouble(backwardPosition + Integer.BYTES + Double.BYTES);
+                double cost = distanceWeight*distance + (1-distanceWeight)*danger;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestDistance = distance;
+                    bestDanger = danger;
+                }
+                forwardPosition += ENTRY_SIZE;
+                backwardPosition += ENTRY_SIZE;
+            }
+        }
+        return Pair.with(bestDistance, bestDanger);
+    }
+
+    /**
+     * The class building the labels of one direction, node after node from the highest rank down
+     */
+    private static class LabelBuilder {
+
+        /**
+         * The hubs of the label of each rank, sorted
+         */
+        private final int[][] hubs;
+
+        /**
+         * The cost to or from each hub of the label of each rank
+         */
+        private final double[][] costs;
+
+        /**
+         * The distance to or from each hub of the label of each rank
+         */
+        private final double[][] distances;
+
+        /**
+         * The danger to or from each hub of the label of each rank
+         */
+        private final double[][] dangers;
+
+        /**
+         * The best cost of each candidate hub of the label being built
+         */
+        private final double[] candidateCosts;
+
+        /**
+         * The distance of each candidate hub of the label being built
+         */
+        private final double[] candidateDistances;
+
+        /**
+         * The danger of each candidate hub of the label being built
+         */
+        private final double[] candidateDangers;
+
+        /**
+         * The epoch at which each hub became a candidate (candidate of the label being built if equal to the current epoch)
+         */
+        private final int[] candidateEpochs;
+
+        /**
+         * The candidate hubs of the label being built
+         */
+        private int[] candidates;
+
+        /**
+         * The number of candidate hubs
+         */
+        private int candidateCount;
+
+        /**
+         * The current epoch
+         */
+        private int epoch;
+
+        /**
+         * The class constructor
+         * @param nodeCount The number of nodes
+         */
+        private LabelBuilder(int nodeCount) {
+            hubs = new int[nodeCount][];
+            costs = new double[nodeCount][];
+            distances = new double[nodeCount][];
+            dangers = new double[nodeCount][];
+            candidateCosts = new double[nodeCount];
+            candidateDistances = new double[nodeCount];
+            candidateDangers = new double[nodeCount];
+            candidateEpochs = new int[nodeCount];
+            candidates = new int[16];
+        }
+
+        /**
+         * Starts the label of a rank, with the rank itself as hub
+         * @param rank The rank
+         */
+        private void start(int rank) {
+            epoch++;
+            candidateCount = 0;
+            offer(rank, 0.0, 0.0, 0.0);
+        }
+
+        /**
+         * Adds the entries of the label of a higher rank, extended by the hierarchy edge linking both ranks
+         * @param higherRank The higher rank, whose label is already built
+         * @param edgeCost The cost of the hierarchy edge
+         * @param edgeDistance The distance of the hierarchy edge
+         * @param edgeDanger The danger of the hierarchy edge
+         */
+        private void extend(int higherRank, double edgeCost, double edgeDistance, double edgeDanger) {
+            for (int i = 0; i < hubs[higherRank].length; i++) {
+                offer(hubs[higherRank][i], edgeCost + costs[higherRank][i],
+                        edgeDistance + distances[higherRank][i], edgeDanger + dangers[higherRank][i]);
+            }
+        }
+
+        /**
+         * Offers a hub to the label being built, kept if it is new or cheaper
+         * @param hub The hub
+         * @param cost The cost to or from the hub
+         * @param distance The distance to or from the hub
+         * @param danger The danger to or from the hub
+         */
+        private void offer(int hub, double cost, double distance, double danger) {
+            if (candidateEpochs[hub] != epoch) {
+                candidateEpochs[hub] = epoch;
+                if (candidateCount == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, 2 * candidateCount);
+                }
+                candidates[candidateCount++] = hub;
+            }
+            else if (cost >= candidateCosts[hub]) {
+                return;
+            }
+            candidateCosts[hub] = cost;
+            candidateDistances[hub] = distance;
+            candidateDangers[hub] = danger;
+        }
+
+        /**
+         * Finishes the label of a rank: the hubs that can be reached more cheaply through another hub
+         * (according to the labels of the other direction) are dropped, the other ones are sorted
+         * @param rank The rank
+         * @param otherDirection The builder of the other direction, whose labels of higher ranks are built
+         */
+        private void finish(int rank, LabelBuilder otherDirection) {
+            int[] kept = new int[candidateCount];
+            int keptCount = 0;
+            for (int i = 0; i < candidateCount; i++) {
+                int hub = candidates[i];
+                if (hub == rank || !hasCheaperPath(hub, otherDirection)) {
+                    kept[keptCount++] = hub;
+                }
+            }
+            Arrays.sort(kept, 0, keptCount);
+
+            hubs[rank] = Arrays.copyOf(kept, keptCount);
+            costs[rank] = new double[keptCount];
+            distances[rank] = new double[keptCount];
+            dangers[rank] = new double[keptCount];
+            for (int i = 0; i < keptCount; i++) {
+                costs[rank][i] = candidateCosts[kept[i]];
+                distances[rank][i] = candidateDistances[kept[i]];
+                dangers[rank][i] = candidateDangers[kept[i]];
+            }
+        }
+
+        /**
+         * Checks if a candidate hub can be reached more cheaply through another candidate hub
+         * @param hub The candidate hub
+         * @param otherDirection The builder of the other direction
+         * @return True if the cost of the candidate is not the shortest-path cost
+         */
+        private boolean hasCheaperPath(int hub, LabelBuilder otherDirection) {
+            int[] otherHubs = otherDirection.hubs[hub];
+            double[] otherCosts = otherDirection.costs[hub];
+            for (int i = 0; i < otherHubs.length; i++) {
+                int middle = otherHubs[i];
+                if (middle != hub && candidateEpochs[middle] == epoch && candidateCosts[middle] + otherCosts[i] < candidateCosts[hub]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Writes the index of the first entry of the label of every node (plus the total number of entries)
+         * @param out The stream
+         * @param nodesByRank The node of each rank
+         * @throws IOException If the stream can't be written
+         */
+        private void writeOffsets(DataOutputStream out, int[] nodesByRank) throws IOException {
+            int[] ranks = new int[nodesByRank.length];
+            for (int rank = 0; rank < nodesByRank.length; rank++) {
+                ranks[nodesByRank[rank]] = rank;
+            }
+            int offset = 0;
+            for (int node = 0; node < nodesByRank.length; node++) {
+                out.writeInt(offset);
+                offset += hubs[ranks[node]].length;
+            }
+            out.writeInt(offset);
+        }
+
+        /**
+         * Writes the entries of the labels of every node, in node order
+         * @param out The stream
+         * @param nodesByRank The node of each rank
+         * @throws IOException If the stream can't be written
+         */
+        private void writeEntries(DataOutputStream out, int[] nodesByRank) throws IOException {
+            int[] ranks = new int[nodesByRank.length];
+            for (int rank = 0; rank < nodesByRank.length; rank++) {
+                ranks[nodesByRank[rank]] = rank;
+            }
+            for (int node = 0; node < nodesByRank.length; node++) {
+                int rank = ranks[node];
+                for (int i = 0; i < hubs[rank].length; i++) {
+                    out.writeInt(hubs[rank][i]);
+                    out.writeDouble(distances[rank][i]);
+                    out.writeDouble(dangers[rank][i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import java.util.Arrays;
+
+/**
+ * The class modelling an indexed binary min-heap on dense integer elements (typically node indices),
+ * supporting the decrease-key operation needed by Dijkstra-like shortest-path algorithms
+ * @version 1.00
+ */
+public class IndexedMinHeap {
+
+    /**
+     * Position of each element in the heap arrays (-1 if the element is not in the heap)
+     */
+    private final int[] positions;
+
+    /**
+     * The elements of the heap, stored in heap order
+     */
+    private final int[] elements;
+
+    /**
+     * The keys of the heap elements, stored in heap order
+     */
+    private final double[] keys;
+
+    /**
+     * The number of elements currently in the heap
+     */
+    private int size = 0;
+
+    /**
+     * The class constructor
+     * @param capacity The number of distinct elements the heap can hold (elements are in [0, capacity[)
+     */
+    public IndexedMinHeap(int capacity) {
+        positions = new int[capacity];
+        elements = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Checks if this heap has no element left
+     * @return True if the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of elements in this heap
+     * @return The number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if a specific element is currently in this heap
+     * @param element The element
+     * @return True if the element is in the heap
+     */
+    public boolean contains(int element) {
+        return positions[element] != -1;
+    }
+
+    /**
+     * Gets the key of an element currently in this heap
+     * @param element The element
+     * @return The key of the element
+     */
+    public double getKey(int element) {
+        return keys[positions[element]];
+    }
+
+    /**
+     * Inserts an element in this heap, or decreases its key if it is already in it
+     * (nothing is done if the element is already in the heap with a lower or equal key)
+     * @param element The element
+     * @param key The new key of the element
+     */
+    public void push(int element, double key) {
+        int position = positions[element];
+        if (position == -1) {
+            position = size++;
+            elements[position] = element;
+            keys[position] = key;
+            positions[element] = position;
+            siftUp(position);
+        }
+        else if (key < keys[position]) {
+            keys[position] = key;
+            siftUp(position);
+        }
+    }
+
+    /**
+     * Changes the key of an element already in this heap, whether it is lower or higher than its current key
+     * @param element The element
+     * @param key The new key of the element
+     */
+    public void update(int element, double key) {
+        int position = positions[element];
+        double oldKey = keys[position];
+        keys[position] = key;
+        if (key < oldKey) {
+            siftUp(position);
+        }
+        else {
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Gets the element with the lowest key without removing it
+     * @return The element with the lowest key
+     */
+    public int peek() {
+        return elements[0];
+    }
+
+    /**
+     * Gets the lowest key of this heap
+     * @return The lowest key, or positive infinity if the heap is empty
+     */
+    public double peekKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[0];
+    }
+
+    /**
+     * Removes the element with the lowest key from this heap
+     * @return The element with the lowest key
+     */
+    public int poll() {
+        int top = elements[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0) {
+            elements[0] = elements[size];
+            keys[0] = keys[size];
+            positions[elements[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes every element of this heap (in O(size), not O(capacity))
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[elements[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Checks if the heap entry at a position must come before the one at another position
+     * (ties on keys are broken by the element value so that the popping order is deterministic)
+     * @param first The first position
+     * @param second The second position
+     * @return True if the first entry comes before the second one
+     */
+    private boolean isBefore(int first, int second) {
+        return keys[first] < keys[second] || (keys[first] == keys[second] && elements[first] < elements[second]);
+    }
+
+    /**
+     * Moves the entry at a position up until the heap order is restored
+     * @param position The position of the entry
+     */
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isBefore(position, parent)) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    /**
+     * Moves the entry at a position down until the heap order is restored
+     * @param position The position of the entry
+     */
+    private void siftDown(int position) {
+        while (true) {
+            int left = 2 * position + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left;
+            if (left + 1 < size && isBefore(left + 1, left)) {
+                smallest = left + 1;
+            }
+            if (!isBefore(smallest, position)) {
+                break;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    /**
+     * Swaps two entries of the heap arrays
+     * @param first The first position
+     * @param second The second position
+     */
+    private void swap(int first, int second) {
+        int element = elements[first];
+        double key = keys[first];
+        elements[first] = elements[second];
+        keys[first] = keys[second];
+        elements[second] = element;
+        keys[second] = key;
+        positions[elements[first]] = first;
+        positions[elements[second]] = second;
+    }
+}
@@ -0,0 +1,111 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.javatuples.Pair;
+import org.javatuples.Septet;
+
+import java.util.HashMap;
+
+/**
+ * The class caching the labels (distance, danger) computed for path requests, keyed by (source, sink, use of danger value,
+ * search mode, adaptive weight search, hub labels, graph version). It is bounded (the least recently used entries are evicted
+ * first), can be used by several threads at once and records its hits and misses. Entries computed before a change of the graph
+ * are never returned again, the graph version being part of the key (see {@link Graph#getGraphVersion(int)}), and the
+ * labels of a search configuration are never returned to another one, as equally short paths can have different labels
+ * @version 1.00
+ */
+public class LabelCache {
+
+    /**
+     * The cached labels, by (source index, sink index, use of danger value, search mode, adaptive weight search, hub labels,
+     * graph version)
+     */
+    private final Cache<Septet<Integer, Integer, Integer, Integer, Boolean, Boolean, Long>, HashMap<Double, Pair<Double, Double>>> cache;
+
+    /**
+     * The class constructor
+     * @param maximumSize The maximal number of cached path requests
+     */
+    public LabelCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Builds the key of a path request
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param searchMode The search mode computing the labels (see {@link SearchEngine#getSearchMode()})
+     * @param adaptiveWeightSearch True if the labels are computed by an adaptive weight search (see {@link LabelCalculator#isAdaptiveWeightSearch()})
+     * @param hubLabels True if the labels of the extreme weights are answered by hub labels (see {@link SearchEngine#hasHubLabels()})
+     * @param graphVersion The version of the graph the labels are computed on
+     * @return The key
+     */
+    private Septet<Integer, Integer, Integer, Integer, Boolean, Boolean, Long> getKey(int source, int sink, int useOfDangerValue, int searchMode,
+                                                                                      boolean adaptiveWeightSearch, boolean hubLabels,
+                                                                                      long graphVersion) {
+        return Septet.with(source, sink, useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, graphVersion);
+    }
+
+    /**
+     * Gets the cached labels of a path request
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param searchMode The search mode computing the labels
+     * @param adaptiveWeightSearch True if the labels are computed by an adaptive weight search
+     * @param hubLabels True if the labels of the extreme weights are answered by hub labels
+     * @param graphVersion The current version of the graph
+     * @return A copy of the labels by distance weight, or null if they aren't cached
+     */
+    public HashMap<Double, Pair<Double, Double>> get(int source, int sink, int useOfDangerValue, int searchMode,
+                                                     boolean adaptiveWeightSearch, boolean hubLabels, long graphVersion) {
+        HashMap<Double, Pair<Double, Double>> labels = cache.getIfPresent(
+                getKey(source, sink, useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, graphVersion));
+        return labels == null ? null : new HashMap<>(labels);
+    }
+
+    /**
+     * Caches the labels of a path request
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param searchMode The search mode that computed the labels
+     * @param adaptiveWeightSearch True if the labels were computed by an adaptive weight search
+     * @param hubLabels True if the labels of the extreme weights were answered by hub labels
+     * @param graphVersion The version of the graph the labels were computed on
+     * @param labels The labels by distance weight (copied)
+     */
+    public void put(int source, int sink, int useOfDangerValue, int searchMode, boolean adaptiveWeightSearch, boolean hubLabels,
+                    long graphVersion, HashMap<Double, Pair<Double, Double>> labels) {
+        cache.put(getKey(source, sink, useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, graphVersion), new HashMap<>(labels));
+    }
+
+    /**
+     * Gets the hit and miss statistics of this cache
+     * @return The statistics
+     */
+    public CacheStats getStatistics() {
+        return cache.stats();
+    }
+
+    /**
+     * Gets the number of cached path requests
+     * @return The number of entries
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Empties this cache
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,624 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
+import lombok.Setter;
+import org.javatuples.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * The class computing the labels (distance, danger) of the path requests of a {@link Graph} for the linear combinations of
+ * {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}, with the searches of its {@link SearchEngine}. The labels already
+ * computed are kept in a {@link LabelCache}, the ones of the initial danger values in a {@link LabelStore} between runs,
+ * and the shortest-path trees with the alternative danger values can be kept up to date by the modifications of the graph
+ * @version 1.00
+ */
+public class LabelCalculator {
+
+    /**
+     * The maximal number of path requests whose labels are kept in the label cache
+     */
+    public static final long LABEL_CACHE_SIZE = 200_000;
+
+    /**
+     * The maximal total number of nodes of the shortest-path trees kept up to date by {@link Graph#modifyGraph(HashMap)}
+     */
+    public static final long SHORTEST_PATH_TREE_NODES = 4_000_000;
+
+    /**
+     * The relative improvement of the linear combination below which a label found by the adaptive weight search
+     * isn't considered as a new supported point (rounding of the path totals)
+     */
+    private static final double SUPPORTED_POINT_TOLERANCE = 1e-12;
+
+    /**
+     * The number of grid weights between two supported points up to which the adaptive weight search searches them
+     * directly instead of the weight giving both points the same linear combination
+     */
+    private static final int ADAPTIVE_DIRECT_GRID_WEIGHTS = 2;
+
+    /**
+     * The relative tolerance under which the cost of a path through a modified edge is considered as low as the cost of
+     * an initial shortest-path (see {@link LabelCalculator#findPathsAffectedByModifications(Map)})
+     */
+    private static final double AFFECTED_PATH_TOLERANCE = 1e-9;
+
+    /**
+     * A logger instance to log infos in the console
+     */
+    private final static Logger log = LoggerFactory.getLogger(LabelCalculator.class);
+
+    /**
+     * The graph whose path requests are computed
+     */
+    private final Graph graph;
+
+    /**
+     * The search engine of the graph
+     */
+    private final SearchEngine searchEngine;
+
+    /**
+     * True if {@link LabelCalculator#calculateLabelsForManyLinearCombinations(Node, Node, int, int)} only searches the weights
+     * giving new supported points (see {@link LabelCalculator#calculateSupportedLabels(Node, Node, int, int)}) instead of every
+     * weight of {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}
+     */
+    @Getter @Setter
+    private boolean adaptiveWeightSearch = false;
+
+    /**
+     * The labels already computed by {@link LabelCalculator#calculateLabelsForManyLinearCombinations(Node, Node, int, int)}
+     */
+    @Getter
+    private final LabelCache labelCache = new LabelCache(LABEL_CACHE_SIZE);
+
+    /**
+     * True if {@link LabelCalculator#calculateLabelsForManyPaths(Collection, int)} answers the path requests with the alternative
+     * danger values from shortest-path trees, kept up to date by {@link Graph#modifyGraph(HashMap)} instead of being
+     * searched again (see {@link DynamicShortestPathTree})
+     */
+    @Getter @Setter
+    private boolean dynamicTreeRepair = false;
+
+    /**
+     * The shortest-path trees with the alternative danger values, by (source node index, distance weight)
+     */
+    private final Cache<Pair<Integer, Double>, DynamicShortestPathTree> shortestPathTrees = CacheBuilder.newBuilder()
+            .maximumWeight(SHORTEST_PATH_TREE_NODES)
+            .weigher((Pair<Integer, Double> key, DynamicShortestPathTree tree) -> tree.size())
+            .build();
+
+    /**
+     * The file the labels computed with the initial danger values are stored in between runs (null to keep them in memory only)
+     */
+    @Getter @Setter
+    private File labelStoreFile;
+
+    /**
+     * The store of the labels computed with the initial danger values, opened from {@link LabelCalculator#labelStoreFile}
+     */
+    private LabelStore labelStore;
+
+    /**
+     * The class constructor
+     * @param graph The graph whose path requests are computed
+     * @param searchEngine The search engine of the graph
+     */
+    LabelCalculator(Graph graph, SearchEngine searchEngine) {
+        this.graph = graph;
+        this.searchEngine = searchEngine;
+    }
+
+    /**
+     * Drops the labels and the shortest-path trees computed on the previous compact form of the graph
+     * (called by {@link Graph#freeze()})
+     */
+    void reset() {
+        labelCache.clear();
+        shortestPathTrees.invalidateAll();
+        closeLabelStore();
+    }
+
+    /**
+     * Gets the store of the labels computed with the initial danger values by a search mode, opening
+     * {@link LabelCalculator#labelStoreFile} (its labels are dropped if they were computed on another content of the graph
+     * or by another search configuration: search mode, adaptive weight search or hub labels)
+     * @param searchMode The search mode computing the labels
+     * @return The label store, or null if there is no label store file or it can't be used
+     */
+    public LabelStore getLabelStore(int searchMode) {
+        CompactGraph compact = graph.getCompactGraph();
+        boolean hubLabels = searchEngine.hasHubLabels();
+        synchronized (this) {
+            if (labelStoreFile == null) {
+                return null;
+            }
+            if (labelStore == null || !labelStore.getFile().equals(labelStoreFile)
+                    || !labelStore.hasConfiguration(searchMode, adaptiveWeightSearch, hubLabels)) {
+                closeLabelStore();
+                try {
+                    labelStore = LabelStore.open(labelStoreFile, compact, Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS,
+                            searchMode, adaptiveWeightSearch, hubLabels);
+                    log.info("Fichier d'étiquettes {} ouvert : {} trajets déjà calculés", labelStoreFile, labelStore.size());
+                } catch (IOException e) {
+                    log.warn("Lecture du fichier d'étiquettes {} impossible, il ne sera pas utilisé : {}", labelStoreFile, e.getMessage());
+                    labelStoreFile = null;
+                }
+            }
+            return labelStore;
+        }
+    }
+
+    /**
+     * Closes the store of the labels computed with the initial danger values, if it is open
+     */
+    private synchronized void closeLabelStore() {
+        if (labelStore != null) {
+            try {
+                labelStore.close();
+            } catch (IOException e) {
+                log.warn("Écriture du fichier d'étiquettes {} impossible : {}", labelStore.getFile(), e.getMessage());
+            }
+            labelStore = null;
+        }
+    }
+
+    /**
+     * Computes the labels (distance, danger) of a shortest-path, for numerous linear combination weights, with a specific search mode
+     * @param source The starting node of the path request
+     * @param sink The ending node of the path request
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param searchMode The search mode ({@link Graph#HEAP_SEARCH}, {@link Graph#BIDIRECTIONAL_SEARCH}, {@link Graph#A_STAR_SEARCH},
+     *                   {@link Graph#ALT_SEARCH}, {@link Graph#CH_SEARCH}, {@link Graph#CCH_SEARCH}, {@link Graph#ARC_FLAGS_SEARCH},
+     *                   {@link Graph#MULTI_LANE_SEARCH} or {@link Graph#LINEAR_SCAN_SEARCH})
+     * @return A HashMap containing the distance and danger values for X linear combinations (see {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS})
+     */
+    public HashMap<Double, Pair<Double, Double>> calculateLabelsForManyLinearCombinations(Node source, Node sink, int useOfDangerValue,
+                                                                                        int searchMode) {
+        if (searchMode == Graph.LINEAR_SCAN_SEARCH) {
+            return graph.calculateLabelsWithLinearScan(source, sink, useOfDangerValue);
+        }
+
+        // the labels stay valid as long as the graph doesn't change (the compact form is built first, as building it changes
+        // the version), but are cached by search mode and use of hub labels, as they can pick different paths among the
+        // equally short ones or sum their labels in another order
+        graph.getCompactGraph();
+        long version = graph.getGraphVersion(useOfDangerValue);
+        boolean hubLabels = searchEngine.hasHubLabels();
+        HashMap<Double, Pair<Double, Double>> labels = labelCache.get(source.getIndex(), sink.getIndex(),
+                useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, version);
+        if (labels == null) {
+            labels = computeLabelsForManyLinearCombinations(source, sink, useOfDangerValue, searchMode);
+            labelCache.put(source.getIndex(), sink.getIndex(),
+                    useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, version, labels);
+        }
+        return labels;
+    }
+
+    /**
+     * Computes the labels (distance, danger) of a shortest-path, for numerous linear combination weights, with an exact search mode
+     * @param source The starting node of the path request
+     * @param sink The ending node of the path request
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param searchMode The search mode (any but {@link Graph#LINEAR_SCAN_SEARCH})
+     * @return A HashMap containing the distance and danger values for X linear combinations (see {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS})
+     */
+    private HashMap<Double, Pair<Double, Double>> computeLabelsForManyLinearCombinations(Node source, Node sink, int useOfDangerValue,
+                                                                                         int searchMode) {
+        HashMap<Double, Pair<Double, Double>> labels = new HashMap<>(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS.length);
+        if (searchMode == Graph.MULTI_LANE_SEARCH) {
+            List<Pair<Double, Double>> laneLabels = searchEngine.calculateMultiLaneLabels(source.getIndex(), sink.getIndex(), useOfDangerValue);
+            for (int lane = 0; lane < Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS.length; lane++) {
+                labels.put(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[lane], laneLabels.get(lane));
+            }
+            return labels;
+        }
+        if (adaptiveWeightSearch) {
+            // each weight gets the supported point minimising its linear combination, as its own search would
+            List<Pair<Double, Double>> supportedLabels = calculateSupportedLabels(source, sink, useOfDangerValue, searchMode);
+            for (double distanceWeight: Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                Pair<Double, Double> bestLabel = supportedLabels.get(0);
+                for (Pair<Double, Double> label : supportedLabels) {
+                    if (getLinearCombination(label, distanceWeight) < getLinearCombination(bestLabel, distanceWeight)) {
+                        bestLabel = label;
+                    }
+                }
+                labels.put(distanceWeight, bestLabel);
+            }
+            return labels;
+        }
+
+        for (double distanceWeight: Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+            labels.put(distanceWeight, searchEngine.calculateLabel(source.getIndex(), sink.getIndex(), distanceWeight, useOfDangerValue, searchMode));
+        }
+
+        return labels;
+    }
+
+    /**
+     * Computes the labels (distance, danger) of the shortest-paths of many path requests, for numerous linear combination weights,
+     * with the search mode of the search engine (see {@link SearchEngine#getSearchMode()}).
+     * The requests are grouped by starting node: for each weight, a group is answered by a single search that stops once
+     * its farthest ending node is settled, each label being the one a search towards its ending node alone would give.
+     * A group of a single request is computed by {@link LabelCalculator#calculateLabelsForManyLinearCombinations(Node, Node, int, int)},
+     * as every request when the search mode isn't a Dijkstra search without preprocessing ({@link Graph#HEAP_SEARCH},
+     * {@link Graph#BIDIRECTIONAL_SEARCH} or {@link Graph#A_STAR_SEARCH}), point-to-point queries being then cheaper than a tree
+     * @param paths The (starting node, ending node) path requests
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @return The labels of every linear combination (see {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}) of each path request
+     */
+    public HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> calculateLabelsForManyPaths(Collection<Pair<Node, Node>> paths,
+                                                                                                       int useOfDangerValue) {
+        int searchMode = searchEngine.getSearchMode();
+        HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> labelsByPath = new HashMap<>();
+        CompactGraph compact = graph.getCompactGraph();
+        long version = graph.getGraphVersion(useOfDangerValue);
+        boolean hubLabels = searchEngine.hasHubLabels();
+        // only the exact labels of the initial danger values are kept between runs, the alternative ones changing with every profile
+        LabelStore store = searchMode != Graph.LINEAR_SCAN_SEARCH && useOfDangerValue == Graph.WITH_INITIAL_DANGER_VALUE
+                ? getLabelStore(searchMode) : null;
+        int storedPaths = 0;
+        LinkedHashMap<Node, LinkedHashSet<Node>> sinksBySource = new LinkedHashMap<>();
+        for (Pair<Node, Node> path : paths) {
+            // the path requests whose labels are cached or stored need no search
+            HashMap<Double, Pair<Double, Double>> cachedLabels = searchMode == Graph.LINEAR_SCAN_SEARCH ? null
+                    : labelCache.get(path.getValue0().getIndex(), path.getValue1().getIndex(),
+                            useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, version);
+            if (cachedLabels == null && store != null) {
+                cachedLabels = store.get(path.getValue0().getId(), path.getValue1().getId());
+                if (cachedLabels != null) {
+                    labelCache.put(path.getValue0().getIndex(), path.getValue1().getIndex(),
+                            useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, version, cachedLabels);
+                    storedPaths++;
+                }
+            }
+            if (cachedLabels != null) {
+                labelsByPath.put(path, cachedLabels);
+                continue;
+            }
+            sinksBySource.computeIfAbsent(path.getValue0(), source -> new LinkedHashSet<>()).add(path.getValue1());
+        }
+
+        SearchContext context = searchEngine.getSearchContext();
+        boolean sharedSearches = searchMode == Graph.HEAP_SEARCH || searchMode == Graph.BIDIRECTIONAL_SEARCH
+                || searchMode == Graph.A_STAR_SEARCH;
+        boolean sharedTrees = dynamicTreeRepair && searchMode != Graph.LINEAR_SCAN_SEARCH
+                && useOfDangerValue == Graph.WITH_ALTERNATIVE_DANGER_VALUE;
+        for (Entry<Node, LinkedHashSet<Node>> group : sinksBySource.entrySet()) {
+            Node source = group.getKey();
+            if (sharedTrees) {
+                for (Node sink : group.getValue()) {
+                    labelsByPath.put(Pair.with(source, sink), new HashMap<>(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS.length));
+                }
+                for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                    DynamicShortestPathTree tree = getShortestPathTree(source, group.getValue(), distanceWeight);
+                    for (Node sink : group.getValue()) {
+                        labelsByPath.get(Pair.with(source, sink)).put(distanceWeight, tree.getLabel(sink.getIndex()));
+                    }
+                }
+                for (Node sink : group.getValue()) {
+                    labelCache.put(source.getIndex(), sink.getIndex(),
+                            useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, version, labelsByPath.get(Pair.with(source, sink)));
+                }
+                continue;
+            }
+            if (!sharedSearches || group.getValue().size() == 1) {
+                for (Node sink : group.getValue()) {
+                    HashMap<Double, Pair<Double, Double>> labels = searchMode == Graph.LINEAR_SCAN_SEARCH
+                            ? graph.calculateLabelsWithLinearScan(source, sink, useOfDangerValue)
+                            : computeLabelsForManyLinearCombinations(source, sink, useOfDangerValue, searchMode);
+                    if (searchMode != Graph.LINEAR_SCAN_SEARCH) {
+                        labelCache.put(source.getIndex(), sink.getIndex(),
+                                useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, version, labels);
+                    }
+                    labelsByPath.put(Pair.with(source, sink), labels);
+                }
+                continue;
+            }
+
+            BitSet sinks = new BitSet(compact.getNodeCount());
+            for (Node sink : group.getValue()) {
+                sinks.set(sink.getIndex());
+                labelsByPath.put(Pair.with(source, sink), new HashMap<>(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS.length));
+            }
+            for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                DijkstraSearch.searchMany(compact, context, source.getIndex(), sinks, distanceWeight, useOfDangerValue,
+                        searchEngine.getSearchStatistics());
+                for (Node sink : group.getValue()) {
+                    // the distance and danger totals are accumulated by the search itself
+                    Pair<Double, Double> label = context.isVisited(sink.getIndex())
+                            ? Pair.with(context.getDistance(sink.getIndex()), context.getDanger(sink.getIndex()))
+                            : Pair.with(ShortestPath.NOT_FOUND.getDistance(), ShortestPath.NOT_FOUND.getDanger());
+                    labelsByPath.get(Pair.with(source, sink)).put(distanceWeight, label);
+                }
+            }
+            for (Node sink : group.getValue()) {
+                labelCache.put(source.getIndex(), sink.getIndex(),
+                        useOfDangerValue, searchMode, adaptiveWeightSearch, hubLabels, version, labelsByPath.get(Pair.with(source, sink)));
+            }
+        }
+        if (store != null) {
+            storeLabels(store, sinksBySource, labelsByPath);
+        }
+        log.debug("Étiquettes obtenues pour {} trajets ({} lues dans le fichier d'étiquettes), "
+                        + "les recherches étant regroupées en {} points de départ (cache : {})",
+                labelsByPath.size(), storedPaths, sinksBySource.size(), labelCache.getStatistics());
+        return labelsByPath;
+    }
+
+    /**
+     * Finds the path requests whose labels with the alternative danger values can differ from their labels with the initial
+     * ones, that is the ones for which a path through a modified edge (an edge whose alternative danger value differs
+     * from its initial one) could cost less than their initial shortest-path for some linear combination. For each modified
+     * edge and weight, the geodesic lower bounds (see {@link GeodesicLowerBound}) first discard the requests whose paths
+     * through this edge can't be cheap enough. For the other ones only, a backward search from its start then a forward
+     * search from its end, both stopped at the highest cost these requests can use, give the exact cost of the cheapest
+     * path through this edge, which is compared with the cost of its initial label.
+     * Every request is kept if an edge got more expensive (its initial shortest-path could then get longer)
+     * @param initialLabelsByPath The labels of every linear combination of each path request with the initial danger values
+     * @return The path requests whose labels can change
+     */
+    public Set<Pair<Node, Node>> findPathsAffectedByModifications(Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath) {
+        CompactGraph compact = graph.getCompactGraph();
+        List<Integer> modifiedEdges = new ArrayList<>();
+        for (int edge = 0; edge < compact.getEdgeCount(); edge++) {
+            double alternativeDanger = compact.getEdgeDanger(edge, Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+            double initialDanger = compact.getEdgeDanger(edge, Graph.WITH_INITIAL_DANGER_VALUE);
+            if (alternativeDanger > initialDanger) {
+                return new HashSet<>(initialLabelsByPath.keySet());
+            }
+            if (alternativeDanger < initialDanger) {
+                modifiedEdges.add(edge);
+            }
+        }
+
+        Set<Pair<Node, Node>> affectedPaths = new HashSet<>();
+        GeodesicLowerBound geodesicBound = searchEngine.getGeodesicLowerBound();
+        SearchContext context = searchEngine.getSearchContext();
+        int exactSearches = 0;
+        for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+            double costPerMetre = geodesicBound.getCostPerMetre(distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+            for (int edge : modifiedEdges) {
+                int edgeStart = compact.getEdgeSource(edge);
+                int edgeEnd = compact.getEdgeTarget(edge);
+                double edgeCost = compact.getEdgeCost(edge, distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+
+                // the requests the geodesic lower bounds can't discard, with the cost their path through the edge can't exceed
+                // (twice as tolerant as the final comparison, so that the rounding errors never discard a request it keeps)
+                List<Pair<Node, Node>> undecidedPaths = new ArrayList<>();
+                List<Double> initialCosts = new ArrayList<>();
+                double startCostLimit = -1.0;
+                for (Entry<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> path : initialLabelsByPath.entrySet()) {
+                    if (affectedPaths.contains(path.getKey())) {
+                        continue;
+                    }
+                    double initialCost = getLinearCombination(path.getValue().get(distanceWeight), distanceWeight);
+                    double budget = initialCost * (1 + 2 * AFFECTED_PATH_TOLERANCE) - edgeCost;
+                    double lowestCostFromEnd = costPerMetre * geodesicBound.getGeodesicDistance(edgeEnd, path.getKey().getValue1().getIndex());
+                    double lowestCostToStart = costPerMetre * geodesicBound.getGeodesicDistance(path.getKey().getValue0().getIndex(), edgeStart);
+                    if (lowestCostToStart + lowestCostFromEnd <= budget) {
+                        undecidedPaths.add(path.getKey());
+                        initialCosts.add(initialCost);
+                        startCostLimit = Math.max(startCostLimit, budget - lowestCostFromEnd);
+                    }
+                }
+                if (undecidedPaths.isEmpty()) {
+                    continue;
+                }
+
+                // exact costs from the starting nodes to the edge, then from the edge to the ending nodes that are still undecided
+                DijkstraSearch.searchAll(compact, context, edgeStart, distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE, true, startCostLimit);
+                double[] costsToStart = new double[undecidedPaths.size()];
+                double endCostLimit = -1.0;
+                for (int position = 0; position < undecidedPaths.size(); position++) {
+                    Pair<Node, Node> path = undecidedPaths.get(position);
+                    double budget = initialCosts.get(position) * (1 + 2 * AFFECTED_PATH_TOLERANCE) - edgeCost;
+                    costsToStart[position] = context.getCost(path.getValue0().getIndex());
+                    double lowestCostFromEnd = costPerMetre * geodesicBound.getGeodesicDistance(edgeEnd, path.getValue1().getIndex());
+                    if (costsToStart[position] + lowestCostFromEnd <= budget) {
+                        endCostLimit = Math.max(endCostLimit, budget - costsToStart[position]);
+                    }
+                    else {
+                        costsToStart[position] = Double.MAX_VALUE;
+                    }
+                }
+                exactSearches++;
+                if (endCostLimit < 0.0) {
+                    continue;
+                }
+                DijkstraSearch.searchAll(compact, context, edgeEnd, distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE, false, endCostLimit);
+                exactSearches++;
+
+                for (int position = 0; position < undecidedPaths.size(); position++) {
+                    Pair<Node, Node> path = undecidedPaths.get(position);
+                    if (costsToStart[position] == Double.MAX_VALUE) {
+                        continue;
+                    }
+                    // the costs are summed as doubles, so the paths through the edge costing as much as the initial one are kept too
+                    double lowestCostThroughEdge = costsToStart[position] + edgeCost + context.getCost(path.getValue1().getIndex());
+                    if (lowestCostThroughEdge <= initialCosts.get(position) * (1 + AFFECTED_PATH_TOLERANCE)) {
+                        affectedPaths.add(path);
+                    }
+                }
+            }
+        }
+        log.debug("Trajets affectés par les modifications : {} sur {}, {} recherches exactes sur {} arcs modifiés",
+                affectedPaths.size(), initialLabelsByPath.size(), exactSearches, modifiedEdges.size());
+        return affectedPaths;
+    }
+
+    /**
+     * Gets the shortest-path tree of a starting node with the alternative danger values, computing it again
+     * if it doesn't reach every ending node
+     * @param source The starting node
+     * @param sinks The ending nodes
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @return The shortest-path tree, covering every ending node
+     */
+    private DynamicShortestPathTree getShortestPathTree(Node source, Collection<Node> sinks, double distanceWeight) {
+        Pair<Integer, Double> key = Pair.with(source.getIndex(), distanceWeight);
+        DynamicShortestPathTree tree = shortestPathTrees.getIfPresent(key);
+        if (tree != null && sinks.stream().allMatch(sink -> tree.covers(sink.getIndex()))) {
+            return tree;
+        }
+        CompactGraph compact = graph.getCompactGraph();
+        BitSet sinkIndices = new BitSet(compact.getNodeCount());
+        for (Node sink : sinks) {
+            sinkIndices.set(sink.getIndex());
+        }
+        DynamicShortestPathTree newTree = DynamicShortestPathTree.build(compact, searchEngine.getSearchContext(), source.getIndex(), sinkIndices,
+                distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE, searchEngine.getSearchStatistics());
+        shortestPathTrees.put(key, newTree);
+        return newTree;
+    }
+
+    /**
+     * Updates the shortest-path trees with the alternative danger values after some edges were modified, the trees that
+     * can't be updated being dropped (see {@link DynamicShortestPathTree#repair(int[], double[], IndexedMinHeap, SearchStatistics)})
+     * (called by {@link Graph#modifyGraph(HashMap)})
+     * @param edges The modified edges
+     * @param previousDangers The alternative danger value of each modified edge before the modification
+     */
+    void repairShortestPathTrees(int[] edges, double[] previousDangers) {
+        if (shortestPathTrees.size() == 0) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        IndexedMinHeap queue = new IndexedMinHeap(graph.getCompactGraph().getNodeCount());
+        int repairedTrees = 0;
+        int droppedTrees = 0;
+        for (Entry<Pair<Integer, Double>, DynamicShortestPathTree> entry : shortestPathTrees.asMap().entrySet()) {
+            if (entry.getValue().repair(edges, previousDangers, queue, searchEngine.getSearchStatistics())) {
+                repairedTrees++;
+            } else {
+                shortestPathTrees.invalidate(entry.getKey());
+                droppedTrees++;
+            }
+        }
+        log.info("{} arbres de plus courts chemins mis à jour, {} à recalculer : {} ms",
+                repairedTrees, droppedTrees, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Appends the labels computed for some path requests to a label store
+     * @param store The label store
+     * @param sinksBySource The ending nodes of the computed path requests, by starting node
+     * @param labelsByPath The labels of every linear combination of each path request
+     */
+    private void storeLabels(LabelStore store, Map<Node, ? extends Collection<Node>> sinksBySource,
+                             Map<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> labelsByPath) {
+        try {
+            for (Entry<Node, ? extends Collection<Node>> group : sinksBySource.entrySet()) {
+                for (Node sink : group.getValue()) {
+                    store.put(group.getKey().getId(), sink.getId(), labelsByPath.get(Pair.with(group.getKey(), sink)));
+                }
+            }
+            store.flush();
+        } catch (IOException e) {
+            log.warn("Écriture du fichier d'étiquettes {} impossible : {}", store.getFile(), e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the value of a linear combination of the distance and danger values of a label
+     * @param label The label (distance, danger)
+     * @param distanceWeight The attributed distance weight in the linear combination
+     * @return The value of the linear combination
+     */
+    private static double getLinearCombination(Pair<Double, Double> label, double distanceWeight) {
+        return distanceWeight*label.getValue0() + (1-distanceWeight)*label.getValue1();
+    }
+
+    /**
+     * Computes the supported points of the Pareto front between two nodes that the weights of
+     * {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS} can give, with a dichotomic search: once both extreme weights are
+     * searched, the only weight searched between two adjacent points is the one giving them the same linear combination,
+     * which either finds a new supported point between them or proves there is none. Two adjacent points with no weight
+     * of the grid strictly between the weights that found them aren't searched further, no grid weight being able to give
+     * a point between them, and up to {@link LabelCalculator#ADAPTIVE_DIRECT_GRID_WEIGHTS} grid weights between two points are
+     * directly searched. The weights outside the grid are searched with {@link Graph#BIDIRECTIONAL_SEARCH} when the
+     * search mode keeps data per linear combination ({@link Graph#A_STAR_SEARCH}, {@link Graph#ALT_SEARCH},
+     * {@link Graph#CH_SEARCH}, {@link Graph#CCH_SEARCH} and {@link Graph#ARC_FLAGS_SEARCH})
+     * @param source The starting node of the path request
+     * @param sink The ending node of the path request
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param searchMode The search mode (see {@link SearchEngine#search(int, int, double, int, int)})
+     * @return The supported labels (distance, danger), by increasing distance
+     */
+    public List<Pair<Double, Double>> calculateSupportedLabels(Node source, Node sink, int useOfDangerValue, int searchMode) {
+        double lowestWeight = Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0];
+        double highestWeight = Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS.length - 1];
+        Pair<Double, Double> shortestLabel = searchEngine.calculateLabel(source.getIndex(), sink.getIndex(), highestWeight, useOfDangerValue, searchMode);
+        Pair<Double, Double> safestLabel = searchEngine.calculateLabel(source.getIndex(), sink.getIndex(), lowestWeight, useOfDangerValue, searchMode);
+
+        List<Pair<Double, Double>> supportedLabels = new ArrayList<>();
+        supportedLabels.add(shortestLabel);
+        if (!safestLabel.equals(shortestLabel)) {
+            int probeSearchMode = searchMode == Graph.HEAP_SEARCH ? Graph.HEAP_SEARCH : Graph.BIDIRECTIONAL_SEARCH;
+            addSupportedLabelsBetween(source, sink, useOfDangerValue, searchMode, probeSearchMode,
+                    Pair.with(highestWeight, shortestLabel), Pair.with(lowestWeight, safestLabel), supportedLabels);
+            supportedLabels.add(safestLabel);
+        }
+        return supportedLabels;
+    }
+
+    /**
+     * Adds the supported points found strictly between two adjacent supported points, by increasing distance
+     * @param source The starting node of the path request
+     * @param sink The ending node of the path request
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param gridSearchMode The search mode of the weights of the grid
+     * @param searchMode The search mode of the weights outside the grid
+     * @param shorterLabel The supported label with the lower distance, with the weight that found it
+     * @param saferLabel The supported label with the lower danger, with the weight that found it
+     * @param supportedLabels The list to which the labels found are added
+     */
+    private void addSupportedLabelsBetween(Node source, Node sink, int useOfDangerValue, int gridSearchMode, int searchMode,
+                                           Pair<Double, Pair<Double, Double>> shorterLabel, Pair<Double, Pair<Double, Double>> saferLabel,
+                                           List<Pair<Double, Double>> supportedLabels) {
+        List<Double> gridWeightsBetween = new ArrayList<>();
+        for (double gridWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+            if (gridWeight > saferLabel.getValue0() && gridWeight < shorterLabel.getValue0()) {
+                gridWeightsBetween.add(gridWeight);
+            }
+        }
+        double distanceGap = saferLabel.getValue1().getValue0() - shorterLabel.getValue1().getValue0();
+        double dangerGap = shorterLabel.getValue1().getValue1() - saferLabel.getValue1().getValue1();
+        if (gridWeightsBetween.isEmpty() || distanceGap <= 0 || dangerGap <= 0) {
+            return;
+        }
+        if (gridWeightsBetween.size() <= ADAPTIVE_DIRECT_GRID_WEIGHTS) {
+            // few grid weights left: their own searches give their points, by decreasing weight (so by increasing distance)
+            Pair<Double, Double> previousLabel = shorterLabel.getValue1();
+            for (int i = gridWeightsBetween.size() - 1; i >= 0; i--) {
+                Pair<Double, Double> label = searchEngine.calculateLabel(source.getIndex(), sink.getIndex(), gridWeightsBetween.get(i),
+                        useOfDangerValue, gridSearchMode);
+                if (!label.equals(previousLabel) && !label.equals(saferLabel.getValue1())) {
+                    supportedLabels.add(label);
+                    previousLabel = label;
+                }
+            }
+            return;
+        }
+
+        // the weight for which both labels have the same linear combination
+        double distanceWeight = dangerGap / (distanceGap + dangerGap);
+        Pair<Double, Double> label = searchEngine.calculateLabel(source.getIndex(), sink.getIndex(), distanceWeight, useOfDangerValue, searchMode);
+        double lineValue = getLinearCombination(shorterLabel.getValue1(), distanceWeight);
+        if (getLinearCombination(label, distanceWeight) >= lineValue - SUPPORTED_POINT_TOLERANCE * Math.max(1.0, lineValue)) {
+            return;
+        }
+        addSupportedLabelsBetween(source, sink, useOfDangerValue, gridSearchMode, searchMode,
+                shorterLabel, Pair.with(distanceWeight, label), supportedLabels);
+        supportedLabels.add(label);
+        addSupportedLabelsBetween(source, sink, useOfDangerValue, gridSearchMode, searchMode,
+                Pair.with(distanceWeight, label), saferLabel, supportedLabels);
+    }
+}
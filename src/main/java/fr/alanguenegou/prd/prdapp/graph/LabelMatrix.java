@@ -0,0 +1,212 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Pair;
+
+import java.io.*;
+import java.util.HashMap;
+
+/**
+ * The class holding the labels (distance, danger) of the shortest-paths between a set of origins and a set of
+ * destinations, as one dense matrix per linear combination (see {@link ManyToManySearch}), so that analyses over many
+ * trips are array reads instead of searches. A matrix can be written to and read from a file, the nodes being stored
+ * by ID (file layout: magic, use of danger value, weights, origin IDs, destination IDs, then the distances and dangers
+ * of each weight, row by row)
+ * @version 1.00
+ */
+public class LabelMatrix {
+
+    /**
+     * The first bytes of a label matrix file ("LMX1")
+     */
+    private static final int FILE_MAGIC = 0x4C4D5831;
+
+    /**
+     * The distance weight of each linear combination
+     */
+    @Getter
+    private final double[] distanceWeights;
+
+    /**
+     * A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used by these labels
+     */
+    @Getter
+    private final int useOfDangerValue;
+
+    /**
+     * The ID of each origin node (one row per origin)
+     */
+    private final long[] originIds;
+
+    /**
+     * The ID of each destination node (one column per destination)
+     */
+    private final long[] destinationIds;
+
+    /**
+     * The row of each origin node, by ID
+     */
+    private final HashMap<Long, Integer> originRows = new HashMap<>();
+
+    /**
+     * The column of each destination node, by ID
+     */
+    private final HashMap<Long, Integer> destinationColumns = new HashMap<>();
+
+    /**
+     * The distance matrix of each linear combination, row by row
+     */
+    private final double[][] distances;
+
+    /**
+     * The danger matrix of each linear combination, row by row
+     */
+    private final double[][] dangers;
+
+    /**
+     * The class constructor, with matrices to fill
+     * @param distanceWeights The distance weight of each linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param originIds The ID of each origin node
+     * @param destinationIds The ID of each destination node
+     */
+    public LabelMatrix(double[] distanceWeights, int useOfDangerValue, long[] originIds, long[] destinationIds) {
+        this.distanceWeights = distanceWeights.clone();
+        this.useOfDangerValue = useOfDangerValue;
+        this.originIds = originIds.clone();
+        this.destinationIds = destinationIds.clone();
+        for (int row = 0; row < originIds.length; row++) {
+            originRows.put(originIds[row], row);
+        }
+        for (int column = 0; column < destinationIds.length; column++) {
+            destinationColumns.put(destinationIds[column], column);
+        }
+        distances = new double[distanceWeights.length][originIds.length * destinationIds.length];
+        dangers = new double[distanceWeights.length][originIds.length * destinationIds.length];
+    }
+
+    /**
+     * Gets the number of origins
+     * @return The number of rows of the matrices
+     */
+    public int getOriginCount() {
+        return originIds.length;
+    }
+
+    /**
+     * Gets the number of destinations
+     * @return The number of columns of the matrices
+     */
+    public int getDestinationCount() {
+        return destinationIds.length;
+    }
+
+    /**
+     * Gets the distance matrix of a linear combination, row by row (to be filled or scanned)
+     * @param weightIndex The index of the linear combination in {@link LabelMatrix#distanceWeights}
+     * @return The distances
+     */
+    public double[] getDistances(int weightIndex) {
+        return distances[weightIndex];
+    }
+
+    /**
+     * Gets the danger matrix of a linear combination, row by row (to be filled or scanned)
+     * @param weightIndex The index of the linear combination in {@link LabelMatrix#distanceWeights}
+     * @return The dangers
+     */
+    public double[] getDangers(int weightIndex) {
+        return dangers[weightIndex];
+    }
+
+    /**
+     * Gets the labels of every linear combination between an origin and a destination,
+     * in the form returned by {@link Graph#calculateLabelsForManyLinearCombinations(Node, Node, int)}
+     * @param origin The origin node
+     * @param destination The destination node
+     * @return The distance and danger values by distance weight, or null if the nodes aren't in the matrix
+     */
+    public HashMap<Double, Pair<Double, Double>> getLabels(Node origin, Node destination) {
+        Integer row = originRows.get(origin.getId());
+        Integer column = destinationColumns.get(destination.getId());
+        if (row == null || column == null) {
+            return null;
+        }
+        int position = row * destinationIds.length + column;
+        HashMap<Double, Pair<Double, Double>> labels = new HashMap<>(distanceWeights.length);
+        for (int weightIndex = 0; weightIndex < distanceWeights.length; weightIndex++) {
+            labels.put(distanceWeights[weightIndex], Pair.with(distances[weightIndex][position], dangers[weightIndex][position]));
+        }
+        return labels;
+    }
+
+    /**
+     * Writes this matrix to a file
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(useOfDangerValue);
+            out.writeInt(distanceWeights.length);
+            for (double distanceWeight : distanceWeights) {
+                out.writeDouble(distanceWeight);
+            }
+            out.writeInt(originIds.length);
+            for (long originId : originIds) {
+                out.writeLong(originId);
+            }
+            out.writeInt(destinationIds.length);
+            for (long destinationId : destinationIds) {
+                out.writeLong(destinationId);
+            }
+            for (int weightIndex = 0; weightIndex < distanceWeights.length; weightIndex++) {
+                for (double distance : distances[weightIndex]) {
+                    out.writeDouble(distance);
+                }
+                for (double danger : dangers[weightIndex]) {
+                    out.writeDouble(danger);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a matrix written by {@link LabelMatrix#write(File)}
+     * @param file The file
+     * @return The matrix
+     * @throws IOException If the file can't be read or isn't a label matrix file
+     */
+    public static LabelMatrix read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Fichier de matrice d'étiquettes invalide : " + file);
+            }
+            int useOfDangerValue = in.readInt();
+            double[] distanceWeights = new double[in.readInt()];
+            for (int weightIndex = 0; weightIndex < distanceWeights.length; weightIndex++) {
+                distanceWeights[weightIndex] = in.readDouble();
+            }
+            long[] originIds = new long[in.readInt()];
+            for (int row = 0; row < originIds.length; row++) {
+                originIds[row] = in.readLong();
+            }
+            long[] destinationIds = new long[in.readInt()];
+            for (int column = 0; column < destinationIds.length; column++) {
+                destinationIds[column] = in.readLong();
+            }
+
+            LabelMatrix matrix = new LabelMatrix(distanceWeights, useOfDangerValue, originIds, destinationIds);
+            for (int weightIndex = 0; weightIndex < distanceWeights.length; weightIndex++) {
+                for (int position = 0; position < matrix.distances[weightIndex].length; position++) {
+                    matrix.distances[weightIndex][position] = in.readDouble();
+                }
+                for (int position = 0; position < matrix.dangers[weightIndex].length; position++) {
+                    matrix.dangers[weightIndex][position] = in.readDouble();
+                }
+            }
+            return matrix;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Pair;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * The class storing on disk the labels (distance, danger) computed for path requests with the initial danger values,
+ * so that later runs on the same graph get them without any search. The file is append-only: the records of a run are
+ * added after the ones of the previous runs, which are memory-mapped when the store is opened. A file computed on
+ * another graph content (see {@link CompactGraph#getFingerprint(int)}), for other weights or by another search
+ * configuration (search mode, adaptive weight search, hub labels) is started again, the labels of two configurations
+ * being equal only up to the rounding of their sums.
+ * File layout: a header (magic, number of weights, fingerprint of the graph, search mode, adaptive weight search and
+ * hub labels flags, distance weights), then one record per path request (source node ID, sink node ID, then the
+ * distance and danger of each weight).
+ * An instance can be used by several threads at once
+ * @version 1.00
+ */
+public class LabelStore implements Closeable {
+
+    /**
+     * The first bytes of a label store file ("LBS2")
+     */
+    private static final int FILE_MAGIC = 0x4C425332;
+
+    /**
+     * The file of this store
+     */
+    @Getter
+    private final File file;
+
+    /**
+     * The distance weight of each stored label
+     */
+    private final double[] distanceWeights;
+
+    /**
+     * The search mode the stored labels are computed with
+     */
+    @Getter
+    private final int searchMode;
+
+    /**
+     * True if the stored labels are computed by an adaptive weight search
+     */
+    @Getter
+    private final boolean adaptiveWeightSearch;
+
+    /**
+     * True if the stored labels of the extreme weights are answered by hub labels
+     */
+    @Getter
+    private final boolean hubLabels;
+
+    /**
+     * The size of a record in bytes
+     */
+    private final int recordSize;
+
+    /**
+     * The memory-mapped records written by the previous runs
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The position of each memory-mapped record, by (source node ID, sink node ID)
+     */
+    private final HashMap<Pair<Long, Long>, Integer> recordPositions = new HashMap<>();
+
+    /**
+     * The labels added since this store was opened, by (source node ID, sink node ID)
+     */
+    private final HashMap<Pair<Long, Long>, HashMap<Double, Pair<Double, Double>>> addedLabels = new HashMap<>();
+
+    /**
+     * The stream the new records are appended to
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The class constructor
+     * @param file The file of this store
+     * @param distanceWeights The distance weight of each stored label
+     * @param searchMode The search mode the stored labels are computed with
+     * @param adaptiveWeightSearch True if the stored labels are computed by an adaptive weight search
+     * @param hubLabels True if the stored labels of the extreme weights are answered by hub labels
+     * @param buffer The memory-mapped content of the file (header and complete records)
+     * @param recordsPosition The position of the first record in the file
+     * @throws IOException If the file can't be opened for writing
+     */
+    private LabelStore(File file, double[] distanceWeights, int searchMode, boolean adaptiveWeightSearch, boolean hubLabels,
+                       MappedByteBuffer buffer, int recordsPosition) throws IOException {
+        this.file = file;
+        this.distanceWeights = distanceWeights.clone();
+        this.searchMode = searchMode;
+        this.adaptiveWeightSearch = adaptiveWeightSearch;
+        this.hubLabels = hubLabels;
+        this.recordSize = 2 * Long.BYTES + 2 * distanceWeights.length * Double.BYTES;
+        this.buffer = buffer;
+        for (int position = recordsPosition; position + recordSize <= buffer.capacity(); position += recordSize) {
+            recordPositions.put(Pair.with(buffer.getLong(position), buffer.getLong(position + Long.BYTES)), position);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /**
+     * Opens the label store of a file, starting it again if it was computed on another graph content, for other weights
+     * or by another search configuration. A record left incomplete by an interrupted run is dropped
+     * @param file The file
+     * @param graph The compact graph the labels are computed on
+     * @param distanceWeights The distance weight of each label
+     * @param searchMode The search mode the labels are computed with
+     * @param adaptiveWeightSearch True if the labels are computed by an adaptive weight search
+     * @param hubLabels True if the labels of the extreme weights are answered by hub labels
+     * @return The label store
+     * @throws IOException If the file can't be read or written
+     */
+    public static LabelStore open(File file, CompactGraph graph, double[] distanceWeights,
+                                  int searchMode, boolean adaptiveWeightSearch, boolean hubLabels) throws IOException {
+        int[] configuration = { searchMode, adaptiveWeightSearch ? 1 : 0, hubLabels ? 1 : 0 };
+        int headerSize = (2 + configuration.length) * Integer.BYTES + Long.BYTES + distanceWeights.length * Double.BYTES;
+        int recordSize = 2 * Long.BYTES + 2 * distanceWeights.length * Double.BYTES;
+        long fingerprint = graph.getFingerprint(Graph.WITH_INITIAL_DANGER_VALUE);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            if (!hasHeader(randomAccessFile, headerSize, fingerprint, configuration, distanceWeights)) {
+                randomAccessFile.setLength(0);
+                randomAccessFile.writeInt(FILE_MAGIC);
+                randomAccessFile.writeInt(distanceWeights.length);
+                randomAccessFile.writeLong(fingerprint);
+                for (int value : configuration) {
+                    randomAccessFile.writeInt(value);
+                }
+                for (double distanceWeight : distanceWeights) {
+                    randomAccessFile.writeDouble(distanceWeight);
+                }
+            }
+            long completeSize = headerSize + (randomAccessFile.length() - headerSize) / recordSize * recordSize;
+            if (completeSize > Integer.MAX_VALUE) {
+                throw new IOException("Fichier d'étiquettes trop volumineux pour être projeté en mémoire : " + file);
+            }
+            randomAccessFile.setLength(completeSize);
+            // the mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, completeSize);
+            return new LabelStore(file, distanceWeights, searchMode, adaptiveWeightSearch, hubLabels, buffer, headerSize);
+        }
+    }
+
+    /**
+     * Checks if a file starts with the header of a label store of a graph content, search configuration and weights
+     * @param randomAccessFile The file
+     * @param headerSize The size of the header in bytes
+     * @param fingerprint The fingerprint of the graph content
+     * @param configuration The search mode, adaptive weight search flag and hub labels flag of the labels
+     * @param distanceWeights The distance weight of each label
+     * @return True if the header matches
+     * @throws IOException If the file can't be read
+     */
+    private static boolean hasHeader(RandomAccessFile randomAccessFile, int headerSize, long fingerprint, int[] configuration,
+                                     double[] distanceWeights) throws IOException {
+        if (randomAccessFile.length() < headerSize) {
+            return false;
+        }
+        randomAccessFile.seek(0);
+        if (randomAccessFile.readInt() != FILE_MAGIC || randomAccessFile.readInt() != distanceWeights.length
+                || randomAccessFile.readLong() != fingerprint) {
+            return false;
+        }
+        for (int value : configuration) {
+            if (randomAccessFile.readInt() != value) {
+                return false;
+            }
+        }
+        for (double distanceWeight : distanceWeights) {
+            if (randomAccessFile.readDouble() != distanceWeight) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the stored labels are the ones a search configuration computes
+     * @param searchMode The search mode
+     * @param adaptiveWeightSearch True for an adaptive weight search
+     * @param hubLabels True if the labels of the extreme weights are answered by hub labels
+     * @return True if the configuration is the one of this store
+     */
+    public boolean hasConfiguration(int searchMode, boolean adaptiveWeightSearch, boolean hubLabels) {
+        return this.searchMode == searchMode && this.adaptiveWeightSearch == adaptiveWeightSearch && this.hubLabels == hubLabels;
+    }
+
+    /**
+     * Gets the stored labels of a path request
+     * @param sourceId The ID of the starting node
+     * @param sinkId The ID of the ending node
+     * @return The labels by distance weight, or null if they aren't stored
+     */
+    public synchronized HashMap<Double, Pair<Double, Double>> get(long sourceId, long sinkId) {
+        Pair<Long, Long> key = Pair.with(sourceId, sinkId);
+        HashMap<Double, Pair<Double, Double>> labels = addedLabels.get(key);
+        if (labels != null) {
+            return new HashMap<>(labels);
+        }
+        Integer position = recordPositions.get(key);
+        if (position == null) {
+            return null;
+        }
+        labels = new HashMap<>(distanceWeights.length);
+        int labelPosition = position + 2 * Long.BYTES;
+        for (double distanceWeight : distanceWeights) {
+            labels.put(distanceWeight, Pair.with(buffer.getDouble(labelPosition), buffer.getDouble(labelPosition + Double.BYTES)));
+            labelPosition += 2 * Double.BYTES;
+        }
+        return labels;
+    }
+
+    /**
+     * Appends the labels of a path request to this store (written to the file by {@link LabelStore#flush()})
+     * @param sourceId The ID of the starting node
+     * @param sinkId The ID of the ending node
+     * @param labels The labels by distance weight
+     * @throws IOException If the record can't be written
+     */
+    public synchronized void put(long sourceId, long sinkId, HashMap<Double, Pair<Double, Double>> labels) throws IOException {
+        Pair<Long, Long> key = Pair.with(sourceId, sinkId);
+        if (recordPositions.containsKey(key) || addedLabels.containsKey(key)) {
+            return;
+        }
+        out.writeLong(sourceId);
+        out.writeLong(sinkId);
+        for (double distanceWeight : distanceWeights) {
+            Pair<Double, Double> label = labels.get(distanceWeight);
+            out.writeDouble(label.getValue0());
+            out.writeDouble(label.getValue1());
+        }
+        addedLabels.put(key, new HashMap<>(labels));
+    }
+
+    /**
+     * Writes the appended records to the file
+     * @throws IOException If the records can't be written
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Gets the number of stored path requests
+     * @return The number of records
+     */
+    public synchronized int size() {
+        return recordPositions.size() + addedLabels.size();
+    }
+
+    /**
+     * Writes the appended records to the file and closes it (the stored labels can still be read)
+     * @throws IOException If the records can't be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,389 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class providing lower bounds on path costs thanks to landmarks (ALT technique):
+ * the costs from and to a few well spread landmarks are computed once for every node, then the triangle inequality gives
+ * d(v, t) &ge; d(v, L) - d(t, L) and d(v, t) &ge; d(L, t) - d(L, v) for any landmark L.
+ * Costs are stored in float arrays (one table per distance weight and use of danger value) and can be saved to disk
+ * @version 1.00
+ */
+public class LandmarkLowerBound {
+
+    /**
+     * A logger instance to log infos in the console
+     */
+    private final static Logger log = LoggerFactory.getLogger(LandmarkLowerBound.class);
+
+    /**
+     * The default number of landmarks
+     */
+    public static final int DEFAULT_LANDMARK_COUNT = 16;
+
+    /**
+     * The number of landmarks actually used by a query (the ones giving the best bounds at its source)
+     */
+    public static final int ACTIVE_LANDMARK_COUNT = 4;
+
+    /**
+     * The first bytes of a landmark file ("ALT1")
+     */
+    private static final int FILE_MAGIC = 0x414C5431;
+
+    /**
+     * The maximal relative rounding error of a cost stored as a float, removed from the bounds to keep them admissible
+     */
+    private static final double FLOAT_ERROR = 1.0 / (1 << 23);
+
+    /**
+     * The compact graph on which the landmark costs are computed
+     */
+    private final CompactGraph graph;
+
+    /**
+     * The landmark node indices
+     */
+    @Getter
+    private final int[] landmarks;
+
+    /**
+     * The cost tables, by (distance weight, use of danger value)
+     */
+    private final Map<Pair<Double, Integer>, CostTables> tables = new ConcurrentHashMap<>();
+
+    /**
+     * The class holding the landmark costs of one linear combination, stored node by node
+     * (entry node * number of landmarks + landmark, infinite if there is no path)
+     */
+    private static class CostTables {
+
+        /**
+         * The fingerprint of the graph content these costs were computed on (see {@link CompactGraph#getFingerprint(int)})
+         */
+        private final long fingerprint;
+
+        /**
+         * The costs from each landmark to each node
+         */
+        private final float[] fromLandmarks;
+
+        /**
+         * The costs from each node to each landmark
+         */
+        private final float[] toLandmarks;
+
+        /**
+         * The class constructor
+         * @param fingerprint The fingerprint of the graph content
+         * @param fromLandmarks The costs from each landmark to each node
+         * @param toLandmarks The costs from each node to each landmark
+         */
+        private CostTables(long fingerprint, float[] fromLandmarks, float[] toLandmarks) {
+            this.fingerprint = fingerprint;
+            this.fromLandmarks = fromLandmarks;
+            this.toLandmarks = toLandmarks;
+        }
+    }
+
+    /**
+     * The class constructor
+     * @param graph The compact graph
+     * @param landmarks The landmark node indices
+     */
+    private LandmarkLowerBound(CompactGraph graph, int[] landmarks) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Selects landmarks spread over the graph by farthest-point selection on the distance values:
+     * the first landmark is the node farthest from the node closest to the centre of the graph,
+     * then each new landmark is the node farthest from all the already selected ones
+     * @param graph The compact graph
+     * @param landmarkCount The number of landmarks to select
+     * @return The landmark lower bounds, without any cost table yet
+     */
+    public static LandmarkLowerBound select(CompactGraph graph, int landmarkCount) {
+        int nodeCount = graph.getNodeCount();
+        SearchContext context = new SearchContext(nodeCount);
+
+        // starts from the node closest to the centre, which most probably belongs to the main part of the road network
+        double meanX = 0;
+        double meanY = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            meanX += graph.getCoordX(node) / nodeCount;
+            meanY += graph.getCoordY(node) / nodeCount;
+        }
+        int centre = 0;
+        double closest = Double.MAX_VALUE;
+        for (int node = 0; node < nodeCount; node++) {
+            double squaredDistance = Math.pow(graph.getCoordX(node) - meanX, 2) + Math.pow(graph.getCoordY(node) - meanY, 2);
+            if (squaredDistance < closest) {
+                closest = squaredDistance;
+                centre = node;
+            }
+        }
+
+        double[] distanceToLandmarks = new double[nodeCount];
+        Arrays.fill(distanceToLandmarks, Double.MAX_VALUE);
+        DijkstraSearch.searchAll(graph, context, centre, 1.0, Graph.WITH_INITIAL_DANGER_VALUE, false);
+        int next = farthestVisitedNode(context, nodeCount, null);
+
+        ArrayList<Integer> landmarks = new ArrayList<>(landmarkCount);
+        while (landmarks.size() < landmarkCount && next != -1) {
+            landmarks.add(next);
+            DijkstraSearch.searchAll(graph, context, next, 1.0, Graph.WITH_INITIAL_DANGER_VALUE, false);
+            for (int node = 0; node < nodeCount; node++) {
+                if (context.isVisited(node)) {
+                    distanceToLandmarks[node] = Math.min(distanceToLandmarks[node], context.getCost(node));
+                }
+            }
+            next = farthestVisitedNode(null, nodeCount, distanceToLandmarks);
+        }
+
+        return new LandmarkLowerBound(graph, landmarks.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Finds the node with the highest finite distance, either in a search context or in a distance array
+     * @param context The search context to read the distances from (or null to use the array)
+     * @param nodeCount The number of nodes
+     * @param distances The distance array (used if the context is null)
+     * @return The farthest node, or -1 if every reached node is at distance 0
+     */
+    private static int farthestVisitedNode(SearchContext context, int nodeCount, double[] distances) {
+        int farthest = -1;
+        double farthestDistance = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            double distance = context != null ? context.getCost(node) : distances[node];
+            if (distance != Double.MAX_VALUE && distance > farthestDistance) {
+                farthestDistance = distance;
+                farthest = node;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Checks if the cost tables of a linear combination are available
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return True if the tables are computed
+     */
+    public boolean hasTables(double distanceWeight, int useOfDangerValue) {
+        return tables.containsKey(Pair.with(distanceWeight, useOfDangerValue));
+    }
+
+    /**
+     * Computes the cost tables of a linear combination if they are not available yet
+     * (two complete searches per landmark, one on the successors and one on the predecessors)
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     */
+    public void precompute(double distanceWeight, int useOfDangerValue) {
+        getTables(distanceWeight, useOfDangerValue);
+    }
+
+    /**
+     * Gets the cost tables of a linear combination, computing them if needed
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The cost tables
+     */
+    private CostTables getTables(double distanceWeight, int useOfDangerValue) {
+        return tables.computeIfAbsent(Pair.with(distanceWeight, useOfDangerValue), key -> {
+            int nodeCount = graph.getNodeCount();
+            int landmarkCount = landmarks.length;
+            float[] fromLandmarks = new float[nodeCount * landmarkCount];
+            float[] toLandmarks = new float[nodeCount * landmarkCount];
+            Arrays.fill(fromLandmarks, Float.POSITIVE_INFINITY);
+            Arrays.fill(toLandmarks, Float.POSITIVE_INFINITY);
+
+            SearchContext context = new SearchContext(nodeCount);
+            for (int landmark = 0; landmark < landmarkCount; landmark++) {
+                DijkstraSearch.searchAll(graph, context, landmarks[landmark], distanceWeight, useOfDangerValue, false);
+                for (int node = 0; node < nodeCount; node++) {
+                    if (context.isVisited(node)) {
+                        fromLandmarks[node * landmarkCount + landmark] = (float) context.getCost(node);
+                    }
+                }
+                DijkstraSearch.searchAll(graph, context, landmarks[landmark], distanceWeight, useOfDangerValue, true);
+                for (int node = 0; node < nodeCount; node++) {
+                    if (context.isVisited(node)) {
+                        toLandmarks[node * landmarkCount + landmark] = (float) context.getCost(node);
+                    }
+                }
+            }
+            log.info("Tables des {} points de repère calculées pour le poids de distance {} (valeur de danger {})",
+                    landmarkCount, distanceWeight, useOfDangerValue);
+            return new CostTables(graph.getFingerprint(useOfDangerValue), fromLandmarks, toLandmarks);
+        });
+    }
+
+    /**
+     * Prepares the lower bounds of a search from a specific source to a specific sink,
+     * with the {@link LandmarkLowerBound#ACTIVE_LANDMARK_COUNT} landmarks giving the best bounds at the source
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The lower bounds on the cost from any node to the sink
+     */
+    public LowerBound towards(int source, int sink, double distanceWeight, int useOfDangerValue) {
+        CostTables costTables = getTables(distanceWeight, useOfDangerValue);
+        int landmarkCount = landmarks.length;
+
+        // sorts the landmarks by decreasing bound at the source
+        Integer[] order = new Integer[landmarkCount];
+        double[] sourceBounds = new double[landmarkCount];
+        for (int landmark = 0; landmark < landmarkCount; landmark++) {
+            order[landmark] = landmark;
+            sourceBounds[landmark] = bound(costTables, landmarkCount, landmark, source, sink);
+        }
+        Arrays.sort(order, (first, second) -> Double.compare(sourceBounds[second], sourceBounds[first]));
+        int[] activeLandmarks = new int[Math.min(ACTIVE_LANDMARK_COUNT, landmarkCount)];
+        for (int i = 0; i < activeLandmarks.length; i++) {
+            activeLandmarks[i] = order[i];
+        }
+
+        return node -> {
+            double best = 0.0;
+            for (int landmark : activeLandmarks) {
+                best = Math.max(best, bound(costTables, landmarkCount, landmark, node, sink));
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Computes the lower bound given by one landmark on the cost from a node to a sink
+     * @param costTables The cost tables of the linear combination
+     * @param landmarkCount The number of landmarks
+     * @param landmark The landmark position in {@link LandmarkLowerBound#landmarks}
+     * @param node The node index
+     * @param sink The sink index
+     * @return The lower bound (0 if the landmark gives no information)
+     */
+    private static double bound(CostTables costTables, int landmarkCount, int landmark, int node, int sink) {
+        double best = 0.0;
+        float nodeToLandmark = costTables.toLandmarks[node * landmarkCount + landmark];
+        float sinkToLandmark = costTables.toLandmarks[sink * landmarkCount + landmark];
+        if (nodeToLandmark != Float.POSITIVE_INFINITY && sinkToLandmark != Float.POSITIVE_INFINITY) {
+            best = nodeToLandmark - sinkToLandmark - (nodeToLandmark + sinkToLandmark) * FLOAT_ERROR;
+        }
+        float landmarkToNode = costTables.fromLandmarks[node * landmarkCount + landmark];
+        float landmarkToSink = costTables.fromLandmarks[sink * landmarkCount + landmark];
+        if (landmarkToNode != Float.POSITIVE_INFINITY && landmarkToSink != Float.POSITIVE_INFINITY) {
+            best = Math.max(best, landmarkToSink - landmarkToNode - (landmarkToSink + landmarkToNode) * FLOAT_ERROR);
+        }
+        return best;
+    }
+
+    /**
+     * Forgets the cost tables computed with the alternative danger values (to be called when they are modified)
+     */
+    public void invalidateAlternativeDangerValues() {
+        tables.keySet().removeIf(key -> key.getValue1() == Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+    }
+
+    /**
+     * Saves the landmarks and all the computed cost tables to a file
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(graph.getNodeCount());
+            out.writeInt(landmarks.length);
+            for (int landmark : landmarks) {
+                out.writeInt(landmark);
+            }
+            Map<Pair<Double, Integer>, CostTables> snapshot = Map.copyOf(tables);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<Pair<Double, Integer>, CostTables> entry : snapshot.entrySet()) {
+                out.writeDouble(entry.getKey().getValue0());
+                out.writeInt(entry.getKey().getValue1());
+                out.writeLong(entry.getValue().fingerprint);
+                writeFloats(out, entry.getValue().fromLandmarks);
+                writeFloats(out, entry.getValue().toLandmarks);
+            }
+        }
+    }
+
+    /**
+     * Loads landmarks and cost tables from a file, keeping only the tables computed on the current graph content
+     * (tables computed before a modification of the danger values are dropped)
+     * @param file The file
+     * @param graph The compact graph the tables must match
+     * @return The landmark lower bounds, or null if the file doesn't match the graph
+     * @throws IOException If the file can't be read
+     */
+    public static LandmarkLowerBound load(File file, CompactGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != graph.getNodeCount()) {
+                return null;
+            }
+            int[] landmarks = new int[in.readInt()];
+            for (int i = 0; i < landmarks.length; i++) {
+                landmarks[i] = in.readInt();
+                if (landmarks[i] < 0 || landmarks[i] >= graph.getNodeCount()) {
+                    return null;
+                }
+            }
+            LandmarkLowerBound landmarkLowerBound = new LandmarkLowerBound(graph, landmarks);
+            int tableCount = in.readInt();
+            long[] currentFingerprints = { graph.getFingerprint(Graph.WITH_ALTERNATIVE_DANGER_VALUE), graph.getFingerprint(Graph.WITH_INITIAL_DANGER_VALUE) };
+            for (int i = 0; i < tableCount; i++) {
+                double distanceWeight = in.readDouble();
+                int useOfDangerValue = in.readInt();
+                long fingerprint = in.readLong();
+                float[] fromLandmarks = readFloats(in, graph.getNodeCount() * landmarks.length);
+                float[] toLandmarks = readFloats(in, graph.getNodeCount() * landmarks.length);
+                if (fingerprint == currentFingerprints[useOfDangerValue - 1]) {
+                    landmarkLowerBound.tables.put(Pair.with(distanceWeight, useOfDangerValue),
+                            new CostTables(fingerprint, fromLandmarks, toLandmarks));
+                }
+            }
+            return landmarkLowerBound;
+        }
+    }
+
+    /**
+     * Writes a float array to a stream
+     * @param out The stream
+     * @param values The array
+     * @throws IOException If the stream can't be written
+     */
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES);
+        buffer.asFloatBuffer().put(values);
+        out.write(buffer.array());
+    }
+
+    /**
+     * Reads a float array from a stream
+     * @param in The stream
+     * @param length The length of the array
+     * @return The array
+     * @throws IOException If the stream can't be read
+     */
+    private static float[] readFloats(DataInputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length * Float.BYTES];
+        in.readFully(bytes);
+        float[] values = new float[length];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(values);
+        return values;
+    }
+}
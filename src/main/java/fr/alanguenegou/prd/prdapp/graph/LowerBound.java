@@ -0,0 +1,16 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+/**
+ * The interface of a lower bound on the cost from any node to the sink of a specific search,
+ * used to direct goal-directed searches (see {@link AStarSearch})
+ * @version 1.00
+ */
+public interface LowerBound {
+
+    /**
+     * Gets a lower bound on the cost of the shortest-path from a node to the sink
+     * @param node The node index
+     * @return A value that is lower than or equal to the real cost (must be 0 for the sink)
+     */
+    double toSink(int node);
+}
@@ -0,0 +1,154 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The class computing the shortest-paths between every source and every target of two node sets with the buckets of a
+ * {@link ContractionHierarchy}: one backward upward search per target leaves, in a bucket at each node it settles,
+ * the cost (distance and danger) from this node to the target; one forward upward search per source then finds the
+ * shortest-path to every target by scanning the buckets of the nodes it settles. Sources are searched in parallel
+ * @version 1.00
+ */
+public final class ManyToManySearch {
+
+    /**
+     * Private constructor of this utility class
+     */
+    private ManyToManySearch() {
+    }
+
+    /**
+     * Computes the labels (distance, danger) of the shortest-paths from every source to every target
+     * @param hierarchy The contraction hierarchy of the linear combination
+     * @param sources The source node indices
+     * @param targets The target node indices
+     * @param distances The distance of each shortest-path, filled at index source position * number of targets + target position
+     * @param dangers The danger of each shortest-path, filled as the distances (both 0 if the target can't be reached,
+     *                as for {@link ShortestPath#NOT_FOUND})
+     * @param statistics The statistics in which the settled nodes of both directions are recorded
+     */
+    public static void search(ContractionHierarchy hierarchy, int[] sources, int[] targets,
+                              double[] distances, double[] dangers, SearchStatistics statistics) {
+        int nodeCount = hierarchy.getNodeCount();
+
+        // backward upward searches: the bucket entries (node, target position, cost, distance, danger) of every target
+        int entryCount = 0;
+        int[] entryNodes = new int[Math.max(16, targets.length)];
+        int[] entryTargets = new int[entryNodes.length];
+        double[] entryCosts = new double[entryNodes.length];
+        double[] entryDistances = new double[entryNodes.length];
+        double[] entryDangers = new double[entryNodes.length];
+        SearchContext backward = new SearchContext(nodeCount);
+        for (int targetPosition = 0; targetPosition < targets.length; targetPosition++) {
+            backward.reset();
+            IndexedMinHeap queue = backward.getQueue();
+            backward.setCost(targets[targetPosition], 0.0, -1, 0.0, 0.0);
+            queue.push(targets[targetPosition], 0.0);
+            int settled = 0;
+            while (!queue.isEmpty()) {
+                int currentNode = queue.poll();
+                settled++;
+                if (entryCount == entryNodes.length) {
+                    int capacity = 2 * entryCount;
+                    entryNodes = Arrays.copyOf(entryNodes, capacity);
+                    entryTargets = Arrays.copyOf(entryTargets, capacity);
+                    entryCosts = Arrays.copyOf(entryCosts, capacity);
+                    entryDistances = Arrays.copyOf(entryDistances, capacity);
+                    entryDangers = Arrays.copyOf(entryDangers, capacity);
+                }
+                entryNodes[entryCount] = currentNode;
+                entryTargets[entryCount] = targetPosition;
+                entryCosts[entryCount] = backward.getCost(currentNode);
+                entryDistances[entryCount] = backward.getDistance(currentNode);
+                entryDangers[entryCount] = backward.getDanger(currentNode);
+                entryCount++;
+
+                for (int position = hierarchy.getFirstDownwardEdge(currentNode); position < hierarchy.getLastDownwardEdgeExclusive(currentNode); position++) {
+                    int edge = hierarchy.getDownwardEdge(position);
+                    relax(hierarchy, backward, currentNode, edge, hierarchy.getEdgeSource(edge));
+                }
+            }
+            statistics.recordSearch(0, settled);
+        }
+
+        // the bucket entries are grouped by node (counting sort), in compressed sparse row form
+        int[] firstEntry = new int[nodeCount + 1];
+        for (int entry = 0; entry < entryCount; entry++) {
+            firstEntry[entryNodes[entry] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            firstEntry[node + 1] += firstEntry[node];
+        }
+        int[] nextEntry = Arrays.copyOf(firstEntry, nodeCount);
+        int[] bucketTargets = new int[entryCount];
+        double[] bucketCosts = new double[entryCount];
+        double[] bucketDistances = new double[entryCount];
+        double[] bucketDangers = new double[entryCount];
+        for (int entry = 0; entry < entryCount; entry++) {
+            int position = nextEntry[entryNodes[entry]]++;
+            bucketTargets[position] = entryTargets[entry];
+            bucketCosts[position] = entryCosts[entry];
+            bucketDistances[position] = entryDistances[entry];
+            bucketDangers[position] = entryDangers[entry];
+        }
+
+        // forward upward searches, one row of the matrices per source
+        ThreadLocal<SearchContext> forwardContexts = ThreadLocal.withInitial(() -> new SearchContext(nodeCount));
+        IntStream.range(0, sources.length).parallel().forEach(sourcePosition -> {
+            SearchContext forward = forwardContexts.get();
+            forward.reset();
+            IndexedMinHeap queue = forward.getQueue();
+            forward.setCost(sources[sourcePosition], 0.0, -1, 0.0, 0.0);
+            queue.push(sources[sourcePosition], 0.0);
+
+            int rowStart = sourcePosition * targets.length;
+            double[] bestCosts = new double[targets.length];
+            Arrays.fill(bestCosts, Double.MAX_VALUE);
+            int settled = 0;
+            while (!queue.isEmpty()) {
+                int currentNode = queue.poll();
+                settled++;
+                double currentCost = forward.getCost(currentNode);
+                for (int position = firstEntry[currentNode]; position < firstEntry[currentNode + 1]; position++) {
+                    int targetPosition = bucketTargets[position];
+                    if (currentCost + bucketCosts[position] < bestCosts[targetPosition]) {
+                        bestCosts[targetPosition] = currentCost + bucketCosts[position];
+                        distances[rowStart + targetPosition] = forward.getDistance(currentNode) + bucketDistances[position];
+                        dangers[rowStart + targetPosition] = forward.getDanger(currentNode) + bucketDangers[position];
+                    }
+                }
+
+                for (int position = hierarchy.getFirstUpwardEdge(currentNode); position < hierarchy.getLastUpwardEdgeExclusive(currentNode); position++) {
+                    int edge = hierarchy.getUpwardEdge(position);
+                    relax(hierarchy, forward, currentNode, edge, hierarchy.getEdgeTarget(edge));
+                }
+            }
+            for (int targetPosition = 0; targetPosition < targets.length; targetPosition++) {
+                if (bestCosts[targetPosition] == Double.MAX_VALUE) {
+                    distances[rowStart + targetPosition] = ShortestPath.NOT_FOUND.getDistance();
+                    dangers[rowStart + targetPosition] = ShortestPath.NOT_FOUND.getDanger();
+                }
+            }
+            statistics.recordSearch(settled, 0);
+        });
+    }
+
+    /**
+     * Relaxes a hierarchy edge during an upward search
+     * @param hierarchy The contraction hierarchy
+     * @param context The search context
+     * @param currentNode The node being settled
+     * @param edge The hierarchy edge
+     * @param adjacentNode The other end of the edge
+     */
+    private static void relax(ContractionHierarchy hierarchy, SearchContext context, int currentNode, int edge, int adjacentNode) {
+        double newCost = context.getCost(currentNode) + hierarchy.getEdgeCost(edge);
+        if (newCost < context.getCost(adjacentNode)) {
+            context.setCost(adjacentNode, newCost, edge,
+                    context.getDistance(currentNode) + hierarchy.getEdgeDistance(edge),
+                    context.getDanger(currentNode) + hierarchy.getEdgeDanger(edge));
+            context.getQueue().push(adjacentNode, newCost);
+        }
+    }
+}
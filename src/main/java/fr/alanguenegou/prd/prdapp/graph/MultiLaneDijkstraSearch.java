@@ -0,0 +1,193 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class computing the shortest-paths of several linear combinations between two nodes of a {@link CompactGraph}
+ * in a single traversal: every node holds one cost per linear combination (a lane), and all the lanes of a node are
+ * relaxed together, so that the distance and danger of each edge are read once for all the linear combinations.
+ * The next node to scan is the one with the lowest cost over all its lanes; a node is scanned again whenever one of
+ * its lanes improves (label-correcting search), and the search stops once no queued node can improve any lane of the sink.
+ * The lanes are contiguous primitive arrays so that the JIT compiler can vectorize their relaxation.
+ * An instance keeps its arrays between searches and must only be used by one thread at a time
+ * @version 1.00
+ */
+public class MultiLaneDijkstraSearch {
+
+    /**
+     * The compact graph searched
+     */
+    @Getter
+    private final CompactGraph graph;
+
+    /**
+     * The weight of the distance value of each lane
+     */
+    private final double[] distanceWeights;
+
+    /**
+     * The weight of the danger value of each lane
+     */
+    private final double[] dangerWeights;
+
+    /**
+     * The number of lanes
+     */
+    private final int laneCount;
+
+    /**
+     * The cost of each lane of each node, at index node * laneCount + lane
+     */
+    private final double[] costs;
+
+    /**
+     * The total distance of the path of each lane of each node
+     */
+    private final double[] distances;
+
+    /**
+     * The total danger of the path of each lane of each node
+     */
+    private final double[] dangers;
+
+    /**
+     * The search during which the lanes of each node were last written
+     */
+    private final int[] visitedEpochs;
+
+    /**
+     * The current search
+     */
+    private int epoch;
+
+    /**
+     * The nodes to scan, by their lowest lane cost
+     */
+    private final IndexedMinHeap queue;
+
+    /**
+     * The class constructor
+     * @param graph The compact graph to search
+     * @param distanceWeights The weight of the distance value of each linear combination
+     */
+    public MultiLaneDijkstraSearch(CompactGraph graph, double[] distanceWeights) {
+        this.graph = graph;
+        this.distanceWeights = distanceWeights.clone();
+        this.laneCount = distanceWeights.length;
+        this.dangerWeights = new double[laneCount];
+        for (int lane = 0; lane < laneCount; lane++) {
+            dangerWeights[lane] = 1 - distanceWeights[lane];
+        }
+        costs = new double[graph.getNodeCount() * laneCount];
+        distances = new double[graph.getNodeCount() * laneCount];
+        dangers = new double[graph.getNodeCount() * laneCount];
+        visitedEpochs = new int[graph.getNodeCount()];
+        queue = new IndexedMinHeap(graph.getNodeCount());
+    }
+
+    /**
+     * Calculates the shortest-paths of every linear combination from a source node to a sink node
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param statistics The statistics in which the scanned nodes are recorded
+     * @return The (distance, danger) labels of each linear combination, in the order of the weights
+     * (both 0 if the sink can't be reached, as for {@link ShortestPath#NOT_FOUND})
+     */
+    public List<Pair<Double, Double>> search(int source, int sink, int useOfDangerValue, SearchStatistics statistics) {
+        epoch++;
+        queue.clear();
+        visit(source);
+        Arrays.fill(costs, source * laneCount, (source + 1) * laneCount, 0.0);
+        queue.push(source, 0.0);
+        int scanned = 0;
+
+        while (!queue.isEmpty()) {
+            // every lane of the sink is final once the queued nodes can't give any of them a lower cost
+            if (visitedEpochs[sink] == epoch && queue.peekKey() >= getHighestLaneCost(sink)) {
+                break;
+            }
+            int currentNode = queue.poll();
+            scanned++;
+
+            int currentBase = currentNode * laneCount;
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                int adjacentNode = graph.getEdgeTarget(edge);
+                double edgeDistance = graph.getEdgeDistance(edge);
+                double edgeDanger = graph.getEdgeDanger(edge, useOfDangerValue);
+                if (visitedEpochs[adjacentNode] != epoch) {
+                    visit(adjacentNode);
+                }
+
+                int adjacentBase = adjacentNode * laneCount;
+                double lowestImprovedCost = Double.MAX_VALUE;
+                for (int lane = 0; lane < laneCount; lane++) {
+                    double newCost = costs[currentBase + lane] + (distanceWeights[lane]*edgeDistance + dangerWeights[lane]*edgeDanger);
+                    if (newCost < costs[adjacentBase + lane]) {
+                        costs[adjacentBase + lane] = newCost;
+                        distances[adjacentBase + lane] = distances[currentBase + lane] + edgeDistance;
+                        dangers[adjacentBase + lane] = dangers[currentBase + lane] + edgeDanger;
+                        lowestImprovedCost = Math.min(lowestImprovedCost, newCost);
+                    }
+                }
+
+                // the node is queued (again) with the lowest cost over its lanes if one of them improved
+                if (lowestImprovedCost < Double.MAX_VALUE) {
+                    queue.push(adjacentNode, getLowestLaneCost(adjacentNode));
+                }
+            }
+        }
+        statistics.recordSearch(scanned, 0);
+
+        List<Pair<Double, Double>> labels = new ArrayList<>(laneCount);
+        for (int lane = 0; lane < laneCount; lane++) {
+            boolean reached = visitedEpochs[sink] == epoch && costs[sink * laneCount + lane] < Double.MAX_VALUE;
+            labels.add(reached
+                    ? Pair.with(distances[sink * laneCount + lane], dangers[sink * laneCount + lane])
+                    : Pair.with(ShortestPath.NOT_FOUND.getDistance(), ShortestPath.NOT_FOUND.getDanger()));
+        }
+        return labels;
+    }
+
+    /**
+     * Initializes the lanes of a node reached for the first time during the current search
+     * @param node The node index
+     */
+    private void visit(int node) {
+        visitedEpochs[node] = epoch;
+        Arrays.fill(costs, node * laneCount, (node + 1) * laneCount, Double.MAX_VALUE);
+        Arrays.fill(distances, node * laneCount, (node + 1) * laneCount, 0.0);
+        Arrays.fill(dangers, node * laneCount, (node + 1) * laneCount, 0.0);
+    }
+
+    /**
+     * Gets the lowest cost over the lanes of a node
+     * @param node The node index
+     * @return The lowest lane cost
+     */
+    private double getLowestLaneCost(int node) {
+        double lowestCost = Double.MAX_VALUE;
+        for (int lane = 0; lane < laneCount; lane++) {
+            lowestCost = Math.min(lowestCost, costs[node * laneCount + lane]);
+        }
+        return lowestCost;
+    }
+
+    /**
+     * Gets the highest cost over the lanes of a node
+     * @param node The node index
+     * @return The highest lane cost
+     */
+    private double getHighestLaneCost(int node) {
+        double highestCost = 0.0;
+        for (int lane = 0; lane < laneCount; lane++) {
+            highestCost = Math.max(highestCost, costs[node * laneCount + lane]);
+        }
+        return highestCost;
+    }
+}
@@ -24,6 +24,12 @@ public class Node {
     @Getter @Setter
     private long id;
 
+    /**
+     * The dense index of this node in its graph (from 0 to the number of nodes - 1), used by array-based algorithms
+     */
+    @Getter @Setter
+    private int index;
+
     /**
      * Coordinates X of this node
      */
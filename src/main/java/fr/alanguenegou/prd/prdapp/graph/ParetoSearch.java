@@ -0,0 +1,242 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import org.javatuples.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class computing the exact set of non-dominated (distance, danger) labels of the paths between two nodes of a
+ * {@link CompactGraph}, with a bi-objective label-setting search: labels are settled in lexicographic order of their
+ * (distance, danger) estimates, so that a label is dominated as soon as its danger isn't lower than the one of the last
+ * label settled at its node. The estimates add the exact distance and danger from each node to the sink, computed by
+ * two backward Dijkstra searches, which also prune the labels that can't beat the last label found at the sink.
+ * An instance keeps its arrays between searches and must only be used by one thread at a time
+ * @version 1.00
+ */
+public class ParetoSearch {
+
+    /**
+     * The initial capacity of the label arrays
+     */
+    private static final int INITIAL_LABEL_CAPACITY = 1024;
+
+    /**
+     * The compact graph searched
+     */
+    @Getter
+    private final CompactGraph graph;
+
+    /**
+     * The backward search giving the distance from every node to the sink
+     */
+    private final SearchContext distancesToSink;
+
+    /**
+     * The backward search giving the danger from every node to the sink
+     */
+    private final SearchContext dangersToSink;
+
+    /**
+     * The danger of the last label settled at each node (valid if the epoch of the node is the current one)
+     */
+    private final double[] settledDangers;
+
+    /**
+     * The search during which each node last got a settled label
+     */
+    private final int[] settledEpochs;
+
+    /**
+     * The current search
+     */
+    private int epoch;
+
+    /**
+     * The node of each label
+     */
+    private int[] labelNodes;
+
+    /**
+     * The distance from the source of each label
+     */
+    private double[] labelDistances;
+
+    /**
+     * The danger from the source of each label
+     */
+    private double[] labelDangers;
+
+    /**
+     * The number of labels of the current search
+     */
+    private int labelCount;
+
+    /**
+     * The binary heap of the labels to settle, ordered by their (distance, danger) estimates
+     */
+    private int[] heap;
+
+    /**
+     * The number of labels in the heap
+     */
+    private int heapSize;
+
+    /**
+     * The class constructor
+     * @param graph The compact graph to search
+     */
+    public ParetoSearch(CompactGraph graph) {
+        this.graph = graph;
+        distancesToSink = new SearchContext(graph.getNodeCount());
+        dangersToSink = new SearchContext(graph.getNodeCount());
+        settledDangers = new double[graph.getNodeCount()];
+        settledEpochs = new int[graph.getNodeCount()];
+        labelNodes = new int[INITIAL_LABEL_CAPACITY];
+        labelDistances = new double[INITIAL_LABEL_CAPACITY];
+        labelDangers = new double[INITIAL_LABEL_CAPACITY];
+        heap = new int[INITIAL_LABEL_CAPACITY];
+    }
+
+    /**
+     * Calculates the Pareto front of the paths from a source node to a sink node
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param statistics The statistics in which the settled labels are recorded
+     * @return The (distance, danger) labels of the front, by increasing distance and decreasing danger (empty if the sink can't be reached)
+     */
+    public List<Pair<Double, Double>> search(int source, int sink, int useOfDangerValue, SearchStatistics statistics) {
+        DijkstraSearch.searchAll(graph, distancesToSink, sink, 1.0, useOfDangerValue, true);
+        DijkstraSearch.searchAll(graph, dangersToSink, sink, 0.0, useOfDangerValue, true);
+        List<Pair<Double, Double>> front = new ArrayList<>();
+        if (!distancesToSink.isVisited(source)) {
+            statistics.recordSearch(0, 0);
+            return front;
+        }
+
+        epoch++;
+        labelCount = 0;
+        heapSize = 0;
+        push(source, 0.0, 0.0);
+        int settled = 0;
+
+        while (heapSize > 0) {
+            int label = poll();
+            int currentNode = labelNodes[label];
+            double currentDanger = labelDangers[label];
+
+            // dominated by a label settled at the same node, or unable to give a lower danger at the sink
+            if (isDominated(currentNode, currentDanger) || isDominated(sink, currentDanger + dangersToSink.getCost(currentNode))) {
+                continue;
+            }
+            settledDangers[currentNode] = currentDanger;
+            settledEpochs[currentNode] = epoch;
+            settled++;
+            if (currentNode == sink) {
+                front.add(Pair.with(labelDistances[label], currentDanger));
+                continue;
+            }
+
+            double currentDistance = labelDistances[label];
+            for (int edge = graph.getFirstEdge(currentNode); edge < graph.getLastEdgeExclusive(currentNode); edge++) {
+                int adjacentNode = graph.getEdgeTarget(edge);
+                double newDanger = currentDanger + graph.getEdgeDanger(edge, useOfDangerValue);
+                if (!distancesToSink.isVisited(adjacentNode) || isDominated(adjacentNode, newDanger)
+                        || isDominated(sink, newDanger + dangersToSink.getCost(adjacentNode))) {
+                    continue;
+                }
+                push(adjacentNode, currentDistance + graph.getEdgeDistance(edge), newDanger);
+            }
+        }
+        statistics.recordSearch(settled, 0);
+        return front;
+    }
+
+    /**
+     * Checks if a danger value is dominated at a node, that is not lower than the one of the last label settled there
+     * (settled labels having a lower or equal distance)
+     * @param node The node index
+     * @param danger The danger value
+     * @return True if a label with this danger would be dominated
+     */
+    private boolean isDominated(int node, double danger) {
+        return settledEpochs[node] == epoch && danger >= settledDangers[node];
+    }
+
+    /**
+     * Creates a label and adds it to the heap
+     * @param node The node of the label
+     * @param distance The distance from the source
+     * @param danger The danger from the source
+     */
+    private void push(int node, double distance, double danger) {
+        if (labelCount == labelNodes.length) {
+            labelNodes = Arrays.copyOf(labelNodes, 2 * labelCount);
+            labelDistances = Arrays.copyOf(labelDistances, 2 * labelCount);
+            labelDangers = Arrays.copyOf(labelDangers, 2 * labelCount);
+        }
+        int label = labelCount++;
+        labelNodes[label] = node;
+        labelDistances[label] = distance;
+        labelDangers[label] = danger;
+
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * heapSize);
+        }
+        int position = heapSize++;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isBefore(label, heap[parent])) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = label;
+    }
+
+    /**
+     * Removes the label with the lowest estimates from the heap
+     * @return The label
+     */
+    private int poll() {
+        int first = heap[0];
+        int last = heap[--heapSize];
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!isBefore(heap[child], last)) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = last;
+        return first;
+    }
+
+    /**
+     * Compares the (distance, danger) estimates of two labels in lexicographic order
+     * @param label The first label
+     * @param otherLabel The second label
+     * @return True if the first label must be settled before the second one
+     */
+    private boolean isBefore(int label, int otherLabel) {
+        double distance = labelDistances[label] + distancesToSink.getCost(labelNodes[label]);
+        double otherDistance = labelDistances[otherLabel] + distancesToSink.getCost(labelNodes[otherLabel]);
+        if (distance != otherDistance) {
+            return distance < otherDistance;
+        }
+        return labelDangers[label] + dangersToSink.getCost(labelNodes[label])
+                < labelDangers[otherLabel] + dangersToSink.getCost(labelNodes[otherLabel]);
+    }
+}
@@ -0,0 +1,196 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * The class holding the state of one shortest-path search (costs, predecessors, settled nodes and queue)
+ * in primitive arrays indexed by node index, so that the graph itself stays free of any search state.
+ * A context is reset in O(1) thanks to an epoch stamp: an entry is only valid if it was written during the current epoch.
+ * A context must not be shared between threads, but several contexts can search the same graph concurrently
+ * @version 1.00
+ */
+public class SearchContext {
+
+    /**
+     * The number of nodes this context can handle
+     */
+    @Getter
+    private final int capacity;
+
+    /**
+     * The cost from the source node to each node
+     */
+    private final double[] costs;
+
+    /**
+     * The edge through which each node has been reached with its current cost (-1 for the source node)
+     */
+    private final int[] predecessorEdges;
+
+    /**
+     * The total distance of the path through which each node has been reached
+     */
+    private final double[] distances;
+
+    /**
+     * The total danger of the path through which each node has been reached
+     */
+    private final double[] dangers;
+
+    /**
+     * The lower bound on the cost from each node to the sink, for goal-directed searches
+     */
+    private final double[] potentials;
+
+    /**
+     * The epoch during which the potential of each node was last written
+     */
+    private final int[] potentialEpochs;
+
+    /**
+     * The epoch during which the cost of each node was last written
+     */
+    private final int[] visitedEpochs;
+
+    /**
+     * The epoch during which each node was last settled
+     */
+    private final int[] settledEpochs;
+
+    /**
+     * The queue of reached but unsettled nodes
+     */
+    @Getter
+    private final IndexedMinHeap queue;
+
+    /**
+     * The current epoch (entries stamped with another epoch are considered unset)
+     */
+    private int epoch = 1;
+
+    /**
+     * The class constructor
+     * @param capacity The number of nodes of the graph that will be searched
+     */
+    public SearchContext(int capacity) {
+        this.capacity = capacity;
+        costs = new double[capacity];
+        predecessorEdges = new int[capacity];
+        distances = new double[capacity];
+        dangers = new double[capacity];
+        potentials = new double[capacity];
+        potentialEpochs = new int[capacity];
+        visitedEpochs = new int[capacity];
+        settledEpochs = new int[capacity];
+        queue = new IndexedMinHeap(capacity);
+    }
+
+    /**
+     * Prepares this context for a new search by forgetting every cost, predecessor and settled node
+     */
+    public void reset() {
+        queue.clear();
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            // stamps would become ambiguous after the overflow, so they are really cleared once in a while
+            Arrays.fill(visitedEpochs, 0);
+            Arrays.fill(settledEpochs, 0);
+            Arrays.fill(potentialEpochs, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Checks if a node has been reached during the current search
+     * @param node The node index
+     * @return True if the node has a cost
+     */
+    public boolean isVisited(int node) {
+        return visitedEpochs[node] == epoch;
+    }
+
+    /**
+     * Gets the current cost of a node
+     * @param node The node index
+     * @return The cost from the source node, or {@link Double#MAX_VALUE} if the node hasn't been reached
+     */
+    public double getCost(int node) {
+        return visitedEpochs[node] == epoch ? costs[node] : Double.MAX_VALUE;
+    }
+
+    /**
+     * Gets the edge through which a node has been reached
+     * @param node The node index (must have been reached during the current search)
+     * @return The edge index, or -1 for the source node
+     */
+    public int getPredecessorEdge(int node) {
+        return predecessorEdges[node];
+    }
+
+    /**
+     * Gets the total distance of the path through which a node has been reached
+     * @param node The node index (must have been reached during the current search)
+     * @return The total distance from the source node
+     */
+    public double getDistance(int node) {
+        return distances[node];
+    }
+
+    /**
+     * Gets the total danger of the path through which a node has been reached
+     * @param node The node index (must have been reached during the current search)
+     * @return The total danger from the source node
+     */
+    public double getDanger(int node) {
+        return dangers[node];
+    }
+
+    /**
+     * Sets the cost of a node, the edge through which it is reached and the totals of the path leading to it
+     * @param node The node index
+     * @param cost The cost from the source node
+     * @param predecessorEdge The edge index (-1 for the source node)
+     * @param distance The total distance from the source node
+     * @param danger The total danger from the source node
+     */
+    public void setCost(int node, double cost, int predecessorEdge, double distance, double danger) {
+        costs[node] = cost;
+        predecessorEdges[node] = predecessorEdge;
+        distances[node] = distance;
+        dangers[node] = danger;
+        visitedEpochs[node] = epoch;
+    }
+
+    /**
+     * Checks if a node has been settled during the current search (its cost is final)
+     * @param node The node index
+     * @return True if the node is settled
+     */
+    public boolean isSettled(int node) {
+        return settledEpochs[node] == epoch;
+    }
+
+    /**
+     * Marks a node as settled
+     * @param node The node index
+     */
+    public void settle(int node) {
+        settledEpochs[node] = epoch;
+    }
+
+    /**
+     * Gets the lower bound on the cost from a node to the sink, computing it only once per search
+     * @param node The node index
+     * @param lowerBound The lower bound of the current search
+     * @return The lower bound of the node
+     */
+    public double getPotential(int node, LowerBound lowerBound) {
+        if (potentialEpochs[node] != epoch) {
+            potentials[node] = lowerBound.toSink(node);
+            potentialEpochs[node] = epoch;
+        }
+        return potentials[node];
+    }
+}
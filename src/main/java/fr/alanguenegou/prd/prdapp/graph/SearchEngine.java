@@ -0,0 +1,607 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.javatuples.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * The class searching the compact form of a {@link Graph}: it selects the search mode of each shortest-path search
+ * and holds the preprocessing of every mode (lower bounds, contraction hierarchies, arc flags, hub labels), built when
+ * first needed. The preprocessing is dropped when the compact graph is built again, and the parts depending on the
+ * alternative danger values are updated when they change. Nodes are designated by their dense index (see {@link Node#getIndex()})
+ * @version 1.00
+ */
+public class SearchEngine {
+
+    /**
+     * The number of geographic cells of the arc flags
+     */
+    public static final int ARC_FLAGS_CELL_COUNT = 64;
+
+    /**
+     * A logger instance to log infos in the console
+     */
+    private final static Logger log = LoggerFactory.getLogger(SearchEngine.class);
+
+    /**
+     * The graph whose compact form is searched
+     */
+    private final Graph graph;
+
+    /**
+     * The search context of each thread searching the graph (see {@link SearchEngine#getSearchContext()})
+     */
+    private final ThreadLocal<SearchContext> searchContexts = new ThreadLocal<>();
+
+    /**
+     * The search context of each thread for the backward direction of bidirectional searches
+     */
+    private final ThreadLocal<SearchContext> backwardSearchContexts = new ThreadLocal<>();
+
+    /**
+     * The bi-objective search of each thread (see {@link SearchEngine#calculateParetoFront(int, int, int)})
+     */
+    private final ThreadLocal<ParetoSearch> paretoSearches = new ThreadLocal<>();
+
+    /**
+     * The multi-lane search of each thread, with one lane per weight of {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}
+     */
+    private final ThreadLocal<MultiLaneDijkstraSearch> multiLaneSearches = new ThreadLocal<>();
+
+    /**
+     * Statistics on the searches done on the compact form of the graph (settled nodes per direction)
+     */
+    @Getter
+    private final SearchStatistics searchStatistics = new SearchStatistics();
+
+    /**
+     * The parallel search of the costs from a source node to every node, with one worker per processor
+     * (its bucket width can be set for each linear combination, and its workers are only started by the first large search)
+     */
+    @Getter
+    private final DeltaSteppingSearch deltaSteppingSearch = new DeltaSteppingSearch(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The default search mode of the label computations ({@link Graph#HEAP_SEARCH}, {@link Graph#BIDIRECTIONAL_SEARCH},
+     * {@link Graph#A_STAR_SEARCH}, {@link Graph#ALT_SEARCH}, {@link Graph#CH_SEARCH}, {@link Graph#CCH_SEARCH},
+     * {@link Graph#ARC_FLAGS_SEARCH}, {@link Graph#MULTI_LANE_SEARCH} or {@link Graph#LINEAR_SCAN_SEARCH})
+     */
+    @Getter @Setter
+    private int searchMode = Graph.HEAP_SEARCH;
+
+    /**
+     * The geodesic lower bounds used by {@link Graph#A_STAR_SEARCH}, built with the compact graph (see {@link SearchEngine#reset(CompactGraph)})
+     */
+    private volatile GeodesicLowerBound geodesicLowerBound;
+
+    /**
+     * The landmark lower bounds used by {@link Graph#ALT_SEARCH} (null until first needed or when the compact graph is rebuilt)
+     */
+    private LandmarkLowerBound landmarkLowerBound;
+
+    /**
+     * The file the landmarks and their cost tables are loaded from and saved to (null to keep them in memory only)
+     */
+    @Getter @Setter
+    private File landmarkFile;
+
+    /**
+     * The contraction hierarchies used by {@link Graph#CH_SEARCH}, by (distance weight, use of danger value)
+     */
+    private final Map<Pair<Double, Integer>, ContractionHierarchy> contractionHierarchies = new ConcurrentHashMap<>();
+
+    /**
+     * The customizable contraction hierarchy used by {@link Graph#CCH_SEARCH} (null until first needed or when the compact graph is rebuilt)
+     */
+    private CustomizableContractionHierarchy customizableContractionHierarchy;
+
+    /**
+     * The customizations of {@link SearchEngine#customizableContractionHierarchy}, by (distance weight, use of danger value)
+     */
+    private final Map<Pair<Double, Integer>, CustomizedHierarchy> customizedHierarchies = new ConcurrentHashMap<>();
+
+    /**
+     * The geographic cells of the arc flags (null until first needed or when the compact graph is rebuilt)
+     */
+    private CellPartition cellPartition;
+
+    /**
+     * The arc flags used by {@link Graph#ARC_FLAGS_SEARCH}, by (distance weight, use of danger value)
+     */
+    private final Map<Pair<Double, Integer>, ArcFlags> arcFlags = new ConcurrentHashMap<>();
+
+    /**
+     * The hub labels of the extreme linear combinations with the initial danger values, by distance weight
+     * (filled by {@link SearchEngine#prepareHubLabels()})
+     */
+    private final Map<Double, HubLabels> hubLabels = new ConcurrentHashMap<>();
+
+    /**
+     * The directory the hub labels files are loaded from and written to
+     */
+    @Getter @Setter
+    private File hubLabelDirectory = new File(".");
+
+    /**
+     * The class constructor
+     * @param graph The graph whose compact form is searched
+     */
+    SearchEngine(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Drops the preprocessing of the previous compact form of the graph and builds the geodesic lower bounds of a new one
+     * (called by {@link Graph#freeze()} before the new compact form is published)
+     * @param compact The new compact form of the graph
+     */
+    synchronized void reset(CompactGraph compact) {
+        // the geodesic lower bounds are cheap, so they are built at once rather than lazily by concurrent searches
+        geodesicLowerBound = new GeodesicLowerBound(compact);
+        landmarkLowerBound = null;
+        contractionHierarchies.clear();
+        customizableContractionHierarchy = null;
+        customizedHierarchies.clear();
+        cellPartition = null;
+        arcFlags.clear();
+        hubLabels.clear();
+    }
+
+    /**
+     * Applies new alternative danger values to some edges of the compact form of the graph, and updates the preprocessing
+     * depending on them: the stale cells of the arc flags are computed again, the lower bounds are told about the change
+     * and the hierarchies of the alternative danger values are dropped (called by {@link Graph#modifyGraph(HashMap)})
+     * @param compact The compact form of the graph
+     * @param edges The modified edges
+     * @param newDangers The new alternative danger value of each modified edge
+     * @return The alternative danger value of each modified edge before the modification
+     */
+    double[] modifyAlternativeDangers(CompactGraph compact, int[] edges, double[] newDangers) {
+        // the arc flags need the current danger values to find the cells made stale by the modifications
+        Map<ArcFlags, Long> staleCells = findStaleArcFlagCells(edges, newDangers);
+
+        double[] previousDangers = new double[edges.length];
+        for (int position = 0; position < edges.length; position++) {
+            previousDangers[position] = compact.getEdgeDanger(edges[position], Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+            compact.setAlternativeDanger(edges[position], newDangers[position]);
+        }
+        if (geodesicLowerBound != null) {
+            geodesicLowerBound.invalidateAlternativeDangerValues();
+        }
+        synchronized (this) {
+            if (landmarkLowerBound != null) {
+                landmarkLowerBound.invalidateAlternativeDangerValues();
+            }
+        }
+        contractionHierarchies.keySet().removeIf(key -> key.getValue1() == Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+        customizedHierarchies.keySet().removeIf(key -> key.getValue1() == Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+        staleCells.forEach(ArcFlags::recomputeCells);
+        return previousDangers;
+    }
+
+    /**
+     * Finds the cells of the arc flags of the alternative danger values that won't be valid anymore after some modifications
+     * (see {@link ArcFlags#findStaleCells(Map)})
+     * @param edges The modified edges
+     * @param newDangers The new alternative danger value of each modified edge
+     * @return The stale cells of each arc flags instance, one bit per cell
+     */
+    private Map<ArcFlags, Long> findStaleArcFlagCells(int[] edges, double[] newDangers) {
+        Map<ArcFlags, Long> staleCells = new HashMap<>();
+        if (arcFlags.isEmpty()) {
+            return staleCells;
+        }
+        Map<Integer, Double> newAlternativeDangers = new HashMap<>();
+        for (int position = 0; position < edges.length; position++) {
+            newAlternativeDangers.put(edges[position], newDangers[position]);
+        }
+        for (ArcFlags flags : arcFlags.values()) {
+            long cells = flags.findStaleCells(newAlternativeDangers);
+            if (cells != 0L) {
+                staleCells.put(flags, cells);
+            }
+        }
+        return staleCells;
+    }
+
+    /**
+     * Gets the geodesic lower bounds on the costs of the compact form of the graph, building it if needed
+     * @return The geodesic lower bounds
+     */
+    public GeodesicLowerBound getGeodesicLowerBound() {
+        // the lower bounds are published before the compact graph they belong to
+        graph.getCompactGraph();
+        return geodesicLowerBound;
+    }
+
+    /**
+     * Gets the landmark lower bounds on the costs of the compact form of the graph, loading them from
+     * {@link SearchEngine#landmarkFile} if it matches the graph or selecting new landmarks otherwise
+     * @return The landmark lower bounds
+     */
+    public LandmarkLowerBound getLandmarkLowerBound() {
+        CompactGraph compact = graph.getCompactGraph();
+        synchronized (this) {
+            if (landmarkLowerBound == null) {
+                if (landmarkFile != null && landmarkFile.isFile()) {
+                    try {
+                        landmarkLowerBound = LandmarkLowerBound.load(landmarkFile, compact);
+                    } catch (IOException e) {
+                        log.warn("Lecture du fichier de points de repère {} impossible : {}", landmarkFile, e.getMessage());
+                    }
+                }
+                if (landmarkLowerBound == null) {
+                    landmarkLowerBound = LandmarkLowerBound.select(compact, LandmarkLowerBound.DEFAULT_LANDMARK_COUNT);
+                }
+            }
+            return landmarkLowerBound;
+        }
+    }
+
+    /**
+     * Gets the landmark lower bounds of a linear combination, computing their cost tables if needed
+     * (and then saving them to {@link SearchEngine#landmarkFile})
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The landmark lower bounds, with the cost tables of the linear combination computed
+     */
+    private LandmarkLowerBound getLandmarkLowerBound(double distanceWeight, int useOfDangerValue) {
+        LandmarkLowerBound landmarks = getLandmarkLowerBound();
+        synchronized (this) {
+            if (!landmarks.hasTables(distanceWeight, useOfDangerValue)) {
+                landmarks.precompute(distanceWeight, useOfDangerValue);
+                // alternative danger values change with every profile, so only the tables of the initial ones are worth saving
+                if (landmarkFile != null && useOfDangerValue == Graph.WITH_INITIAL_DANGER_VALUE) {
+                    try {
+                        landmarks.save(landmarkFile);
+                    } catch (IOException e) {
+                        log.warn("Écriture du fichier de points de repère {} impossible : {}", landmarkFile, e.getMessage());
+                    }
+                }
+            }
+            return landmarks;
+        }
+    }
+
+    /**
+     * Gets the contraction hierarchy of a linear combination, building it if needed
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The contraction hierarchy
+     */
+    public ContractionHierarchy getContractionHierarchy(double distanceWeight, int useOfDangerValue) {
+        CompactGraph compact = graph.getCompactGraph();
+        return contractionHierarchies.computeIfAbsent(Pair.with(distanceWeight, useOfDangerValue), key -> {
+            long startTime = System.currentTimeMillis();
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(compact, distanceWeight, useOfDangerValue);
+            log.info("Hiérarchie de contraction construite pour le poids de distance {} (valeur de danger {}) : {} raccourcis, {} ms",
+                    distanceWeight, useOfDangerValue, hierarchy.getShortcutCount(), System.currentTimeMillis() - startTime);
+            return hierarchy;
+        });
+    }
+
+    /**
+     * Builds the contraction hierarchies of all the linear combinations of {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     */
+    public void prepareContractionHierarchies(int useOfDangerValue) {
+        for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+            getContractionHierarchy(distanceWeight, useOfDangerValue);
+        }
+    }
+
+    /**
+     * Gets the customizable contraction hierarchy of the graph, computing its contraction order and arcs if needed
+     * @return The metric-independent customizable contraction hierarchy
+     */
+    public CustomizableContractionHierarchy getCustomizableContractionHierarchy() {
+        CompactGraph compact = graph.getCompactGraph();
+        synchronized (this) {
+            if (customizableContractionHierarchy == null) {
+                long startTime = System.currentTimeMillis();
+                customizableContractionHierarchy = new CustomizableContractionHierarchy(compact);
+                log.info("Hiérarchie de contraction personnalisable construite : {} arcs, {} ms",
+                        customizableContractionHierarchy.getArcCount(), System.currentTimeMillis() - startTime);
+            }
+            return customizableContractionHierarchy;
+        }
+    }
+
+    /**
+     * Gets the customizable contraction hierarchy customized for a linear combination, customizing it if needed
+     * (the customizations with the alternative danger values are dropped by {@link Graph#modifyGraph(HashMap)})
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The customized hierarchy
+     */
+    public CustomizedHierarchy getCustomizedHierarchy(double distanceWeight, int useOfDangerValue) {
+        CustomizableContractionHierarchy hierarchy = getCustomizableContractionHierarchy();
+        return customizedHierarchies.computeIfAbsent(Pair.with(distanceWeight, useOfDangerValue),
+                key -> hierarchy.customize(distanceWeight, useOfDangerValue));
+    }
+
+    /**
+     * Gets the arc flags of a linear combination, computing them if needed (and the geographic cells they rely on)
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The arc flags
+     */
+    public ArcFlags getArcFlags(double distanceWeight, int useOfDangerValue) {
+        CompactGraph compact = graph.getCompactGraph();
+        CellPartition partition;
+        synchronized (this) {
+            if (cellPartition == null) {
+                cellPartition = new CellPartition(compact, ARC_FLAGS_CELL_COUNT);
+            }
+            partition = cellPartition;
+        }
+        return arcFlags.computeIfAbsent(Pair.with(distanceWeight, useOfDangerValue), key -> {
+            long startTime = System.currentTimeMillis();
+            ArcFlags flags = new ArcFlags(compact, partition, distanceWeight, useOfDangerValue);
+            log.info("Drapeaux d'arcs calculés pour le poids de distance {} (valeur de danger {}) : {} ms",
+                    distanceWeight, useOfDangerValue, System.currentTimeMillis() - startTime);
+            return flags;
+        });
+    }
+
+    /**
+     * Loads or computes the hub labels of the extreme linear combinations (first and last weights of
+     * {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}) with the initial danger values, one memory-mapped file per weight
+     * in {@link SearchEngine#hubLabelDirectory}. A file computed on another graph is recomputed from a contraction hierarchy
+     */
+    public void prepareHubLabels() {
+        CompactGraph compact = graph.getCompactGraph();
+        double[] extremeDistanceWeights = {
+                Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[0],
+                Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS.length - 1] };
+        for (double distanceWeight : extremeDistanceWeights) {
+            File file = new File(hubLabelDirectory, "hub_labels_" + distanceWeight + ".bin");
+            try {
+                HubLabels labels = file.isFile() ? HubLabels.open(file, compact, distanceWeight, Graph.WITH_INITIAL_DANGER_VALUE) : null;
+                if (labels == null) {
+                    long startTime = System.currentTimeMillis();
+                    labels = HubLabels.build(getContractionHierarchy(distanceWeight, Graph.WITH_INITIAL_DANGER_VALUE), file);
+                    log.info("Étiquettes de hubs calculées pour le poids de distance {} : {} ms",
+                            distanceWeight, System.currentTimeMillis() - startTime);
+                }
+                hubLabels.put(distanceWeight, labels);
+            } catch (IOException e) {
+                log.warn("Impossible d'utiliser le fichier d'étiquettes de hubs {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Checks if the labels of the extreme linear combinations with the initial danger values are answered by hub labels
+     * (see {@link SearchEngine#prepareHubLabels()})
+     * @return True if hub labels are loaded
+     */
+    public boolean hasHubLabels() {
+        return !hubLabels.isEmpty();
+    }
+
+    /**
+     * Gets the search context of the calling thread, so that concurrent searches never share their state
+     * @return A search context sized for the compact form of the graph
+     */
+    public SearchContext getSearchContext() {
+        return getSearchContext(searchContexts);
+    }
+
+    /**
+     * Gets the search context of the calling thread for the backward direction of bidirectional searches
+     * @return A search context sized for the compact form of the graph
+     */
+    public SearchContext getBackwardSearchContext() {
+        return getSearchContext(backwardSearchContexts);
+    }
+
+    /**
+     * Gets the search context of the calling thread from a thread-local holder, creating it if needed
+     * @param holder The thread-local holder
+     * @return A search context sized for the compact form of the graph
+     */
+    private SearchContext getSearchContext(ThreadLocal<SearchContext> holder) {
+        int nodeCount = graph.getCompactGraph().getNodeCount();
+        SearchContext context = holder.get();
+        if (context == null || context.getCapacity() != nodeCount) {
+            context = new SearchContext(nodeCount);
+            holder.set(context);
+        }
+        return context;
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node, with a specific search mode
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param searchMode The search mode ({@link Graph#HEAP_SEARCH}, {@link Graph#BIDIRECTIONAL_SEARCH}, {@link Graph#A_STAR_SEARCH},
+     *                   {@link Graph#ALT_SEARCH}, {@link Graph#CH_SEARCH}, {@link Graph#CCH_SEARCH} or {@link Graph#ARC_FLAGS_SEARCH},
+     *                   a {@link Graph#MULTI_LANE_SEARCH} of a single linear combination being a {@link Graph#HEAP_SEARCH})
+     * @return The shortest-path with its node indices, cost, distance and danger values
+     */
+    public ShortestPath search(int source, int sink, double distanceWeight, int useOfDangerValue, int searchMode) {
+        CompactGraph compact = graph.getCompactGraph();
+        SearchContext context = getSearchContext();
+        switch (searchMode) {
+            case Graph.HEAP_SEARCH:
+            case Graph.MULTI_LANE_SEARCH:
+                DijkstraSearch.search(compact, context, source, sink, distanceWeight, useOfDangerValue, searchStatistics);
+                return ShortestPath.fromSearchContext(compact, context, source, sink);
+            case Graph.BIDIRECTIONAL_SEARCH:
+                return BidirectionalDijkstraSearch.search(compact, context, getBackwardSearchContext(), source, sink,
+                        distanceWeight, useOfDangerValue, searchStatistics);
+            case Graph.A_STAR_SEARCH:
+                LowerBound lowerBound = getGeodesicLowerBound().towards(sink, distanceWeight, useOfDangerValue);
+                return AStarSearch.search(compact, context, source, sink, distanceWeight, useOfDangerValue, lowerBound, searchStatistics);
+            case Graph.ALT_SEARCH:
+                LowerBound landmarkBound = getLandmarkLowerBound(distanceWeight, useOfDangerValue)
+                        .towards(source, sink, distanceWeight, useOfDangerValue);
+                return AStarSearch.search(compact, context, source, sink, distanceWeight, useOfDangerValue, landmarkBound, searchStatistics);
+            case Graph.CH_SEARCH:
+                return getContractionHierarchy(distanceWeight, useOfDangerValue)
+                        .search(context, getBackwardSearchContext(), source, sink, searchStatistics);
+            case Graph.CCH_SEARCH:
+                return getCustomizedHierarchy(distanceWeight, useOfDangerValue)
+                        .search(context, getBackwardSearchContext(), source, sink, searchStatistics);
+            case Graph.ARC_FLAGS_SEARCH:
+                return getArcFlags(distanceWeight, useOfDangerValue).search(context, source, sink, searchStatistics);
+            default:
+                throw new IllegalArgumentException("Mode de recherche non supporté sur la forme compacte du graphe : " + searchMode);
+        }
+    }
+
+    /**
+     * Calculates the shortest-path from a source node to a sink node with a Dijkstra search that doesn't explore the nodes
+     * beyond some limits (see {@link SearchLimits}). If the path found can't be proven cheaper than every path through
+     * a node left out (the cost of the left out node plus its geodesic lower bound to the sink), the search is done again
+     * without limits, which is recorded in the {@link SearchEngine#searchStatistics}
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used for the shortest-path calculation
+     * @param limits The limits of the search
+     * @return The shortest-path with its node indices, cost, distance and danger values (with the same cost as the one of a search without limits)
+     */
+    public ShortestPath searchWithinLimits(int source, int sink, double distanceWeight, int useOfDangerValue, SearchLimits limits) {
+        CompactGraph compact = graph.getCompactGraph();
+        SearchContext context = getSearchContext();
+        GeodesicLowerBound geodesicBound = getGeodesicLowerBound();
+
+        IntPredicate corridor = node -> true;
+        if (limits.hasCorridor()) {
+            double corridorLength = limits.getCorridorLength(geodesicBound.getGeodesicDistance(source, sink));
+            corridor = node -> geodesicBound.getGeodesicDistance(node, source) + geodesicBound.getGeodesicDistance(node, sink) <= corridorLength;
+        }
+        double prunedBound = DijkstraSearch.searchWithinLimits(compact, context, source, sink, distanceWeight, useOfDangerValue,
+                limits.getCostCap(), corridor, geodesicBound.towards(sink, distanceWeight, useOfDangerValue), searchStatistics);
+        double cost = context.isSettled(sink) ? context.getCost(sink) : Double.MAX_VALUE;
+
+        // a path left out could be cheaper than the one found (or the sink was only reachable through the left out nodes)
+        boolean retried = prunedBound != Double.MAX_VALUE && cost >= prunedBound;
+        searchStatistics.recordBoundedSearch(retried);
+        if (retried) {
+            log.debug("Limites trop strictes entre les noeuds {} et {} pour le poids de distance {}, recherche refaite sans limites",
+                    compact.getNodeId(source), compact.getNodeId(sink), distanceWeight);
+            return search(source, sink, distanceWeight, useOfDangerValue, Graph.HEAP_SEARCH);
+        }
+        return ShortestPath.fromSearchContext(compact, context, source, sink);
+    }
+
+    /**
+     * Computes the labels (distance, danger) of a shortest-path for one linear combination, answered by the hub labels
+     * of the linear combination when they are prepared
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @param searchMode The search mode (see {@link SearchEngine#search(int, int, double, int, int)})
+     * @return The distance and danger values of the shortest-path
+     */
+    public Pair<Double, Double> calculateLabel(int source, int sink, double distanceWeight, int useOfDangerValue, int searchMode) {
+        // the hub labels, when prepared, answer the extreme linear combinations with the initial danger values
+        HubLabels hubLabelsOfWeight = useOfDangerValue == Graph.WITH_INITIAL_DANGER_VALUE ? hubLabels.get(distanceWeight) : null;
+        if (hubLabelsOfWeight != null) {
+            return hubLabelsOfWeight.getLabel(source, sink);
+        }
+        // the distance and danger totals are accumulated by the search itself
+        ShortestPath shortestPath = search(source, sink, distanceWeight, useOfDangerValue, searchMode);
+        return Pair.with(shortestPath.getDistance(), shortestPath.getDanger());
+    }
+
+    /**
+     * Computes the labels (distance, danger) of a shortest-path for all the linear combinations of
+     * {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS} at once, with a search relaxing one lane per linear combination
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The label of each linear combination, in the order of the weights
+     */
+    public List<Pair<Double, Double>> calculateMultiLaneLabels(int source, int sink, int useOfDangerValue) {
+        CompactGraph compact = graph.getCompactGraph();
+        MultiLaneDijkstraSearch multiLaneSearch = multiLaneSearches.get();
+        if (multiLaneSearch == null || multiLaneSearch.getGraph() != compact) {
+            multiLaneSearch = new MultiLaneDijkstraSearch(compact, Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS);
+            multiLaneSearches.set(multiLaneSearch);
+        }
+        return multiLaneSearch.search(source, sink, useOfDangerValue, searchStatistics);
+    }
+
+    /**
+     * Computes the exact Pareto front of the (distance, danger) labels of the paths between two nodes
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The non-dominated labels (distance, danger), by increasing distance and decreasing danger (empty if the sink can't be reached)
+     */
+    public List<Pair<Double, Double>> calculateParetoFront(int source, int sink, int useOfDangerValue) {
+        CompactGraph compact = graph.getCompactGraph();
+        ParetoSearch paretoSearch = paretoSearches.get();
+        if (paretoSearch == null || paretoSearch.getGraph() != compact) {
+            paretoSearch = new ParetoSearch(compact);
+            paretoSearches.set(paretoSearch);
+        }
+        return paretoSearch.search(source, sink, useOfDangerValue, searchStatistics);
+    }
+
+    /**
+     * Computes the labels (distance, danger) of the shortest-paths between every origin and every destination, for all the
+     * linear combinations of {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}, with the buckets of their contraction hierarchies
+     * (built if needed)
+     * @param sources The origin node indices (without duplicates)
+     * @param targets The destination node indices (without duplicates)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The label matrices, one per linear combination
+     */
+    public LabelMatrix calculateLabelMatrix(int[] sources, int[] targets, int useOfDangerValue) {
+        CompactGraph compact = graph.getCompactGraph();
+        long[] originIds = new long[sources.length];
+        for (int position = 0; position < sources.length; position++) {
+            originIds[position] = compact.getNodeId(sources[position]);
+        }
+        long[] destinationIds = new long[targets.length];
+        for (int position = 0; position < targets.length; position++) {
+            destinationIds[position] = compact.getNodeId(targets[position]);
+        }
+        LabelMatrix matrix = new LabelMatrix(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS, useOfDangerValue, originIds, destinationIds);
+
+        for (int weightIndex = 0; weightIndex < Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS.length; weightIndex++) {
+            long startTime = System.currentTimeMillis();
+            double distanceWeight = Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS[weightIndex];
+            ContractionHierarchy hierarchy = getContractionHierarchy(distanceWeight, useOfDangerValue);
+            ManyToManySearch.search(hierarchy, sources, targets, matrix.getDistances(weightIndex), matrix.getDangers(weightIndex), searchStatistics);
+            log.info("Matrice d'étiquettes {} x {} calculée pour le poids de distance {} : {} ms",
+                    sources.length, targets.length, distanceWeight, System.currentTimeMillis() - startTime);
+        }
+        return matrix;
+    }
+
+    /**
+     * Computes the costs of the shortest-paths from a source node to every node of the graph, the relaxations being shared
+     * between several workers (see {@link DeltaSteppingSearch})
+     * @param source The source node index
+     * @param distanceWeight The attributed distance weight in the linear combination (distance, danger)
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The cost of each node, by node index, {@link Double#MAX_VALUE} for the nodes that can't be reached
+     */
+    public double[] calculateCostsFromSource(int source, double distanceWeight, int useOfDangerValue) {
+        long startTime = System.currentTimeMillis();
+        CompactGraph compact = graph.getCompactGraph();
+        double[] costs = deltaSteppingSearch.search(compact, source, distanceWeight, useOfDangerValue, searchStatistics);
+        log.debug("Coûts depuis le noeud {} calculés pour le poids de distance {} : {} ms",
+                compact.getNodeId(source), distanceWeight, System.currentTimeMillis() - startTime);
+        return costs;
+    }
+}
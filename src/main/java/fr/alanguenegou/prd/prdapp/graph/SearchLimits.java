@@ -0,0 +1,75 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+
+/**
+ * The class modelling the optional limits of a point-to-point search (see
+ * {@link Graph#searchShortestPathWithinLimits(Node, Node, double, int, SearchLimits)}): a cap on the cost of the
+ * explored paths, such as the cost of a known path between the same nodes, and a corridor, the ellipse whose foci are
+ * the starting and ending nodes. The nodes beyond the limits are not explored; if the path found can't be proven
+ * as cheap as the pruned ones, the search is done again without limits
+ * @version 1.00
+ */
+public class SearchLimits {
+
+    /**
+     * No limits at all
+     */
+    public static final SearchLimits NONE = new SearchLimits(Double.MAX_VALUE, Double.POSITIVE_INFINITY);
+
+    /**
+     * The relative margin added to a cost cap computed from a known path, as its cost can be rounded differently from the
+     * cost of the same path summed edge by edge
+     */
+    public static final double COST_CAP_TOLERANCE = 1e-9;
+
+    /**
+     * The width added to every corridor, in metres, so that the corridors of short paths still hold their side streets
+     */
+    public static final double CORRIDOR_MARGIN = 200.0;
+
+    /**
+     * The highest cost of an explored path ({@link Double#MAX_VALUE} for no cap)
+     */
+    @Getter
+    private final double costCap;
+
+    /**
+     * The size of the corridor: a node is in it if the sum of its geodesic distances to the starting and ending nodes
+     * is at most this ratio times their geodesic distance, plus {@link SearchLimits#CORRIDOR_MARGIN}
+     * ({@link Double#POSITIVE_INFINITY} for no corridor)
+     */
+    @Getter
+    private final double detourRatio;
+
+    /**
+     * The class constructor
+     * @param costCap The highest cost of an explored path ({@link Double#MAX_VALUE} for no cap)
+     * @param detourRatio The size of the corridor, at least 1 ({@link Double#POSITIVE_INFINITY} for no corridor)
+     * @throws IllegalArgumentException If the cap is negative or the ratio lower than 1
+     */
+    public SearchLimits(double costCap, double detourRatio) {
+        if (!(costCap >= 0.0) || !(detourRatio >= 1.0)) {
+            throw new IllegalArgumentException("Limites de recherche invalides : coût maximal " + costCap + ", rapport de détour " + detourRatio);
+        }
+        this.costCap = costCap;
+        this.detourRatio = detourRatio;
+    }
+
+    /**
+     * Checks if these limits have a corridor
+     * @return True if the nodes are limited to a corridor
+     */
+    public boolean hasCorridor() {
+        return detourRatio != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Gets the sum of the geodesic distances to the ends of a path request that a node of the corridor can't exceed
+     * @param endsDistance The geodesic distance between the starting and ending nodes, in metres
+     * @return The length of the corridor, in metres
+     */
+    public double getCorridorLength(double endsDistance) {
+        return detourRatio * endsDistance + CORRIDOR_MARGIN;
+    }
+}
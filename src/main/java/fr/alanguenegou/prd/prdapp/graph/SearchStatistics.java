@@ -0,0 +1,134 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class accumulating statistics on the shortest-path searches done on a graph
+ * (number of searches and of nodes settled by the forward and backward directions, searches done within limits).
+ * It can be updated concurrently by several searching threads
+ * @version 1.00
+ */
+public class SearchStatistics {
+
+    /**
+     * The number of recorded searches
+     */
+    private final LongAdder searches = new LongAdder();
+
+    /**
+     * The number of nodes settled by the forward direction of the searches
+     */
+    private final LongAdder forwardSettledNodes = new LongAdder();
+
+    /**
+     * The number of nodes settled by the backward direction of the searches
+     */
+    private final LongAdder backwardSettledNodes = new LongAdder();
+
+    /**
+     * The number of searches done within limits (see {@link SearchLimits})
+     */
+    private final LongAdder boundedSearches = new LongAdder();
+
+    /**
+     * The number of searches done within limits that had to be done again without them
+     */
+    private final LongAdder retriedBoundedSearches = new LongAdder();
+
+    /**
+     * Records a finished search
+     * @param forwardSettled The number of nodes settled by the forward direction
+     * @param backwardSettled The number of nodes settled by the backward direction (0 for unidirectional searches)
+     */
+    public void recordSearch(long forwardSettled, long backwardSettled) {
+        searches.increment();
+        forwardSettledNodes.add(forwardSettled);
+        backwardSettledNodes.add(backwardSettled);
+    }
+
+    /**
+     * Records a search done within limits
+     * @param retried True if the limits were too strict and the search had to be done again without them
+     */
+    public void recordBoundedSearch(boolean retried) {
+        boundedSearches.increment();
+        if (retried) {
+            retriedBoundedSearches.increment();
+        }
+    }
+
+    /**
+     * Gets the number of recorded searches
+     * @return The number of searches
+     */
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    /**
+     * Gets the number of nodes settled by the forward direction of the recorded searches
+     * @return The number of nodes
+     */
+    public long getForwardSettledNodes() {
+        return forwardSettledNodes.sum();
+    }
+
+    /**
+     * Gets the number of nodes settled by the backward direction of the recorded searches
+     * @return The number of nodes
+     */
+    public long getBackwardSettledNodes() {
+        return backwardSettledNodes.sum();
+    }
+
+    /**
+     * Gets the number of searches done within limits
+     * @return The number of bounded searches
+     */
+    public long getBoundedSearches() {
+        return boundedSearches.sum();
+    }
+
+    /**
+     * Gets the number of searches done within limits that had to be done again without them
+     * @return The number of retried bounded searches
+     */
+    public long getRetriedBoundedSearches() {
+        return retriedBoundedSearches.sum();
+    }
+
+    /**
+     * Gets the average number of nodes settled (in both directions) by a search
+     * @return The average number of settled nodes
+     */
+    public double getAverageSettledNodes() {
+        long count = getSearches();
+        return count == 0 ? 0.0 : ((double) (getForwardSettledNodes() + getBackwardSettledNodes())) / count;
+    }
+
+    /**
+     * Forgets every recorded search
+     */
+    public void reset() {
+        searches.reset();
+        forwardSettledNodes.reset();
+        backwardSettledNodes.reset();
+        boundedSearches.reset();
+        retriedBoundedSearches.reset();
+    }
+
+    /**
+     * Describes these statistics
+     * @return A summary of the recorded searches
+     */
+    @Override
+    public String toString() {
+        String summary = String.format("%d recherches de plus court chemin, %.1f noeuds fixés en moyenne par recherche " +
+                        "(%d dans le sens direct, %d dans le sens inverse au total)",
+                getSearches(), getAverageSettledNodes(), getForwardSettledNodes(), getBackwardSettledNodes());
+        if (getBoundedSearches() > 0) {
+            summary += String.format(", dont %d recherches limitées (%d refaites sans limites)", getBoundedSearches(), getRetriedBoundedSearches());
+        }
+        return summary;
+    }
+}
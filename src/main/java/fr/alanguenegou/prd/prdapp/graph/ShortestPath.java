@@ -0,0 +1,91 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import lombok.Getter;
+
+/**
+ * The class representing the result of a shortest-path search on a {@link CompactGraph}:
+ * the node indices of the path plus its cost and its total distance and danger values
+ * @version 1.00
+ */
+public class ShortestPath {
+
+    /**
+     * The result returned when the sink can't be reached from the source
+     */
+    public static final ShortestPath NOT_FOUND = new ShortestPath(new int[0], Double.MAX_VALUE, 0.0, 0.0);
+
+    /**
+     * The node indices of the path, from the source to the sink
+     */
+    @Getter
+    private final int[] nodes;
+
+    /**
+     * The cost of the path (linear combination of its distance and danger values)
+     */
+    @Getter
+    private final double cost;
+
+    /**
+     * The total distance of the path
+     */
+    @Getter
+    private final double distance;
+
+    /**
+     * The total danger of the path
+     */
+    @Getter
+    private final double danger;
+
+    /**
+     * The class constructor
+     * @param nodes The node indices of the path, from the source to the sink
+     * @param cost The cost of the path
+     * @param distance The total distance of the path
+     * @param danger The total danger of the path
+     */
+    public ShortestPath(int[] nodes, double cost, double distance, double danger) {
+        this.nodes = nodes;
+        this.cost = cost;
+        this.distance = distance;
+        this.danger = danger;
+    }
+
+    /**
+     * Checks if this path actually links the source to the sink
+     * @return True if the sink was reached
+     */
+    public boolean isFound() {
+        return nodes.length > 0;
+    }
+
+    /**
+     * Rebuilds the path to a sink settled by a search, by following the predecessor edges left in the search context
+     * @param graph The compact graph
+     * @param context The search context of the finished search
+     * @param source The starting node index
+     * @param sink The ending node index
+     * @return The shortest-path, or {@link ShortestPath#NOT_FOUND} if the sink wasn't reached
+     */
+    public static ShortestPath fromSearchContext(CompactGraph graph, SearchContext context, int source, int sink) {
+        if (!context.isVisited(sink)) {
+            return NOT_FOUND;
+        }
+
+        // counts the nodes of the path first, so that it is stored in an exactly sized array
+        int length = 1;
+        for (int node = sink; node != source; node = graph.getEdgeSource(context.getPredecessorEdge(node))) {
+            length++;
+        }
+        int[] nodes = new int[length];
+        int node = sink;
+        for (int i = length - 1; i >= 0; i--) {
+            nodes[i] = node;
+            if (i > 0) {
+                node = graph.getEdgeSource(context.getPredecessorEdge(node));
+            }
+        }
+        return new ShortestPath(nodes, context.getCost(sink), context.getDistance(sink), context.getDanger(sink));
+    }
+}
@@ -4,6 +4,8 @@ import fr.alanguenegou.prd.prdapp.graph.Graph;
 
 
 import fr.alanguenegou.prd.prdapp.graph.Node;
+import fr.alanguenegou.prd.prdapp.graph.SearchLimits;
+import fr.alanguenegou.prd.prdapp.graph.ShortestPath;
 import lombok.Getter;
 import lombok.Setter;
 import org.javatuples.Pair;
@@ -95,16 +97,73 @@ public class Trip {
         return trip.get(trip.size()-1);
     }
 
+    /**
+     * Gets the starting and ending nodes of this Trip, as a path request
+     * @return The pair (starting node, ending node)
+     */
+    public Pair<Node, Node> getEndpoints() {
+        return Pair.with(getStartNode(), getEndNode());
+    }
+
     /**
      * Compares this real user trip to its calculated version
      * @param graph The graph in which the trip is located
      * @return The percent variation from the closest label in pareto front to this user trip
      */
     public Double compareTripWithCalculatedVersion(Graph graph) {
+        return compareTripWithCalculatedVersion(graph.calculateLabelsForManyLinearCombinations(getStartNode(), getEndNode(), Graph.WITH_INITIAL_DANGER_VALUE));
+    }
+
+    /**
+     * Compares this real user trip to its calculated version, the searches being limited by the trip itself
+     * (see {@link Trip#calculateLabelsWithinLimits(Graph, double)})
+     * @param graph The graph in which the trip is located
+     * @param detourRatio The size of the corridor around the trip ends (see {@link SearchLimits#getDetourRatio()})
+     * @return The percent variation from the closest label in pareto front to this user trip
+     */
+    public Double compareTripWithCalculatedVersion(Graph graph, double detourRatio) {
+        return compareTripWithCalculatedVersion(calculateLabelsWithinLimits(graph, detourRatio));
+    }
+
+    /**
+     * Gets the limits of the searches of a shortest-path of this Trip with the initial danger values: no shortest-path
+     * costs more than this trip, and the nodes are kept in a corridor around its ends
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param detourRatio The size of the corridor around the trip ends (see {@link SearchLimits#getDetourRatio()})
+     * @return The search limits
+     */
+    public SearchLimits getSearchLimits(double distanceWeight, double detourRatio) {
         Pair<Double, Double> tripValues = getTripValues();
+        double tripCost = distanceWeight*tripValues.getValue0() + (1-distanceWeight)*tripValues.getValue1();
+        return new SearchLimits(tripCost * (1 + SearchLimits.COST_CAP_TOLERANCE), detourRatio);
+    }
 
-        // HashMap<DistanceWeight, Pair<DistanceValue, DangerValue>>
-        HashMap<Double, Pair<Double, Double>> calculatedLabels = graph.calculateLabelsForManyLinearCombinations(getStartNode(), getEndNode(), Graph.WITH_INITIAL_DANGER_VALUE);
+    /**
+     * Computes the labels (distance, danger) of the shortest-paths between the ends of this Trip with the initial danger values,
+     * for numerous linear combination weights, with searches limited by this trip (see {@link Trip#getSearchLimits(double, double)}).
+     * The labels have the same costs as the ones of {@link Graph#calculateLabelsForManyLinearCombinations(Node, Node, int)}
+     * @param graph The graph in which the trip is located
+     * @param detourRatio The size of the corridor around the trip ends (see {@link SearchLimits#getDetourRatio()})
+     * @return A HashMap containing the distance and danger values for X linear combinations (see {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS})
+     */
+    public HashMap<Double, Pair<Double, Double>> calculateLabelsWithinLimits(Graph graph, double detourRatio) {
+        HashMap<Double, Pair<Double, Double>> labels = new HashMap<>(Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS.length);
+        for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+            ShortestPath shortestPath = graph.searchShortestPathWithinLimits(getStartNode(), getEndNode(), distanceWeight,
+                    Graph.WITH_INITIAL_DANGER_VALUE, getSearchLimits(distanceWeight, detourRatio));
+            labels.put(distanceWeight, Pair.with(shortestPath.getDistance(), shortestPath.getDanger()));
+        }
+        return labels;
+    }
+
+    /**
+     * Compares this real user trip to its calculated version, whose labels are already computed
+     * (see {@link Graph#calculateLabelsForManyPaths(Collection, int)})
+     * @param calculatedLabels The labels of the trip shortest-paths with the initial danger values, by distance weight
+     * @return The percent variation from the closest label in pareto front to this user trip
+     */
+    public Double compareTripWithCalculatedVersion(HashMap<Double, Pair<Double, Double>> calculatedLabels) {
+        Pair<Double, Double> tripValues = getTripValues();
 
         // computedDifferences is Hashmap<computedDifference, distanceWeight>
         HashMap<Double, Double> computedDifferences = new HashMap<>();
@@ -170,10 +229,17 @@ public class Trip {
      * @return The HashMap containing the artificial pareto front of the trip shortest-path computation
      */
     public HashMap<Double, Pair<Double, Double>> setTripWeightsThanksToComparison(Graph graph) {
-        Pair<Double, Double> tripValues = getTripValues();
+        return setTripWeightsThanksToComparison(graph.calculateLabelsForManyLinearCombinations(getStartNode(), getEndNode(), Graph.WITH_INITIAL_DANGER_VALUE));
+    }
 
-        // HashMap<DistanceWeight, Pair<DistanceValue, DangerValue>>
-        HashMap<Double, Pair<Double, Double>> calculatedLabels = graph.calculateLabelsForManyLinearCombinations(getStartNode(), getEndNode(), Graph.WITH_INITIAL_DANGER_VALUE);
+    /**
+     * Deduces the distance and danger weights chosen by the user who did this trip from the already computed labels
+     * of its shortest-paths (see {@link Graph#calculateLabelsForManyPaths(Collection, int)}) and sets the proper values of this trip
+     * @param calculatedLabels The labels of the trip shortest-paths with the initial danger values, by distance weight
+     * @return The same labels, that is the artificial pareto front of the trip shortest-path computation
+     */
+    public HashMap<Double, Pair<Double, Double>> setTripWeightsThanksToComparison(HashMap<Double, Pair<Double, Double>> calculatedLabels) {
+        Pair<Double, Double> tripValues = getTripValues();
 
         // computedDifferences is Hashmap<computedDifference, distanceWeight>
         HashMap<Double, Double> computedDifferences = new HashMap<>();
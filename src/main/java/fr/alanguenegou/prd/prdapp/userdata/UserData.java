@@ -3,6 +3,7 @@ package fr.alanguenegou.prd.prdapp.userdata;
 import fr.alanguenegou.prd.prdapp.graph.Node;
 import lombok.Getter;
 import lombok.Setter;
+import org.javatuples.Pair;
 
 import java.util.*;
 
@@ -68,6 +69,20 @@ public class UserData {
 
     }
 
+    /**
+     * Groups trips by their (starting node, ending node) pair, so that the shortest-paths of trips sharing both ends
+     * (repeated commutes for instance) are only computed once
+     * @param trips The trips to group
+     * @return The trips of each distinct (starting node, ending node) pair, in order of first appearance
+     */
+    public static LinkedHashMap<Pair<Node, Node>, List<Trip>> groupTripsByEndpoints(Collection<Trip> trips) {
+        LinkedHashMap<Pair<Node, Node>, List<Trip>> tripsByEndpoints = new LinkedHashMap<>();
+        for (Trip trip : trips) {
+            tripsByEndpoints.computeIfAbsent(trip.getEndpoints(), endpoints -> new ArrayList<>()).add(trip);
+        }
+        return tripsByEndpoints;
+    }
+
     /**
      * Remove the X first and last steps of every trips in this UserData
      * @param numberOfNodes The number of steps that are removed from start and end of trips
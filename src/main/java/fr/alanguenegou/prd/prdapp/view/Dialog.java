@@ -29,6 +29,7 @@ public class Dialog {
                 "améliorant la qualité de vie des cyclistes au maximum, étant donné un budget");
         System.out.println("     4 : Affiche le graphe de la ville de Tours avec 10 trajets utilisateurs aléatoires");
         System.out.println("     5 : Affiche le graphe de la ville de Tours");
+        System.out.println("     6 : Exporte la matrice des étiquettes entre les départs et les arrivées des trajets utilisateur");
         boolean continueInput = true;
         int choice = 0;
         ArrayList<Integer> choices = new ArrayList<>();
@@ -37,23 +38,26 @@ public class Dialog {
         choices.add(3);
         choices.add(4);
         choices.add(5);
+        choices.add(6);
         do {
             try {
                 choice = sc.nextInt();
                 if (choices.contains(choice)) {
                     if (choice < 4){
                         System.out.println("Lancement de la résolution du problème " + choice + "...");
+                    }else if (choice == 6){
+                        System.out.println("Lancement du calcul de la matrice d'étiquettes...");
                     }else{
                         System.out.println("Lancement de l'affichage du graphe");
                     }
                     continueInput = false;
                 } else {
-                    System.out.println("Il est nécessaire de rentrer les valeurs 1, 2, 3, 4 ou 5. " +
+                    System.out.println("Il est nécessaire de rentrer les valeurs 1, 2, 3, 4, 5 ou 6. " +
                             "Veuillez rentrer une valeur à nouveau :");
                     sc.nextLine();
                 }
             } catch (InputMismatchException e) {
-                System.out.println("Il est nécessaire de rentrer les valeurs 1, 2, 3, 4 ou 5. " +
+                System.out.println("Il est nécessaire de rentrer les valeurs 1, 2, 3, 4, 5 ou 6. " +
                         "Veuillez rentrer une valeur à nouveau :");
                 sc.nextLine();
             }
@@ -0,0 +1,164 @@
+package fr.alanguenegou.prd.prdapp.controller;
+
+import fr.alanguenegou.prd.prdapp.graph.Graph;
+import fr.alanguenegou.prd.prdapp.graph.Node;
+import fr.alanguenegou.prd.prdapp.userdata.Trip;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that the ID of a {@link ShardCoordinator} task only depends on its content, and that an analysis whose shards
+ * already have a result for the same task is resumed by merging these results in the order of the shards, without
+ * launching any worker
+ */
+class ShardCoordinatorTest {
+
+    /**
+     * The number of shards
+     */
+    private static final int SHARD_COUNT = 3;
+
+    /**
+     * The number of nodes of the test graph, linked in a row
+     */
+    private static final int NODE_COUNT = 6;
+
+    /**
+     * The test graph, built again for every test
+     */
+    private Graph graph;
+
+    /**
+     * The trips of the test, from every node to the last one
+     */
+    private List<Trip> trips;
+
+    /**
+     * Builds the test graph and its trips
+     */
+    @BeforeEach
+    void buildGraph() {
+        graph = new Graph();
+        for (int id = 1; id <= NODE_COUNT; id++) {
+            graph.addNode(id);
+        }
+        for (int id = 1; id < NODE_COUNT; id++) {
+            graph.setLinkBetweenNodes(graph.getNodeById(id), graph.getNodeById(id + 1), 10L + id, 80.0 + id, 120.0, 90.0 + id, true);
+        }
+        graph.freeze();
+        trips = new ArrayList<>();
+        for (int id = 1; id < NODE_COUNT; id++) {
+            LinkedList<Node> nodes = new LinkedList<>();
+            for (int next = id; next <= NODE_COUNT; next++) {
+                nodes.add(graph.getNodeById(next));
+            }
+            trips.add(new Trip(100 + id, nodes));
+        }
+    }
+
+    /**
+     * Builds the partial sums of a shard whose values depend on the shard
+     * @param shard The shard index
+     * @return The partial sums
+     */
+    private static TripAnalysisResult buildResult(int shard) {
+        TripAnalysisResult result = new TripAnalysisResult();
+        for (int trip = 0; trip <= shard; trip++) {
+            result.addDifference(0.1 * (shard + 1) + 1.7 * trip);
+            result.addImprovement(trip % 2 == 0 ? null : -0.3 * shard);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the result file a worker would write for a shard
+     * @param coordinator The coordinator
+     * @param shard The shard index
+     * @param taskId The ID of the task
+     * @param result The partial sums of the shard
+     * @throws IOException If the file can't be written
+     */
+    private static void writeResult(ShardCoordinator coordinator, int shard, String taskId, TripAnalysisResult result) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("tache", taskId);
+        result.writeTo(properties);
+        try (Writer writer = Files.newBufferedWriter(coordinator.getResultFile(shard).toPath(), StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+    }
+
+    /**
+     * The task ID doesn't depend on the order of the trips, but changes with the analysis and the graph modifications
+     */
+    @Test
+    void taskIdOnlyDependsOnContent(@TempDir Path directory) throws IOException {
+        ShardCoordinator coordinator = new ShardCoordinator(directory.toFile(), SHARD_COUNT, Collections.emptyList());
+        String taskId = coordinator.writeTask(graph, ShardCoordinator.FIRST_PROBLEM, trips);
+
+        List<Trip> shuffledTrips = new ArrayList<>(trips);
+        Collections.reverse(shuffledTrips);
+        assertEquals(taskId, coordinator.writeTask(graph, ShardCoordinator.FIRST_PROBLEM, shuffledTrips));
+        assertNotEquals(taskId, coordinator.writeTask(graph, ShardCoordinator.IMPROVEMENTS, trips));
+        assertNotEquals(taskId, coordinator.writeTask(graph, ShardCoordinator.FIRST_PROBLEM, trips.subList(1, trips.size())));
+
+        HashMap<Long, Integer> modifications = new HashMap<>();
+        modifications.put(12L, 5);
+        graph.modifyGraph(modifications);
+        assertNotEquals(taskId, coordinator.writeTask(graph, ShardCoordinator.FIRST_PROBLEM, trips));
+    }
+
+    /**
+     * The result of a shard is only read for the task it was computed for
+     */
+    @Test
+    void resultOfAnotherTaskIsIgnored(@TempDir Path directory) throws IOException {
+        ShardCoordinator coordinator = new ShardCoordinator(directory.toFile(), SHARD_COUNT, Collections.emptyList());
+        String taskId = coordinator.writeTask(graph, ShardCoordinator.FIRST_PROBLEM, trips);
+        writeResult(coordinator, 0, taskId, buildResult(0));
+        writeResult(coordinator, 1, "autre", buildResult(1));
+
+        assertEquals(buildResult(0).getDifferenceSum(), coordinator.readResult(0, taskId).getDifferenceSum(), 0.0);
+        assertNull(coordinator.readResult(1, taskId));
+        assertNull(coordinator.readResult(2, taskId));
+    }
+
+    /**
+     * An analysis whose shards all have their result is resumed without any worker, the results being merged in the
+     * order of the shards
+     */
+    @Test
+    void analyseMergesWrittenResults(@TempDir Path directory) throws IOException {
+        ShardCoordinator coordinator = new ShardCoordinator(directory.toFile(), SHARD_COUNT, Collections.emptyList());
+        String taskId = coordinator.writeTask(graph, ShardCoordinator.FIRST_PROBLEM, trips);
+        TripAnalysisResult expectedResult = new TripAnalysisResult();
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            writeResult(coordinator, shard, taskId, buildResult(shard));
+            expectedResult.merge(buildResult(shard));
+        }
+
+        TripAnalysisResult result = coordinator.analyse(graph, ShardCoordinator.FIRST_PROBLEM, trips);
+        assertEquals(expectedResult.getTripCount(), result.getTripCount());
+        assertEquals(expectedResult.getDifferenceSum(), result.getDifferenceSum(), 0.0);
+        assertEquals(Arrays.toString(expectedResult.getDistribution()), Arrays.toString(result.getDistribution()));
+        assertEquals(expectedResult.getModifiedTripCount(), result.getModifiedTripCount());
+        assertEquals(expectedResult.getImprovementSum(), result.getImprovementSum(), 0.0);
+    }
+}
@@ -0,0 +1,138 @@
+package fr.alanguenegou.prd.prdapp.controller;
+
+import fr.alanguenegou.prd.prdapp.graph.Graph;
+import fr.alanguenegou.prd.prdapp.graph.Node;
+import fr.alanguenegou.prd.prdapp.userdata.Trip;
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a {@link TripAnalysisEngine} gives the same results whatever its number of workers, each run using a graph
+ * of its own so that no label computed by a run is answered from the cache to another one
+ */
+class TripAnalysisEngineTest {
+
+    /**
+     * The number of rows and columns of the grid of nodes
+     */
+    private static final int SIZE = 6;
+
+    /**
+     * The numbers of workers compared with a single worker
+     */
+    private static final int[] PARALLELISMS = { 2, 3, 8 };
+
+    /**
+     * Builds a grid graph whose section lengths and dangers vary from one section to the next
+     * @return The graph
+     */
+    private static Graph buildGraph() {
+        Graph graph = new Graph();
+        for (int id = 1; id <= SIZE * SIZE; id++) {
+            graph.addNode(id);
+            Node node = graph.getNodeById(id);
+            node.setCoordX(0.680 + (id - 1) % SIZE * 0.001);
+            node.setCoordY(47.390 + (id - 1) / SIZE * 0.0007);
+        }
+        long sectionId = 1;
+        for (int id = 1; id <= SIZE * SIZE; id++) {
+            int[] neighbours = { (id - 1) % SIZE < SIZE - 1 ? id + 1 : 0, id + SIZE <= SIZE * SIZE ? id + SIZE : 0 };
+            for (int neighbour : neighbours) {
+                if (neighbour != 0) {
+                    double length = 80.0 + (id * 7 + neighbour * 13) % 40;
+                    graph.setLinkBetweenNodes(graph.getNodeById(id), graph.getNodeById(neighbour), sectionId++,
+                            length, length * (1 + (id + neighbour) % 3), length * (1 + id % 4 * 0.5), true);
+                }
+            }
+        }
+        graph.freeze();
+        return graph;
+    }
+
+    /**
+     * Builds trips along the rows of the grid, from each node to the nodes on its right
+     * @param graph The graph
+     * @return The trips
+     */
+    private static List<Trip> buildTrips(Graph graph) {
+        List<Trip> trips = new ArrayList<>();
+        for (int id = 1; id <= SIZE * SIZE; id++) {
+            LinkedList<Node> nodes = new LinkedList<>();
+            nodes.add(graph.getNodeById(id));
+            for (int next = id + 1; (next - 1) % SIZE != 0; next++) {
+                nodes.add(graph.getNodeById(next));
+                trips.add(new Trip(trips.size(), new LinkedList<>(nodes)));
+            }
+        }
+        return trips;
+    }
+
+    /**
+     * Computes with some workers the labels of every trip between its endpoints, on a new graph
+     * @param parallelism The number of workers
+     * @return The labels of each trip, in the order of the trips
+     */
+    private static List<HashMap<Double, Pair<Double, Double>>> analyseTrips(int parallelism) {
+        Graph graph = buildGraph();
+        return new TripAnalysisEngine(parallelism).analyse(buildTrips(graph),
+                trip -> graph.calculateLabelsForManyLinearCombinations(trip.getStartNode(), trip.getEndNode(),
+                        Graph.WITH_INITIAL_DANGER_VALUE, Graph.HEAP_SEARCH), "trajets");
+    }
+
+    /**
+     * Computes with some workers the labels between every pair of nodes, on a new graph
+     * @param parallelism The number of workers
+     * @return The labels of each path request, by (starting node ID, ending node ID)
+     */
+    private static Map<Pair<Long, Long>, HashMap<Double, Pair<Double, Double>>> calculateLabels(int parallelism) {
+        Graph graph = buildGraph();
+        List<Pair<Node, Node>> paths = new ArrayList<>();
+        for (Node source : graph.getIndexedNodes()) {
+            for (Node sink : graph.getIndexedNodes()) {
+                paths.add(Pair.with(source, sink));
+            }
+        }
+        Map<Pair<Long, Long>, HashMap<Double, Pair<Double, Double>>> labelsById = new HashMap<>();
+        new TripAnalysisEngine(parallelism).calculateLabels(graph, paths, Graph.WITH_INITIAL_DANGER_VALUE)
+                .forEach((path, labels) -> labelsById.put(Pair.with(path.getValue0().getId(), path.getValue1().getId()), labels));
+        return labelsById;
+    }
+
+    /**
+     * The results are the ones of the trips analysed one by one, in the order of the trips, whatever the number of workers
+     */
+    @Test
+    void analyseGivesSameResultsWhateverParallelism() {
+        Graph graph = buildGraph();
+        List<HashMap<Double, Pair<Double, Double>>> expectedResults = new ArrayList<>();
+        for (Trip trip : buildTrips(graph)) {
+            expectedResults.add(graph.calculateLabelsForManyLinearCombinations(trip.getStartNode(), trip.getEndNode(),
+                    Graph.WITH_INITIAL_DANGER_VALUE, Graph.HEAP_SEARCH));
+        }
+        assertEquals(SIZE * SIZE * (SIZE - 1) / 2, expectedResults.size());
+        assertEquals(expectedResults, analyseTrips(1), "résultats avec un seul travailleur");
+        for (int parallelism : PARALLELISMS) {
+            assertEquals(expectedResults, analyseTrips(parallelism), "résultats avec " + parallelism + " travailleurs");
+        }
+    }
+
+    /**
+     * The labels of the path requests are the same whatever the number of workers
+     */
+    @Test
+    void calculateLabelsGivesSameLabelsWhateverParallelism() {
+        Map<Pair<Long, Long>, HashMap<Double, Pair<Double, Double>>> expectedLabels = calculateLabels(1);
+        assertEquals(SIZE * SIZE * SIZE * SIZE, expectedLabels.size());
+        for (int parallelism : PARALLELISMS) {
+            assertEquals(expectedLabels, calculateLabels(parallelism), "étiquettes avec " + parallelism + " travailleurs");
+        }
+    }
+}
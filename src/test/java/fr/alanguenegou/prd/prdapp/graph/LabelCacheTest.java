@@ -0,0 +1,100 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that a {@link LabelCache} never returns labels computed on another version of the graph or by another search
+ * configuration, and that the labels of a graph are computed again once its modifications bump its version
+ */
+class LabelCacheTest {
+
+    /**
+     * Builds labels whose values depend on a seed, one for each weight of {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}
+     * @param seed The seed
+     * @return The labels by distance weight
+     */
+    private static HashMap<Double, Pair<Double, Double>> buildLabels(double seed) {
+        HashMap<Double, Pair<Double, Double>> labels = new HashMap<>();
+        for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+            labels.put(distanceWeight, Pair.with(seed + distanceWeight, seed * 2 - distanceWeight));
+        }
+        return labels;
+    }
+
+    /**
+     * The cached labels are only returned for the same graph version and search configuration
+     */
+    @Test
+    void labelsAreKeyedByVersionAndConfiguration() {
+        LabelCache cache = new LabelCache(100);
+        cache.put(1, 2, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, false, false, 7, buildLabels(1));
+
+        assertEquals(buildLabels(1), cache.get(1, 2, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, false, false, 7));
+        assertNull(cache.get(1, 2, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, false, false, 8));
+        assertNull(cache.get(1, 2, Graph.WITH_INITIAL_DANGER_VALUE, Graph.HEAP_SEARCH, false, false, 7));
+        assertNull(cache.get(1, 2, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.CCH_SEARCH, false, false, 7));
+        assertNull(cache.get(1, 2, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, true, false, 7));
+        assertNull(cache.get(1, 2, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, false, true, 7));
+        assertNull(cache.get(2, 1, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, false, false, 7));
+
+        // the returned labels are copies, changing them doesn't change the cache
+        cache.get(1, 2, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, false, false, 7).clear();
+        assertEquals(buildLabels(1), cache.get(1, 2, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, false, false, 7));
+    }
+
+    /**
+     * A graph modification bumps the version of the alternative danger values, whose labels are then computed again,
+     * while the labels of the initial danger values are still answered by the cache
+     */
+    @Test
+    void graphModificationInvalidatesAlternativeLabels() {
+        Graph graph = new Graph();
+        for (int id = 1; id <= 3; id++) {
+            graph.addNode(id);
+        }
+        graph.setLinkBetweenNodes(graph.getNodeById(1), graph.getNodeById(2), 11L, 82.0, 82.0, 82.0, true);
+        graph.setLinkBetweenNodes(graph.getNodeById(2), graph.getNodeById(3), 12L, 80.0, 160.0, 120.0, true);
+        graph.freeze();
+        Node source = graph.getNodeById(1);
+        Node sink = graph.getNodeById(3);
+        LabelCache cache = graph.getLabelCalculator().getLabelCache();
+
+        long alternativeVersion = graph.getGraphVersion(Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+        long initialVersion = graph.getGraphVersion(Graph.WITH_INITIAL_DANGER_VALUE);
+        HashMap<Double, Pair<Double, Double>> alternativeLabels =
+                graph.calculateLabelsForManyLinearCombinations(source, sink, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH);
+        HashMap<Double, Pair<Double, Double>> initialLabels =
+                graph.calculateLabelsForManyLinearCombinations(source, sink, Graph.WITH_INITIAL_DANGER_VALUE, Graph.HEAP_SEARCH);
+        assertEquals(2, cache.size());
+
+        HashMap<Long, Integer> modifications = new HashMap<>();
+        modifications.put(12L, 5);
+        graph.modifyGraph(modifications);
+
+        assertEquals(alternativeVersion + 1, graph.getGraphVersion(Graph.WITH_ALTERNATIVE_DANGER_VALUE));
+        assertEquals(initialVersion, graph.getGraphVersion(Graph.WITH_INITIAL_DANGER_VALUE));
+        assertNull(cache.get(source.getIndex(), sink.getIndex(), Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH, false, false,
+                graph.getGraphVersion(Graph.WITH_ALTERNATIVE_DANGER_VALUE)));
+
+        HashMap<Double, Pair<Double, Double>> modifiedLabels =
+                graph.calculateLabelsForManyLinearCombinations(source, sink, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH);
+        assertNotEquals(alternativeLabels, modifiedLabels);
+        for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+            ShortestPath shortestPath =
+                    graph.searchShortestPath(source, sink, distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.HEAP_SEARCH);
+            assertEquals(Pair.with(shortestPath.getDistance(), shortestPath.getDanger()), modifiedLabels.get(distanceWeight));
+        }
+
+        long hits = cache.getStatistics().hitCount();
+        assertEquals(initialLabels,
+                graph.calculateLabelsForManyLinearCombinations(source, sink, Graph.WITH_INITIAL_DANGER_VALUE, Graph.HEAP_SEARCH));
+        assertEquals(hits + 1, cache.getStatistics().hitCount());
+    }
+}
@@ -0,0 +1,149 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that a {@link LabelStore} keeps its labels between two openings of its file, and starts its file again when
+ * it was written for another graph content or another search configuration
+ */
+class LabelStoreTest {
+
+    /**
+     * Builds a graph of three nodes linked in a row
+     * @param firstLength The length of the section between the first two nodes
+     * @return The compact graph
+     */
+    private static CompactGraph buildGraph(double firstLength) {
+        Graph graph = new Graph();
+        for (int id = 1; id <= 3; id++) {
+            graph.addNode(id);
+        }
+        graph.setLinkBetweenNodes(graph.getNodeById(1), graph.getNodeById(2), 11L, firstLength, firstLength, firstLength, true);
+        graph.setLinkBetweenNodes(graph.getNodeById(2), graph.getNodeById(3), 12L, 80.0, 160.0, 120.0, true);
+        return graph.freeze();
+    }
+
+    /**
+     * Builds labels whose values depend on a seed, one for each weight of {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS}
+     * @param seed The seed
+     * @return The labels by distance weight
+     */
+    private static HashMap<Double, Pair<Double, Double>> buildLabels(double seed) {
+        HashMap<Double, Pair<Double, Double>> labels = new HashMap<>();
+        for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+            labels.put(distanceWeight, Pair.with(seed + distanceWeight, seed * 2 - distanceWeight));
+        }
+        return labels;
+    }
+
+    /**
+     * Opens the store of a file for the heap search without adaptive weights nor hub labels
+     * @param file The file
+     * @param graph The compact graph
+     * @return The label store
+     * @throws IOException If the file can't be read or written
+     */
+    private static LabelStore open(File file, CompactGraph graph) throws IOException {
+        return LabelStore.open(file, graph, Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS, Graph.HEAP_SEARCH, false, false);
+    }
+
+    /**
+     * The labels appended by a run are found by the next runs, which append their own after them
+     */
+    @Test
+    void labelsAreKeptBetweenOpenings(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("etiquettes.bin").toFile();
+        CompactGraph graph = buildGraph(82.0);
+        try (LabelStore store = open(file, graph)) {
+            assertEquals(0, store.size());
+            store.put(1, 3, buildLabels(1));
+            store.put(3, 1, buildLabels(2));
+            assertEquals(buildLabels(1), store.get(1, 3));
+        }
+        try (LabelStore store = open(file, graph)) {
+            assertEquals(2, store.size());
+            assertEquals(buildLabels(1), store.get(1, 3));
+            assertEquals(buildLabels(2), store.get(3, 1));
+            assertNull(store.get(1, 2));
+            store.put(1, 2, buildLabels(3));
+            // a path request already stored isn't written twice
+            store.put(1, 3, buildLabels(4));
+        }
+        try (LabelStore store = open(file, graph)) {
+            assertEquals(3, store.size());
+            assertEquals(buildLabels(1), store.get(1, 3));
+            assertEquals(buildLabels(3), store.get(1, 2));
+        }
+    }
+
+    /**
+     * A record left incomplete by an interrupted run is dropped, the complete ones being kept
+     */
+    @Test
+    void incompleteRecordIsDropped(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("etiquettes.bin").toFile();
+        CompactGraph graph = buildGraph(82.0);
+        try (LabelStore store = open(file, graph)) {
+            store.put(1, 3, buildLabels(1));
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[Long.BYTES + 3]);
+        }
+        try (LabelStore store = open(file, graph)) {
+            assertEquals(1, store.size());
+            assertEquals(buildLabels(1), store.get(1, 3));
+            store.put(3, 1, buildLabels(2));
+        }
+        try (LabelStore store = open(file, graph)) {
+            assertEquals(2, store.size());
+            assertEquals(buildLabels(2), store.get(3, 1));
+        }
+    }
+
+    /**
+     * A file written for another graph content is started again
+     */
+    @Test
+    void otherGraphStartsFileAgain(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("etiquettes.bin").toFile();
+        try (LabelStore store = open(file, buildGraph(82.0))) {
+            store.put(1, 3, buildLabels(1));
+        }
+        try (LabelStore store = open(file, buildGraph(90.0))) {
+            assertEquals(0, store.size());
+            assertNull(store.get(1, 3));
+        }
+    }
+
+    /**
+     * A file written by another search configuration (search mode, adaptive weight search or hub labels) is started again
+     */
+    @Test
+    void otherSearchConfigurationStartsFileAgain(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("etiquettes.bin").toFile();
+        CompactGraph graph = buildGraph(82.0);
+        boolean[][] flags = { { false, false }, { true, false }, { false, true } };
+        for (int searchMode : new int[] { Graph.HEAP_SEARCH, Graph.CCH_SEARCH }) {
+            for (boolean[] flag : flags) {
+                try (LabelStore store = LabelStore.open(file, graph, Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS, searchMode, flag[0], flag[1])) {
+                    assertEquals(0, store.size());
+                    store.put(1, 3, buildLabels(1));
+                }
+                try (LabelStore store = LabelStore.open(file, graph, Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS, searchMode, flag[0], flag[1])) {
+                    assertEquals(1, store.size());
+                }
+            }
+        }
+    }
+}
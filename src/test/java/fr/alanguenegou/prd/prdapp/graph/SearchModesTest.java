@@ -0,0 +1,452 @@
+package fr.alanguenegou.prd.prdapp.graph;
+
+import org.javatuples.Pair;
+import org.javatuples.Triplet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every search mode finds the same shortest-path costs as {@link Graph#HEAP_SEARCH} on a small hand-made
+ * graph, for every weight of {@link Graph#LINEAR_COMBINATION_DISTANCE_WEIGHTS} and both danger values, the heap search
+ * itself being checked against a Bellman-Ford search on the nodes of the graph
+ */
+class SearchModesTest {
+
+    /**
+     * The sections of the test graph, a 5 x 4 grid with a few diagonals and missing streets:
+     * {start node ID, end node ID, length, danger from start to end, danger from end to start}
+     */
+    private static final int[][] SECTIONS = {
+            { 1, 6, 82, 82, 82 },
+            { 1, 7, 138, 138, 207 },
+            { 2, 3, 93, 93, 186 },
+            { 2, 7, 100, 200, 200 },
+            { 3, 4, 89, 178, 89 },
+            { 3, 8, 86, 258, 344 },
+            { 3, 9, 116, 232, 116 },
+            { 4, 5, 96, 192, 96 },
+            { 4, 9, 91, 182, 364 },
+            { 5, 10, 88, 176, 264 },
+            { 6, 7, 81, 81, 81 },
+            { 7, 8, 87, 261, 174 },
+            { 7, 12, 94, 94, 282 },
+            { 8, 9, 85, 128, 170 },
+            { 8, 13, 92, 368, 138 },
+            { 10, 15, 96, 384, 144 },
+            { 11, 12, 82, 82, 82 },
+            { 11, 16, 80, 160, 160 },
+            { 12, 13, 92, 276, 368 },
+            { 12, 17, 80, 320, 120 },
+            { 12, 18, 118, 236, 354 },
+            { 13, 14, 88, 176, 88 },
+            { 13, 18, 87, 174, 174 },
+            { 14, 15, 80, 120, 80 },
+            { 16, 17, 90, 135, 360 },
+            { 18, 19, 81, 81, 81 },
+            { 19, 20, 82, 246, 123 },
+    };
+
+    /**
+     * The number of columns of the grid of nodes
+     */
+    private static final int COLUMNS = 5;
+
+    /**
+     * The number of nodes of the test graph
+     */
+    private static final int NODE_COUNT = 20;
+
+    /**
+     * The ID of the section made of the first row of {@link SearchModesTest#SECTIONS}
+     */
+    private static final long FIRST_SECTION_ID = 101;
+
+    /**
+     * The modifications giving their alternative danger values to some sections ({section ID, new security factor})
+     */
+    private static final long[][] MODIFICATIONS = { { 104, 5 }, { 113, 4 }, { 120, 1 }, { 123, 5 } };
+
+    /**
+     * Both uses of danger values
+     */
+    private static final int[] DANGER_VALUES = { Graph.WITH_ALTERNATIVE_DANGER_VALUE, Graph.WITH_INITIAL_DANGER_VALUE };
+
+    /**
+     * The search modes of {@link Graph#searchShortestPath(Node, Node, double, int, int)} compared with the heap search
+     */
+    private static final int[] SEARCH_MODES = {
+            Graph.BIDIRECTIONAL_SEARCH, Graph.A_STAR_SEARCH, Graph.ALT_SEARCH, Graph.CH_SEARCH,
+            Graph.CCH_SEARCH, Graph.ARC_FLAGS_SEARCH, Graph.MULTI_LANE_SEARCH };
+
+    /**
+     * The relative tolerance between two costs of the same shortest-path summed in different orders
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * The test graph, built again for every test
+     */
+    private Graph graph;
+
+    /**
+     * Builds the test graph, then modifies some of its sections so that its alternative danger values differ from the initial ones
+     */
+    @BeforeEach
+    void buildGraph() {
+        graph = new Graph();
+        for (int id = 1; id <= NODE_COUNT; id++) {
+            graph.addNode(id);
+            Node node = graph.getNodeById(id);
+            node.setCoordX(0.680 + (id - 1) % COLUMNS * 0.001);
+            node.setCoordY(47.390 + (id - 1) / COLUMNS * 0.0007);
+        }
+        for (int row = 0; row < SECTIONS.length; row++) {
+            int[] section = SECTIONS[row];
+            graph.setLinkBetweenNodes(graph.getNodeById(section[0]), graph.getNodeById(section[1]), FIRST_SECTION_ID + row,
+                    (double) section[2], (double) section[3], (double) section[4], true);
+        }
+        graph.freeze();
+        modifyGraph(MODIFICATIONS);
+    }
+
+    /**
+     * The heap search finds the same costs as a Bellman-Ford search
+     */
+    @Test
+    void heapSearchFindsShortestPaths() {
+        for (int useOfDangerValue : DANGER_VALUES) {
+            for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                for (Node source : graph.getIndexedNodes()) {
+                    double[] expectedCosts = calculateCostsWithBellmanFord(source, distanceWeight, useOfDangerValue);
+                    for (Node sink : graph.getIndexedNodes()) {
+                        ShortestPath shortestPath = graph.searchShortestPath(source, sink, distanceWeight, useOfDangerValue, Graph.HEAP_SEARCH);
+                        assertTrue(shortestPath.isFound());
+                        assertCost(expectedCosts[sink.getIndex()], shortestPath.getCost(), "recherche avec tas", source, sink, distanceWeight, useOfDangerValue);
+                        assertCost(shortestPath.getCost(), getCost(Pair.with(shortestPath.getDistance(), shortestPath.getDanger()), distanceWeight),
+                                "totaux de la recherche avec tas", source, sink, distanceWeight, useOfDangerValue);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Every point-to-point search mode finds the costs of the heap search
+     */
+    @Test
+    void searchModesMatchHeapSearch() {
+        for (int searchMode : SEARCH_MODES) {
+            for (int useOfDangerValue : DANGER_VALUES) {
+                for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                    for (Node source : graph.getIndexedNodes()) {
+                        for (Node sink : graph.getIndexedNodes()) {
+                            ShortestPath shortestPath = graph.searchShortestPath(source, sink, distanceWeight, useOfDangerValue, searchMode);
+                            assertCost(getHeapCost(source, sink, distanceWeight, useOfDangerValue), shortestPath.getCost(),
+                                    "mode de recherche " + searchMode, source, sink, distanceWeight, useOfDangerValue);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The labels of every linear combination, computed at once by the multi-lane search or with an adaptive choice of the
+     * searched weights, have the costs of the heap search
+     */
+    @Test
+    void labelsOfManyLinearCombinationsMatchHeapSearch() {
+        for (boolean adaptiveWeightSearch : new boolean[] { false, true }) {
+            graph.getLabelCalculator().setAdaptiveWeightSearch(adaptiveWeightSearch);
+            for (int searchMode : new int[] { Graph.HEAP_SEARCH, Graph.MULTI_LANE_SEARCH }) {
+                for (int useOfDangerValue : DANGER_VALUES) {
+                    for (Node source : graph.getIndexedNodes()) {
+                        for (Node sink : graph.getIndexedNodes()) {
+                            HashMap<Double, Pair<Double, Double>> labels =
+                                    graph.calculateLabelsForManyLinearCombinations(source, sink, useOfDangerValue, searchMode);
+                            for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                                assertCost(getHeapCost(source, sink, distanceWeight, useOfDangerValue), getCost(labels.get(distanceWeight), distanceWeight),
+                                        "étiquettes du mode " + searchMode + (adaptiveWeightSearch ? " (poids adaptatifs)" : ""),
+                                        source, sink, distanceWeight, useOfDangerValue);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The hub labels of every linear combination give the costs of the heap search
+     * @param directory The directory of the hub labels files
+     * @throws IOException If a hub labels file can't be written
+     */
+    @Test
+    void hubLabelsMatchHeapSearch(@TempDir Path directory) throws IOException {
+        for (int useOfDangerValue : DANGER_VALUES) {
+            for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                HubLabels hubLabels = HubLabels.build(graph.getSearchEngine().getContractionHierarchy(distanceWeight, useOfDangerValue),
+                        directory.resolve("hub_labels_" + distanceWeight + "_" + useOfDangerValue + ".bin").toFile());
+                for (Node source : graph.getIndexedNodes()) {
+                    for (Node sink : graph.getIndexedNodes()) {
+                        assertCost(getHeapCost(source, sink, distanceWeight, useOfDangerValue),
+                                getCost(hubLabels.getLabel(source.getIndex(), sink.getIndex()), distanceWeight),
+                                "étiquettes de hubs", source, sink, distanceWeight, useOfDangerValue);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The Pareto front holds a label with the cost of the heap search for every linear combination, and none cheaper
+     */
+    @Test
+    void paretoFrontMatchesHeapSearch() {
+        for (int useOfDangerValue : DANGER_VALUES) {
+            for (Node source : graph.getIndexedNodes()) {
+                for (Node sink : graph.getIndexedNodes()) {
+                    List<Pair<Double, Double>> paretoFront = graph.calculateParetoFront(source, sink, useOfDangerValue);
+                    assertFalse(paretoFront.isEmpty());
+                    for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                        double lowestCost = Double.MAX_VALUE;
+                        for (Pair<Double, Double> label : paretoFront) {
+                            lowestCost = Math.min(lowestCost, getCost(label, distanceWeight));
+                        }
+                        assertCost(getHeapCost(source, sink, distanceWeight, useOfDangerValue), lowestCost,
+                                "front de Pareto", source, sink, distanceWeight, useOfDangerValue);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The many-to-many label matrix has the costs of the heap search
+     */
+    @Test
+    void labelMatrixMatchesHeapSearch() {
+        List<Node> nodes = graph.getIndexedNodes();
+        for (int useOfDangerValue : DANGER_VALUES) {
+            LabelMatrix matrix = graph.calculateLabelMatrix(nodes, nodes, useOfDangerValue);
+            for (Node source : nodes) {
+                for (Node sink : nodes) {
+                    HashMap<Double, Pair<Double, Double>> labels = matrix.getLabels(source, sink);
+                    for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                        assertCost(getHeapCost(source, sink, distanceWeight, useOfDangerValue), getCost(labels.get(distanceWeight), distanceWeight),
+                                "matrice d'étiquettes", source, sink, distanceWeight, useOfDangerValue);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The delta-stepping search finds the costs of the heap search, whatever its bucket width and number of workers
+     */
+    @Test
+    void deltaSteppingMatchesHeapSearch() {
+        DeltaSteppingSearch search = new DeltaSteppingSearch(4);
+        for (int useOfDangerValue : DANGER_VALUES) {
+            for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                double meanCost = search.getDelta(graph.getCompactGraph(), distanceWeight, useOfDangerValue);
+                for (double delta : new double[] { meanCost / 10, meanCost, meanCost * 10 }) {
+                    search.setDelta(distanceWeight, useOfDangerValue, delta);
+                    for (Node source : graph.getIndexedNodes()) {
+                        double[] costs = search.search(graph.getCompactGraph(), source.getIndex(), distanceWeight, useOfDangerValue,
+                                graph.getSearchEngine().getSearchStatistics());
+                        double[] graphCosts = graph.calculateCostsFromSource(source, distanceWeight, useOfDangerValue);
+                        for (Node sink : graph.getIndexedNodes()) {
+                            double expectedCost = getHeapCost(source, sink, distanceWeight, useOfDangerValue);
+                            assertCost(expectedCost, costs[sink.getIndex()], "delta-stepping", source, sink, distanceWeight, useOfDangerValue);
+                            assertCost(expectedCost, graphCosts[sink.getIndex()], "delta-stepping du graphe", source, sink, distanceWeight, useOfDangerValue);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The labels answered by the shortest-path trees kept up to date by the graph modifications have the costs of the heap search
+     */
+    @Test
+    void dynamicTreeRepairMatchesHeapSearch() {
+        graph.getLabelCalculator().setDynamicTreeRepair(true);
+        List<Pair<Node, Node>> paths = new ArrayList<>();
+        for (Node source : graph.getIndexedNodes()) {
+            for (Node sink : graph.getIndexedNodes()) {
+                paths.add(Pair.with(source, sink));
+            }
+        }
+        // the trees are built, then repaired after safer then more dangerous modifications
+        long[][][] modifications = { {}, { { 105, 5 }, { 117, 5 } }, { { 104, 1 }, { 123, 1 } } };
+        for (long[][] modification : modifications) {
+            modifyGraph(modification);
+            HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> labelsByPath =
+                    graph.calculateLabelsForManyPaths(paths, Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+            for (Pair<Node, Node> path : paths) {
+                for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                    assertCost(getHeapCost(path.getValue0(), path.getValue1(), distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE),
+                            getCost(labelsByPath.get(path).get(distanceWeight), distanceWeight), "arbres réparés",
+                            path.getValue0(), path.getValue1(), distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+                }
+            }
+        }
+    }
+
+    /**
+     * The searches limited by a cost cap or a corridor find the costs of the heap search, even when the limits leave out
+     * every shortest-path (the search being then done again without limits)
+     */
+    @Test
+    void boundedSearchMatchesHeapSearch() {
+        for (int useOfDangerValue : DANGER_VALUES) {
+            for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                for (Node source : graph.getIndexedNodes()) {
+                    for (Node sink : graph.getIndexedNodes()) {
+                        double expectedCost = getHeapCost(source, sink, distanceWeight, useOfDangerValue);
+                        List<SearchLimits> limits = Arrays.asList(SearchLimits.NONE,
+                                new SearchLimits(expectedCost * (1 + SearchLimits.COST_CAP_TOLERANCE), Double.POSITIVE_INFINITY),
+                                new SearchLimits(expectedCost / 2, Double.POSITIVE_INFINITY),
+                                new SearchLimits(Double.MAX_VALUE, 1.0),
+                                new SearchLimits(expectedCost * 2, 1.5));
+                        for (SearchLimits limit : limits) {
+                            ShortestPath shortestPath = graph.searchShortestPathWithinLimits(source, sink, distanceWeight, useOfDangerValue, limit);
+                            assertCost(expectedCost, shortestPath.getCost(), "recherche limitée (coût maximal " + limit.getCostCap()
+                                    + ", rapport de détour " + limit.getDetourRatio() + ")", source, sink, distanceWeight, useOfDangerValue);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The path requests left out by the filter of the graph modifications keep the labels costs of their initial danger values,
+     * and the filter leaves out at least some requests on the test graph
+     */
+    @Test
+    void affectedPathsContainEveryChangedLabel() {
+        List<Pair<Node, Node>> paths = new ArrayList<>();
+        for (Node source : graph.getIndexedNodes()) {
+            for (Node sink : graph.getIndexedNodes()) {
+                paths.add(Pair.with(source, sink));
+            }
+        }
+        HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> initialLabelsByPath =
+                graph.calculateLabelsForManyPaths(paths, Graph.WITH_INITIAL_DANGER_VALUE);
+        Set<Pair<Node, Node>> affectedPaths = graph.findPathsAffectedByModifications(initialLabelsByPath);
+        HashMap<Pair<Node, Node>, HashMap<Double, Pair<Double, Double>>> modifiedLabelsByPath =
+                graph.calculateLabelsForManyPaths(paths, Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+
+        assertTrue(affectedPaths.size() < paths.size());
+        for (Pair<Node, Node> path : paths) {
+            if (affectedPaths.contains(path)) {
+                continue;
+            }
+            for (double distanceWeight : Graph.LINEAR_COMBINATION_DISTANCE_WEIGHTS) {
+                assertCost(getCost(initialLabelsByPath.get(path).get(distanceWeight), distanceWeight),
+                        getCost(modifiedLabelsByPath.get(path).get(distanceWeight), distanceWeight), "trajet non affecté par les modifications",
+                        path.getValue0(), path.getValue1(), distanceWeight, Graph.WITH_ALTERNATIVE_DANGER_VALUE);
+            }
+        }
+    }
+
+    /**
+     * Applies modifications to the test graph
+     * @param modifications The modifications ({section ID, new security factor})
+     */
+    private void modifyGraph(long[][] modifications) {
+        HashMap<Long, Integer> sectionsToModify = new HashMap<>();
+        for (long[] modification : modifications) {
+            sectionsToModify.put(modification[0], (int) modification[1]);
+        }
+        graph.modifyGraph(sectionsToModify);
+    }
+
+    /**
+     * Gets the cost of the shortest-path found by the heap search
+     * @param source The starting node
+     * @param sink The ending node
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The cost of the shortest-path
+     */
+    private double getHeapCost(Node source, Node sink, double distanceWeight, int useOfDangerValue) {
+        return graph.searchShortestPath(source, sink, distanceWeight, useOfDangerValue, Graph.HEAP_SEARCH).getCost();
+    }
+
+    /**
+     * Calculates the costs from a node to every node with a Bellman-Ford search on the adjacent nodes of the graph nodes
+     * @param source The starting node
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     * @return The cost of each node, by node index
+     */
+    private double[] calculateCostsWithBellmanFord(Node source, double distanceWeight, int useOfDangerValue) {
+        double[] costs = new double[graph.getIndexedNodes().size()];
+        Arrays.fill(costs, Double.MAX_VALUE);
+        costs[source.getIndex()] = 0.0;
+        boolean lowered = true;
+        while (lowered) {
+            lowered = false;
+            for (Node node : graph.getIndexedNodes()) {
+                if (costs[node.getIndex()] == Double.MAX_VALUE) {
+                    continue;
+                }
+                for (Map.Entry<Node, Triplet<Double, Double, Double>> adjacentNode : node.getAdjacentNodes().entrySet()) {
+                    Triplet<Double, Double, Double> values = adjacentNode.getValue();
+                    double danger = useOfDangerValue == Graph.WITH_ALTERNATIVE_DANGER_VALUE && values.getValue2() != null
+                            ? values.getValue2() : values.getValue1();
+                    double cost = costs[node.getIndex()] + getCost(Pair.with(values.getValue0(), danger), distanceWeight);
+                    if (cost < costs[adjacentNode.getKey().getIndex()] * (1 - TOLERANCE)) {
+                        costs[adjacentNode.getKey().getIndex()] = cost;
+                        lowered = true;
+                    }
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Computes the cost of a label for a linear combination
+     * @param label The label (distance, danger)
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @return The cost of the label
+     */
+    private static double getCost(Pair<Double, Double> label, double distanceWeight) {
+        return distanceWeight * label.getValue0() + (1 - distanceWeight) * label.getValue1();
+    }
+
+    /**
+     * Checks that a cost is the expected one, up to the rounding errors
+     * @param expectedCost The expected cost
+     * @param cost The cost
+     * @param description The description of what computed the cost
+     * @param source The starting node
+     * @param sink The ending node
+     * @param distanceWeight The weight of the distance value for the linear combination
+     * @param useOfDangerValue A numerical value defining if alternative (= 1) danger value or initial (= 2) one is used
+     */
+    private static void assertCost(double expectedCost, double cost, String description, Node source, Node sink,
+                                   double distanceWeight, int useOfDangerValue) {
+        assertEquals(expectedCost, cost, TOLERANCE * Math.max(1.0, expectedCost), () -> description + " : trajet " + source.getId()
+                + " -> " + sink.getId() + ", poids de distance " + distanceWeight + ", valeur de danger " + useOfDangerValue);
+    }
+}